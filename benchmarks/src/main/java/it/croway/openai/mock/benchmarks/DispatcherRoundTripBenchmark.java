@@ -0,0 +1,79 @@
+package it.croway.openai.mock.benchmarks;
+
+import it.croway.openai.mock.MockWebServerTransport;
+import it.croway.openai.mock.OpenAIMock;
+import it.croway.openai.mock.OpenAIMockServer;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end HTTP round trip through MockWebServer and OpenAIMockServerDispatcher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatcherRoundTripBenchmark {
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    @Param({"0", "100"})
+    int historySize;
+
+    private OpenAIMockServer server;
+    private OkHttpClient client;
+    private Request request;
+
+    @Setup
+    public void setUp() throws IOException {
+        OpenAIMock mock = new OpenAIMock().builder()
+                .when("round trip")
+                    .replyWith("hello World")
+                .end()
+                .when("round trip tools")
+                    .invokeTool("tool1")
+                    .withParam("p1", "v1")
+                .build();
+
+        server = new OpenAIMockServer(mock, new MockWebServerTransport());
+        server.start(0);
+        client = new OkHttpClient();
+        request = new Request.Builder()
+                .url(server.getBaseUrl() + "v1/chat/completions")
+                .post(RequestBody.create(Fixtures.requestBody("round trip", historySize), JSON))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.stop();
+    }
+
+    @Benchmark
+    public int roundTrip() throws IOException {
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().bytes().length;
+        }
+    }
+}
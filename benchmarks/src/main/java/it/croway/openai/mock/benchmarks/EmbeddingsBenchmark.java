@@ -0,0 +1,68 @@
+package it.croway.openai.mock.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.croway.openai.mock.EmbeddingsHandler;
+import it.croway.openai.mock.ExpectationRegistry;
+import it.croway.openai.mock.ExpectationResolver;
+import it.croway.openai.mock.MockMetrics;
+import it.croway.openai.mock.OpenAIMockConfiguration;
+import it.croway.openai.mock.RequestOutcome;
+import okhttp3.mockwebserver.MockResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched deterministic embeddings, from request parsing to the rendered body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmbeddingsBenchmark {
+
+    @Param({"16", "2048"})
+    int batchSize;
+
+    @Param({"1536", "3072"})
+    int dimensions;
+
+    @Param({"float", "base64"})
+    String encodingFormat;
+
+    private EmbeddingsHandler handler;
+    private String requestBody;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        OpenAIMockConfiguration configuration = new OpenAIMockConfiguration();
+        configuration.setEmbeddingDimensions(dimensions);
+        ExpectationResolver resolver = new ExpectationResolver(ExpectationRegistry.empty(), configuration, new MockMetrics());
+        handler = new EmbeddingsHandler(resolver, configuration, objectMapper);
+
+        StringBuilder body = new StringBuilder("{\"model\":\"text-embedding-3-large\",\"encoding_format\":\"")
+                .append(encodingFormat).append("\",\"input\":[");
+        for (int i = 0; i < batchSize; i++) {
+            body.append(i > 0 ? "," : "").append('"').append(Fixtures.input(i)).append('"');
+        }
+        requestBody = body.append("]}").toString();
+    }
+
+    @Benchmark
+    public MockResponse handleBatch() throws Exception {
+        return handler.handle(Fixtures.recordedRequest("/v1/embeddings", requestBody), new RequestOutcome());
+    }
+}
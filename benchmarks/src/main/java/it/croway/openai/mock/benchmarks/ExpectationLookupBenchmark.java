@@ -0,0 +1,78 @@
+package it.croway.openai.mock.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import it.croway.openai.mock.ExpectationRegistry;
+import it.croway.openai.mock.FuzzyIndex;
+import it.croway.openai.mock.MockExpectation;
+import it.croway.openai.mock.RequestContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expectation lookup cost as the number of registered expectations grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpectationLookupBenchmark {
+
+    @Param({"10", "1000", "10000", "100000"})
+    int expectations;
+
+    private ExpectationRegistry registry;
+    private ExpectationRegistry fuzzyRegistry;
+    private String[] inputs;
+    private RequestContext[] perturbedRequests;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        registry = Fixtures.registry(expectations, 1, new ObjectMapper());
+        // Fresh strings so lookups pay for hashing like requests parsed from the wire
+        inputs = new String[1024];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = new String(Fixtures.input((i * 7919) % expectations).toCharArray());
+        }
+
+        fuzzyRegistry = new ExpectationRegistry(registry.getExpectations(), true);
+        perturbedRequests = new RequestContext[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            ObjectNode request = JsonNodeFactory.instance.objectNode();
+            request.putArray("messages").addObject()
+                    .put("role", "user")
+                    .put("content", "Benchmark  sentence number " + ((i * 7919) % expectations) + "!");
+            perturbedRequests[i] = new RequestContext(request);
+        }
+    }
+
+    @Benchmark
+    public MockExpectation find() {
+        String input = inputs[next++ & (inputs.length - 1)];
+        return registry.find(input);
+    }
+
+    /**
+     * Nearest-match lookup of inputs differing in case, whitespace and punctuation.
+     */
+    @Benchmark
+    public List<FuzzyIndex.Candidate> findNearest() {
+        return fuzzyRegistry.findNearest(perturbedRequests[next++ & (perturbedRequests.length - 1)], 5, 0.8);
+    }
+}
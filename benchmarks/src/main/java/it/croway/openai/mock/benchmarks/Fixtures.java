@@ -0,0 +1,121 @@
+package it.croway.openai.mock.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.croway.openai.mock.ExpectationRegistry;
+import it.croway.openai.mock.MockExpectation;
+import it.croway.openai.mock.ResponseCompiler;
+import it.croway.openai.mock.ToolCallDefinition;
+import it.croway.openai.mock.ToolExecutionStep;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shared fixtures for the benchmarks: expectation registries, request bodies and recorded requests.
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static String input(int index) {
+        return "benchmark sentence number " + index;
+    }
+
+    /**
+     * Builds a compiled registry with {@code size} text expectations and one tool expectation
+     * invoking {@code parallelTools} tools.
+     */
+    static ExpectationRegistry registry(int size, int parallelTools, ObjectMapper objectMapper) {
+        List<MockExpectation> expectations = new ArrayList<>(size + 1);
+        for (int i = 0; i < size; i++) {
+            MockExpectation expectation = new MockExpectation(input(i));
+            expectation.setExpectedResponse("response number " + i);
+            expectations.add(expectation);
+        }
+
+        MockExpectation toolExpectation = new MockExpectation("tools");
+        toolExpectation.addToolExecutionStep(toolStep(parallelTools));
+        expectations.add(toolExpectation);
+
+        ResponseCompiler compiler = new ResponseCompiler(objectMapper);
+        expectations.forEach(compiler::compile);
+        return new ExpectationRegistry(expectations);
+    }
+
+    static ToolExecutionStep toolStep(int parallelTools) {
+        ToolExecutionStep step = new ToolExecutionStep();
+        for (int i = 0; i < parallelTools; i++) {
+            step.addToolCall(toolCall(i));
+        }
+        return step;
+    }
+
+    static List<ToolCallDefinition> toolCalls(int count) {
+        List<ToolCallDefinition> toolCalls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            toolCalls.add(toolCall(i));
+        }
+        return toolCalls;
+    }
+
+    private static ToolCallDefinition toolCall(int index) {
+        ToolCallDefinition toolCall = new ToolCallDefinition("tool" + index);
+        toolCall.addArgument("latitude", "51.50758961965397");
+        toolCall.addArgument("longitude", "-0.13388057363742217");
+        toolCall.addArgument("index", index);
+        return toolCall;
+    }
+
+    /**
+     * Builds a chat completions body whose first user message is {@code input}, followed by
+     * {@code historySize} alternating assistant and user messages.
+     */
+    static String requestBody(String input, int historySize) {
+        StringBuilder body = new StringBuilder(64 + historySize * 160);
+        body.append("{\"model\":\"gpt-4o\",\"temperature\":0.2,\"messages\":[");
+        body.append("{\"role\":\"system\",\"content\":\"You are a helpful assistant.\"},");
+        body.append("{\"role\":\"user\",\"content\":\"").append(input).append("\"}");
+        for (int i = 0; i < historySize; i++) {
+            String role = i % 2 == 0 ? "assistant" : "user";
+            body.append(",{\"role\":\"").append(role)
+                    .append("\",\"content\":\"Message ").append(i)
+                    .append(" of a long conversation history with some padding text to make it realistic.\"}");
+        }
+        body.append("]}");
+        return body.toString();
+    }
+
+    static RecordedRequest recordedRequest(String body) throws IOException {
+        return recordedRequest("/v1/chat/completions", body);
+    }
+
+    static RecordedRequest recordedRequest(String path, String body) throws IOException {
+        Buffer buffer = new Buffer().writeUtf8(body);
+        return new RecordedRequest("POST " + path + " HTTP/1.1",
+                new Headers.Builder().add("Content-Type", "application/json").build(),
+                Collections.emptyList(), buffer.size(), buffer, 0, new LoopbackSocket(), null);
+    }
+
+    /**
+     * Unconnected socket reporting a loopback local address, as needed by {@link RecordedRequest}.
+     */
+    private static class LoopbackSocket extends Socket {
+        @Override
+        public InetAddress getLocalAddress() {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public int getLocalPort() {
+            return 8080;
+        }
+    }
+}
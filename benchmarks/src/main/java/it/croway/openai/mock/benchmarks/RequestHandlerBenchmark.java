@@ -0,0 +1,54 @@
+package it.croway.openai.mock.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.croway.openai.mock.OpenAIMockConfiguration;
+import it.croway.openai.mock.RequestHandler;
+import it.croway.openai.mock.RequestOutcome;
+import okhttp3.mockwebserver.MockResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full request handling (parsing, matching and rendering) without the network,
+ * for small and large message histories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestHandlerBenchmark {
+
+    @Param({"0", "100", "10000"})
+    int historySize;
+
+    @Param({"false", "true"})
+    boolean toolCall;
+
+    private RequestHandler requestHandler;
+    private String requestBody;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        requestHandler = new RequestHandler(Fixtures.registry(1000, 4, objectMapper), new OpenAIMockConfiguration(), objectMapper);
+        requestBody = Fixtures.requestBody(toolCall ? "tools" : Fixtures.input(500), historySize);
+    }
+
+    @Benchmark
+    public MockResponse handleRequest() throws Exception {
+        return requestHandler.handle(Fixtures.recordedRequest(requestBody), new RequestOutcome());
+    }
+}
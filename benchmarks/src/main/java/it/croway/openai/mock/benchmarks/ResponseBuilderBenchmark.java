@@ -0,0 +1,79 @@
+package it.croway.openai.mock.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.croway.openai.mock.CompiledResponse;
+import it.croway.openai.mock.GzipEncoding;
+import it.croway.openai.mock.ResponseBuilder;
+import it.croway.openai.mock.ResponseCompiler;
+import it.croway.openai.mock.ToolCallDefinition;
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering cost of tool call responses with many parallel tools, dynamic versus precompiled,
+ * and gzip compressed on the fly versus from precompressed segments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseBuilderBenchmark {
+
+    @Param({"1", "16", "128"})
+    int parallelTools;
+
+    private ResponseBuilder responseBuilder;
+    private List<ToolCallDefinition> toolCalls;
+    private CompiledResponse compiledResponse;
+    private GzipEncoding gzip;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        responseBuilder = new ResponseBuilder(objectMapper);
+        toolCalls = Fixtures.toolCalls(parallelTools);
+        compiledResponse = new ResponseCompiler(objectMapper).compileToolCallResponse(null, toolCalls);
+        gzip = new GzipEncoding();
+    }
+
+    @Benchmark
+    public MockResponse createToolCallResponse() throws Exception {
+        return responseBuilder.createToolCallResponse(null, toolCalls);
+    }
+
+    @Benchmark
+    public MockResponse createCompiledToolCallResponse() {
+        return responseBuilder.createCompiledResponse(compiledResponse);
+    }
+
+    @Benchmark
+    public Buffer gzipCompiledToolCallResponse() throws Exception {
+        return gzip.encode(compiledResponse.render());
+    }
+
+    @Benchmark
+    public Buffer gzipPrecompressedToolCallResponse() {
+        return compiledResponse.render(gzip);
+    }
+
+    @Benchmark
+    public MockResponse createStreamingToolCallResponse() throws Exception {
+        return responseBuilder.createStreamingToolCallResponse(null, toolCalls, 16);
+    }
+}
@@ -0,0 +1,106 @@
+package it.croway.openai.mock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs request assertions on a small worker pool, off the dispatch thread.
+ * Failures are collected and reported by {@link #verify()} after each test.
+ */
+public class AsyncRequestVerifier {
+    private static final Logger log = LoggerFactory.getLogger(AsyncRequestVerifier.class);
+
+    public static final int DEFAULT_WORKERS = 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentLinkedQueue<AssertionError> failures;
+    private final AtomicInteger pending;
+    private final Object idle;
+
+    public AsyncRequestVerifier(int workers, int queueCapacity) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Assertion workers must be positive");
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("Assertion queue capacity must be positive");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 1, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "openai-mock-assertions-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.failures = new ConcurrentLinkedQueue<>();
+        this.pending = new AtomicInteger();
+        this.idle = new Object();
+    }
+
+    /**
+     * Queues the assertion against a copy of the request body.
+     */
+    public void submit(String input, Consumer<String> assertion, String requestBody) {
+        pending.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                assertion.accept(requestBody);
+            } catch (Throwable e) {
+                log.debug("Request assertion failed for input: {}", input, e);
+                failures.add(new AssertionError("Request assertion failed for input: " + input, e));
+            } finally {
+                if (pending.decrementAndGet() == 0) {
+                    synchronized (idle) {
+                        idle.notifyAll();
+                    }
+                }
+            }
+        });
+    }
+
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Waits for the queued assertions and throws their failures, if any, clearing them.
+     * A single failure is thrown as is; several are reported together, each one suppressed.
+     */
+    public void verify() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DEFAULT_TIMEOUT_MILLIS;
+        synchronized (idle) {
+            while (pending.get() > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new AssertionError("Timed out waiting for " + pending.get() + " request assertions");
+                }
+                idle.wait(remaining);
+            }
+        }
+
+        List<AssertionError> collected = new ArrayList<>();
+        AssertionError failure;
+        while ((failure = failures.poll()) != null) {
+            collected.add(failure);
+        }
+        if (collected.size() == 1) {
+            throw collected.get(0);
+        }
+        if (!collected.isEmpty()) {
+            AssertionError aggregate = new AssertionError(collected.size() + " request assertions failed");
+            collected.forEach(aggregate::addSuppressed);
+            throw aggregate;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package it.croway.openai.mock;
+
+import okio.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable pre-rendered chat completion body.
+ * Only the ids, timestamp and usage between its static segments are filled in per response.
+ */
+public class CompiledResponse {
+
+    /**
+     * Dynamic values spliced between the pre-rendered segments.
+     */
+    public enum Slot {
+        COMPLETION_ID,
+        CREATED,
+        TOOL_CALL_ID,
+        /**
+         * The {@code usage} field with its leading comma, or nothing when usage is not reported.
+         */
+        USAGE
+    }
+
+    private final byte[][] segments;
+    private final Slot[] slots;
+    private final long staticSize;
+    private volatile byte[][] deflatedSegments;
+
+    public CompiledResponse(List<byte[]> segments, List<Slot> slots) {
+        if (segments.size() != slots.size() + 1) {
+            throw new IllegalArgumentException("A compiled response needs exactly one more segment than slots");
+        }
+        this.segments = segments.toArray(new byte[0][]);
+        this.slots = slots.toArray(new Slot[0]);
+        long size = 0;
+        for (byte[] segment : this.segments) {
+            size += segment.length;
+        }
+        this.staticSize = size;
+    }
+
+    /**
+     * Returns the size of the uncompressed body rendered with the given token usage.
+     */
+    public long size(TokenUsage usage) {
+        long size = staticSize;
+        long created = System.currentTimeMillis() / 1000L;
+        for (Slot slot : slots) {
+            size += slotValue(slot, created, usage).length;
+        }
+        return size;
+    }
+
+    public Buffer render() {
+        return render((TokenUsage) null);
+    }
+
+    /**
+     * @param usage the token usage to report, or {@code null} to leave it out
+     */
+    public Buffer render(TokenUsage usage) {
+        Buffer body = new Buffer();
+        long created = System.currentTimeMillis() / 1000L;
+        for (int i = 0; i < slots.length; i++) {
+            body.write(segments[i]);
+            switch (slots[i]) {
+                case CREATED:
+                    body.writeDecimalLong(created);
+                    break;
+                case USAGE:
+                    if (usage != null) {
+                        body.writeUtf8(",\"usage\":").writeUtf8(usage.toJson());
+                    }
+                    break;
+                case COMPLETION_ID:
+                case TOOL_CALL_ID:
+                default:
+                    body.writeByte('"').writeUtf8(UUID.randomUUID().toString()).writeByte('"');
+                    break;
+            }
+        }
+        body.write(segments[slots.length]);
+        return body;
+    }
+
+    /**
+     * Renders the body as a gzip stream built from the precompressed segments.
+     */
+    public Buffer render(GzipEncoding gzip) {
+        return render(gzip, null);
+    }
+
+    /**
+     * Renders the body with the given token usage as a gzip stream built from the precompressed segments.
+     */
+    public Buffer render(GzipEncoding gzip, TokenUsage usage) {
+        byte[][] deflated = deflatedSegments(gzip);
+        Buffer body = new Buffer();
+        CRC32 crc = new CRC32();
+        long size = 0;
+        long created = System.currentTimeMillis() / 1000L;
+
+        gzip.writeHeader(body);
+        for (int i = 0; i < slots.length; i++) {
+            body.write(deflated[i]);
+            crc.update(segments[i]);
+            byte[] value = slotValue(slots[i], created, usage);
+            if (value.length > 0) {
+                gzip.writeStored(body, value);
+            }
+            crc.update(value);
+            size += segments[i].length + value.length;
+        }
+        body.write(deflated[slots.length]);
+        crc.update(segments[slots.length]);
+        size += segments[slots.length].length;
+        gzip.writeTrailer(body, crc.getValue(), size);
+        return body;
+    }
+
+    private static byte[] slotValue(Slot slot, long created, TokenUsage usage) {
+        switch (slot) {
+            case CREATED:
+                return Long.toString(created).getBytes(StandardCharsets.US_ASCII);
+            case USAGE:
+                return usage != null
+                        ? (",\"usage\":" + usage.toJson()).getBytes(StandardCharsets.US_ASCII)
+                        : new byte[0];
+            case COMPLETION_ID:
+            case TOOL_CALL_ID:
+            default:
+                return ('"' + UUID.randomUUID().toString() + '"').getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Deflates the segments on first use; concurrent first uses may both compute them.
+     */
+    private byte[][] deflatedSegments(GzipEncoding gzip) {
+        byte[][] deflated = deflatedSegments;
+        if (deflated == null) {
+            deflated = new byte[segments.length][];
+            for (int i = 0; i < segments.length; i++) {
+                deflated[i] = gzip.deflateSegment(segments[i]);
+            }
+            deflatedSegments = deflated;
+        }
+        return deflated;
+    }
+
+    public int getSlotCount() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,60 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.Collections;
+
+/**
+ * Handles requests to the legacy completions endpoint, matching the prompt like a user message.
+ */
+public class CompletionsHandler implements EndpointHandler {
+    private final ExpectationResolver resolver;
+    private final OpenAIMockConfiguration configuration;
+    private final ResponseBuilder responseBuilder;
+    private final ObjectMapper objectMapper;
+
+    public CompletionsHandler(ExpectationResolver resolver, ObjectMapper objectMapper) {
+        this(resolver, new OpenAIMockConfiguration(), objectMapper);
+    }
+
+    public CompletionsHandler(ExpectationResolver resolver, OpenAIMockConfiguration configuration, ObjectMapper objectMapper) {
+        this.resolver = resolver;
+        this.configuration = configuration;
+        this.responseBuilder = new ResponseBuilder(objectMapper);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public MockResponse handle(RecordedRequest request, RequestOutcome outcome) throws Exception {
+        JsonNode root = objectMapper.readTree(request.getBody().peek().inputStream());
+        JsonNode prompt = root.path("prompt").isArray() ? root.path("prompt").path(0) : root.path("prompt");
+        if (!prompt.isTextual()) {
+            throw new IllegalArgumentException("Completions request without a string 'prompt'");
+        }
+        String model = root.path("model").isTextual() ? root.path("model").asText() : null;
+        Double temperature = root.path("temperature").isNumber() ? root.path("temperature").asDouble() : null;
+
+        TokenCounter tokenCounter = configuration.getTokenCounter();
+        int promptTokens = tokenCounter != null ? tokenCounter.count(prompt.asText()) : 0;
+        outcome.chargePromptTokens(promptTokens);
+
+        RequestContext context = new RequestContext(prompt.asText(), false, 0, null, null, false, model, temperature,
+                Collections.emptyList(), request.getBody(), objectMapper);
+        MockExpectation expectation = resolver.resolve(context, outcome);
+        resolver.assertRequest(expectation, context);
+        if (expectation.getCustomResponseFunction() != null) {
+            outcome.setResponseType(MockResponseType.CUSTOM_FUNCTION);
+            return resolver.applyLatency(expectation, expectation.getCustomResponseFunction().apply(request, prompt.asText()));
+        }
+
+        outcome.setResponseType(MockResponseType.SIMPLE_TEXT);
+        TokenUsage usage = tokenCounter != null
+                ? new TokenUsage(promptTokens, tokenCounter.count(expectation.getExpectedResponse()))
+                : null;
+        return resolver.applyLatency(expectation,
+                responseBuilder.createTextCompletionResponse(model, expectation.getExpectedResponse(), usage));
+    }
+}
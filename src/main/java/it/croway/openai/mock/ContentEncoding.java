@@ -0,0 +1,21 @@
+package it.croway.openai.mock;
+
+import okio.Buffer;
+
+import java.io.IOException;
+
+/**
+ * A response body encoding that can be negotiated through {@code Accept-Encoding}, such as {@link GzipEncoding}.
+ */
+public interface ContentEncoding {
+
+    /**
+     * Returns the token used in {@code Accept-Encoding} and {@code Content-Encoding}.
+     */
+    String getName();
+
+    /**
+     * Returns the encoded body, consuming the given one.
+     */
+    Buffer encode(Buffer body) throws IOException;
+}
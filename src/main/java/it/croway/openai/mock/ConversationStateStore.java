@@ -0,0 +1,195 @@
+package it.croway.openai.mock;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tool sequence progress of conversations identified by an id, bounded in size and idle time.
+ */
+public class ConversationStateStore {
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+    public static final long DEFAULT_IDLE_TTL_NANOS = TimeUnit.MINUTES.toNanos(30);
+
+    /**
+     * Why a conversation was evicted.
+     */
+    public enum EvictionReason {
+        EXPIRED,
+        CAPACITY
+    }
+
+    private final ConcurrentMap<String, State> states;
+    private final int maxEntries;
+    private final int lowWaterMark;
+    private final long idleTtlNanos;
+    private final long sweepIntervalNanos;
+    private final MockMetrics metrics;
+    private final AtomicBoolean sweeping;
+    private final AtomicLong nextSweepNanos;
+
+    public ConversationStateStore() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_IDLE_TTL_NANOS, TimeUnit.NANOSECONDS, new MockMetrics());
+    }
+
+    /**
+     * @param idleTtl how long a conversation may go without requests before it is evicted,
+     *                or 0 to only bound the number of conversations
+     */
+    public ConversationStateStore(int maxEntries, long idleTtl, TimeUnit unit, MockMetrics metrics) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum number of conversations must be positive");
+        }
+        if (idleTtl < 0) {
+            throw new IllegalArgumentException("Conversation idle TTL must not be negative");
+        }
+        this.states = new ConcurrentHashMap<>();
+        this.maxEntries = maxEntries;
+        this.lowWaterMark = maxEntries - Math.max(1, maxEntries / 8);
+        this.idleTtlNanos = unit.toNanos(idleTtl);
+        this.sweepIntervalNanos = Math.max(1, idleTtlNanos / 4);
+        this.metrics = metrics;
+        this.sweeping = new AtomicBoolean();
+        this.nextSweepNanos = new AtomicLong(System.nanoTime() + sweepIntervalNanos);
+    }
+
+    /**
+     * Returns the tool step to serve to the conversation and records it.
+     * A request ending with the same tool call id as the recorded step is a retry and gets that step again.
+     */
+    public int step(String conversationId, int historyRounds, String lastToolCallId) {
+        return step(conversationId, historyRounds, lastToolCallId, System.nanoTime());
+    }
+
+    int step(String conversationId, int historyRounds, String lastToolCallId, long nowNanos) {
+        State state = states.get(conversationId);
+        if (state != null && isExpired(state, nowNanos) && states.remove(conversationId, state)) {
+            metrics.recordConversationEvictions(EvictionReason.EXPIRED, 1);
+            state = null;
+        }
+        if (state == null) {
+            State created = new State(nowNanos);
+            state = states.putIfAbsent(conversationId, created);
+            if (state == null) {
+                state = created;
+            }
+        }
+        state.lastAccessNanos = nowNanos;
+
+        Progress previous;
+        Progress next;
+        do {
+            previous = state.progress.get();
+            if (previous == null) {
+                next = new Progress(historyRounds, lastToolCallId);
+            } else if (lastToolCallId != null && lastToolCallId.equals(previous.lastToolCallId)) {
+                next = previous;
+            } else {
+                next = new Progress(Math.max(previous.round + 1, historyRounds), lastToolCallId);
+            }
+        } while (next != previous && !state.progress.compareAndSet(previous, next));
+
+        if (states.size() > maxEntries || idleTtlNanos > 0 && nowNanos - nextSweepNanos.get() >= 0) {
+            sweep(nowNanos);
+        }
+        return next.round;
+    }
+
+    public void reset(String conversationId) {
+        states.remove(conversationId);
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Removes the expired conversations, then the least recently used ones over the maximum.
+     */
+    void sweep(long nowNanos) {
+        if (!sweeping.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            nextSweepNanos.set(nowNanos + sweepIntervalNanos);
+            int expired = 0;
+            for (Iterator<State> it = states.values().iterator(); it.hasNext(); ) {
+                if (isExpired(it.next(), nowNanos)) {
+                    it.remove();
+                    expired++;
+                }
+            }
+            if (expired > 0) {
+                metrics.recordConversationEvictions(EvictionReason.EXPIRED, expired);
+            }
+            if (states.size() > maxEntries) {
+                evictLeastRecentlyUsed();
+            }
+        } finally {
+            sweeping.set(false);
+        }
+    }
+
+    /**
+     * Evicts down to the low water mark.
+     */
+    private void evictLeastRecentlyUsed() {
+        long[] accessTimes = new long[states.size() + 16];
+        int count = 0;
+        for (State state : states.values()) {
+            if (count == accessTimes.length) {
+                break;
+            }
+            accessTimes[count++] = state.lastAccessNanos;
+        }
+        int excess = count - lowWaterMark;
+        if (excess <= 0) {
+            return;
+        }
+        Arrays.sort(accessTimes, 0, count);
+        long cutoff = accessTimes[excess - 1];
+
+        int evicted = 0;
+        for (Iterator<Map.Entry<String, State>> it = states.entrySet().iterator(); it.hasNext() && evicted < excess; ) {
+            if (it.next().getValue().lastAccessNanos - cutoff <= 0) {
+                it.remove();
+                evicted++;
+            }
+        }
+        metrics.recordConversationEvictions(EvictionReason.CAPACITY, evicted);
+    }
+
+    private boolean isExpired(State state, long nowNanos) {
+        return idleTtlNanos > 0 && nowNanos - state.lastAccessNanos > idleTtlNanos;
+    }
+
+    private static final class State {
+        private final AtomicReference<Progress> progress;
+        private volatile long lastAccessNanos;
+
+        State(long nowNanos) {
+            this.progress = new AtomicReference<>();
+            this.lastAccessNanos = nowNanos;
+        }
+    }
+
+    private static final class Progress {
+        private final int round;
+        private final String lastToolCallId;
+
+        Progress(int round, String lastToolCallId) {
+            this.round = round;
+            this.lastToolCallId = lastToolCallId;
+        }
+    }
+}
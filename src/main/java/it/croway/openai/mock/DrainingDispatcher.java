@@ -0,0 +1,41 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatcher removing requests from {@link MockWebServer}'s unbounded request queue,
+ * which would otherwise keep every request body on the heap.
+ */
+class DrainingDispatcher extends Dispatcher {
+    private final MockWebServer server;
+    private final Dispatcher delegate;
+
+    DrainingDispatcher(MockWebServer server, Dispatcher delegate) {
+        this.server = server;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        try {
+            return delegate.dispatch(request);
+        } finally {
+            server.takeRequest(0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public MockResponse peek() {
+        return delegate.peek();
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+}
@@ -0,0 +1,53 @@
+package it.croway.openai.mock;
+
+/**
+ * Generates deterministic unit vectors seeded by a hash of the input text.
+ */
+public final class EmbeddingGenerator {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final float UNIT = 1.0f / (1 << 23);
+
+    private EmbeddingGenerator() {
+    }
+
+    /**
+     * Fills the first {@code dimensions} components of {@code target} with the L2-normalized
+     * embedding of the input.
+     */
+    public static void fill(String input, float[] target, int dimensions) {
+        long state = seed(input);
+        double sumOfSquares = 0;
+        for (int i = 0; i < dimensions; i++) {
+            state += GOLDEN_GAMMA;
+            // 24 random bits mapped to [-1, 1)
+            float value = (int) (mix(state) >>> 40) * UNIT - 1.0f;
+            target[i] = value;
+            sumOfSquares += value * value;
+        }
+        float scale = sumOfSquares > 0 ? (float) (1.0 / Math.sqrt(sumOfSquares)) : 0f;
+        for (int i = 0; i < dimensions; i++) {
+            target[i] *= scale;
+        }
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of the UTF-16 code units of the input.
+     */
+    static long seed(String input) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,108 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Handles embeddings requests, matching every input like a user message.
+ */
+public class EmbeddingsHandler implements EndpointHandler {
+    private final ExpectationResolver resolver;
+    private final OpenAIMockConfiguration configuration;
+    private final ObjectMapper objectMapper;
+
+    public EmbeddingsHandler(ExpectationResolver resolver, OpenAIMockConfiguration configuration, ObjectMapper objectMapper) {
+        this.resolver = resolver;
+        this.configuration = configuration;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public MockResponse handle(RecordedRequest request, RequestOutcome outcome) throws Exception {
+        JsonNode root = objectMapper.readTree(request.getBody().peek().inputStream());
+        // A request without a model only matches expectations without one; the default is only reported
+        String model = root.path("model").isTextual() ? root.path("model").asText() : null;
+        List<String> inputs = readInputs(root.path("input"));
+        boolean base64 = "base64".equals(root.path("encoding_format").asText());
+        int dimensions = root.path("dimensions").isInt() && root.path("dimensions").asInt() > 0
+                ? root.path("dimensions").asInt()
+                : configuration.getEmbeddingDimensions();
+
+        outcome.setInput(inputs.get(0));
+        MockExpectation first = null;
+        float[] generated = null;
+        Buffer body = new Buffer();
+        EmbeddingsWriter writer = new EmbeddingsWriter(body, base64);
+        TokenCounter tokenCounter = configuration.getTokenCounter();
+        int promptTokens = 0;
+        if (tokenCounter != null) {
+            for (String input : inputs) {
+                promptTokens += tokenCounter.count(input);
+            }
+            outcome.chargePromptTokens(promptTokens);
+        }
+        for (int i = 0; i < inputs.size(); i++) {
+            String input = inputs.get(i);
+            RequestContext context = new RequestContext(input, false, 0, null, null, false,
+                    model, null, Collections.emptyList(), request.getBody(), objectMapper);
+            MockExpectation expectation = resolve(context, outcome);
+            if (expectation != null && expectation.getEmbedding() != null) {
+                resolver.assertRequest(expectation, context);
+                writer.writeEmbedding(i, expectation.getEmbedding(), expectation.getEmbedding().length);
+                first = first != null ? first : expectation;
+            } else if (configuration.isDeterministicEmbeddings()) {
+                if (generated == null) {
+                    generated = new float[dimensions];
+                }
+                EmbeddingGenerator.fill(input, generated, dimensions);
+                writer.writeEmbedding(i, generated, dimensions);
+            } else {
+                throw new IllegalStateException("No embedding defined for input: " + input);
+            }
+        }
+        writer.writeEnd(objectMapper.writeValueAsBytes(model != null ? model : ResponseBuilder.MODEL), promptTokens);
+
+        outcome.setResponseType(MockResponseType.EMBEDDING);
+        MockResponse response = new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+        return first != null ? resolver.applyLatency(first, response) : configuration.getDefaultLatency().apply(response);
+    }
+
+    private MockExpectation resolve(RequestContext context, RequestOutcome outcome) {
+        if (!configuration.isDeterministicEmbeddings()) {
+            return resolver.resolve(context, outcome);
+        }
+        MockExpectation expectation = resolver.find(context);
+        if (expectation != null && outcome.getExpectation() == null) {
+            outcome.setExpectation(expectation);
+        }
+        return expectation;
+    }
+
+    private List<String> readInputs(JsonNode input) {
+        if (input.isTextual()) {
+            return Collections.singletonList(input.asText());
+        }
+        if (input.isArray() && input.size() > 0) {
+            List<String> inputs = new ArrayList<>(input.size());
+            for (JsonNode item : input) {
+                if (item.isTextual()) {
+                    inputs.add(item.asText());
+                } else if (configuration.isDeterministicEmbeddings()) {
+                    // Token arrays are seeded by their JSON text
+                    inputs.add(item.toString());
+                } else {
+                    throw new IllegalArgumentException("Only string inputs are supported by the embeddings mock");
+                }
+            }
+            return inputs;
+        }
+        throw new IllegalArgumentException("Embeddings request without a string or array 'input'");
+    }
+}
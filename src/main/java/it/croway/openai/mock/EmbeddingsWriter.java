@@ -0,0 +1,145 @@
+package it.croway.openai.mock;
+
+import okio.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Writes an embeddings list straight into an okio {@link Buffer} from primitive float arrays.
+ */
+public class EmbeddingsWriter {
+    private static final byte[] LIST_START = ascii("{\"object\":\"list\",\"data\":[");
+    private static final byte[] ENTRY_START = ascii("{\"object\":\"embedding\",\"index\":");
+    private static final byte[] EMBEDDING_FIELD = ascii(",\"embedding\":");
+    private static final byte[] MODEL_FIELD = ascii("],\"model\":");
+    private static final int DECIMALS = 8;
+    private static final int SCALE = 100_000_000;
+    // Sign, integer digit, point, decimals and separator
+    private static final int MAX_VALUE_LENGTH = DECIMALS + 4;
+    private static final byte[] DIGIT_PAIRS = new byte[200];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[i * 2] = (byte) ('0' + i / 10);
+            DIGIT_PAIRS[i * 2 + 1] = (byte) ('0' + i % 10);
+        }
+    }
+
+    private final Buffer buffer;
+    private final boolean base64;
+    private byte[] bytes = new byte[0];
+    private byte[] floatBytes = new byte[0];
+    private int count;
+
+    public EmbeddingsWriter(Buffer buffer, boolean base64) {
+        this.buffer = buffer;
+        this.base64 = base64;
+        buffer.write(LIST_START);
+    }
+
+    public void writeEmbedding(int index, float[] vector, int dimensions) {
+        if (count++ > 0) {
+            buffer.writeByte(',');
+        }
+        buffer.write(ENTRY_START);
+        buffer.writeDecimalLong(index);
+        buffer.write(EMBEDDING_FIELD);
+        if (base64) {
+            writeBase64(vector, dimensions);
+        } else {
+            writeFloats(vector, dimensions);
+        }
+        buffer.writeByte('}');
+    }
+
+    /**
+     * @param modelJson the model name already encoded as a JSON string
+     */
+    public void writeEnd(byte[] modelJson, int promptTokens) {
+        buffer.write(MODEL_FIELD);
+        buffer.write(modelJson);
+        buffer.writeUtf8(",\"usage\":{\"prompt_tokens\":").writeDecimalLong(promptTokens)
+                .writeUtf8(",\"total_tokens\":").writeDecimalLong(promptTokens)
+                .writeUtf8("}}");
+    }
+
+    private void writeBase64(float[] vector, int dimensions) {
+        int length = dimensions * 4;
+        if (floatBytes.length != length) {
+            floatBytes = new byte[length];
+        }
+        int encodedLength = (length + 2) / 3 * 4;
+        if (bytes.length < encodedLength) {
+            bytes = new byte[encodedLength];
+        }
+        for (int i = 0; i < dimensions; i++) {
+            int bits = Float.floatToRawIntBits(vector[i]);
+            int offset = i * 4;
+            floatBytes[offset] = (byte) bits;
+            floatBytes[offset + 1] = (byte) (bits >>> 8);
+            floatBytes[offset + 2] = (byte) (bits >>> 16);
+            floatBytes[offset + 3] = (byte) (bits >>> 24);
+        }
+        buffer.writeByte('"');
+        buffer.write(bytes, 0, Base64.getEncoder().encode(floatBytes, bytes));
+        buffer.writeByte('"');
+    }
+
+    /**
+     * Writes the vector as a JSON array of {@code [-]d.dddddddd} values.
+     */
+    private void writeFloats(float[] vector, int dimensions) {
+        if (bytes.length < dimensions * MAX_VALUE_LENGTH + 2) {
+            bytes = new byte[dimensions * MAX_VALUE_LENGTH + 2];
+        }
+        int position = 0;
+        bytes[position++] = '[';
+        for (int i = 0; i < dimensions; i++) {
+            if (i > 0) {
+                bytes[position++] = ',';
+            }
+            float value = vector[i];
+            if (!(value >= -1f && value <= 1f)) {
+                // Out of range or not finite: only explicit embeddings can contain those
+                byte[] text = ascii(Float.isFinite(value) ? Float.toString(value) : "0");
+                int required = position + text.length + (dimensions - i) * MAX_VALUE_LENGTH + 1;
+                if (bytes.length < required) {
+                    bytes = Arrays.copyOf(bytes, required);
+                }
+                System.arraycopy(text, 0, bytes, position, text.length);
+                position += text.length;
+                continue;
+            }
+            if (value < 0) {
+                bytes[position++] = '-';
+                value = -value;
+            }
+            int scaled = (int) Math.round((double) value * SCALE);
+            bytes[position++] = (byte) ('0' + scaled / SCALE);
+            bytes[position++] = '.';
+            int fraction = scaled % SCALE;
+            int high = fraction / 10_000;
+            int low = fraction - high * 10_000;
+            position = writeFourDigits(high, position);
+            position = writeFourDigits(low, position);
+        }
+        bytes[position++] = ']';
+        buffer.write(bytes, 0, position);
+    }
+
+    private int writeFourDigits(int value, int position) {
+        int high = value / 100;
+        int low = value - high * 100;
+        bytes[position] = DIGIT_PAIRS[high * 2];
+        bytes[position + 1] = DIGIT_PAIRS[high * 2 + 1];
+        bytes[position + 2] = DIGIT_PAIRS[low * 2];
+        bytes[position + 3] = DIGIT_PAIRS[low * 2 + 1];
+        return position + 4;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,12 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Handles the requests of one endpoint of the mock, such as chat completions or embeddings.
+ */
+@FunctionalInterface
+public interface EndpointHandler {
+    MockResponse handle(RecordedRequest request, RequestOutcome outcome) throws Exception;
+}
@@ -0,0 +1,32 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * A {@code chat.completion.chunk} event stream written as its events are produced.
+ */
+public class EventStreamBody implements StreamingBody {
+    private final JsonFactory jsonFactory;
+    private final Events events;
+
+    public EventStreamBody(JsonFactory jsonFactory, Events events) {
+        this.jsonFactory = jsonFactory;
+        this.events = events;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        SseChunkWriter writer = new SseChunkWriter(jsonFactory, out, UUID.randomUUID().toString(),
+                System.currentTimeMillis() / 1000L, ResponseBuilder.MODEL);
+        events.write(writer);
+    }
+
+    @FunctionalInterface
+    public interface Events {
+        void write(SseChunkWriter writer) throws IOException;
+    }
+}
@@ -0,0 +1,96 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handles the {@code /__admin/expectations} endpoint, which lists, replaces and removes
+ * expectation sets while the server runs.
+ */
+public class ExpectationAdminHandler implements EndpointHandler {
+    private static final Logger log = LoggerFactory.getLogger(ExpectationAdminHandler.class);
+
+    public static final String EXPECTATIONS_PATH = "/__admin/expectations";
+
+    /**
+     * The methods routed to this handler, so that the unsupported ones get a 405 rather than a 404.
+     */
+    static final String[] ROUTED_METHODS = {"GET", "HEAD", "POST", "PUT", "PATCH", "DELETE"};
+
+    private final ExpectationStore store;
+    private final ExpectationFileLoader loader;
+    private final ObjectMapper objectMapper;
+    private final ResponseBuilder responseBuilder;
+
+    public ExpectationAdminHandler(ExpectationStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.loader = new ExpectationFileLoader(objectMapper);
+        this.objectMapper = objectMapper;
+        this.responseBuilder = new ResponseBuilder(objectMapper);
+    }
+
+    @Override
+    public MockResponse handle(RecordedRequest request, RequestOutcome outcome) throws Exception {
+        String path = request.getPath();
+        int queryStart = path.indexOf('?');
+        if (queryStart >= 0) {
+            path = path.substring(0, queryStart);
+        }
+        String method = request.getMethod();
+        if (path.endsWith(EXPECTATIONS_PATH)) {
+            if (!"GET".equals(method)) {
+                return methodNotAllowed(method, path, "GET");
+            }
+            return listSets();
+        }
+
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        if ("DELETE".equals(method)) {
+            if (!store.remove(name)) {
+                return responseBuilder.createErrorResponse(404, "No expectation set named " + name);
+            }
+            return listSets();
+        }
+        if (!"PUT".equals(method)) {
+            return methodNotAllowed(method, path, "PUT, DELETE");
+        }
+
+        List<MockExpectation> expectations;
+        try {
+            expectations = loader.read(request.getBody().inputStream());
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            log.warn("Invalid expectation set {}: {}", name, e.getMessage());
+            // The parser messages quote the offending JSON, so they are only logged
+            return responseBuilder.createErrorResponse(400, "Invalid expectation set " + name);
+        }
+        try {
+            store.put(name, expectations);
+        } catch (IllegalStateException e) {
+            log.warn("Rejected expectation set {}: {}", name, e.getMessage());
+            return responseBuilder.createErrorResponse(409, e.getMessage());
+        }
+        return listSets();
+    }
+
+    private MockResponse methodNotAllowed(String method, String path, String allowed) {
+        return responseBuilder.createErrorResponse(405, "Method " + method + " is not allowed on " + path)
+                .setHeader("Allow", allowed);
+    }
+
+    private MockResponse listSets() throws JsonProcessingException {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("version", store.getVersion());
+        body.put("sets", store.getSetSizes());
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(objectMapper.writeValueAsString(body));
+    }
+}
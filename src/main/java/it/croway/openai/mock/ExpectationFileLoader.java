@@ -0,0 +1,141 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Loads expectations from a JSON array or a JSON Lines file into an {@link OpenAIMockBuilder}.
+ * Entries hold an input with a response and tool steps, or a recorded request and response.
+ */
+public class ExpectationFileLoader {
+    private static final Logger log = LoggerFactory.getLogger(ExpectationFileLoader.class);
+
+    private final ObjectMapper objectMapper;
+
+    public ExpectationFileLoader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public int load(Path file, OpenAIMockBuilder builder) throws IOException {
+        int count;
+        try (MappingIterator<JsonNode> entries = objectMapper.readerFor(JsonNode.class).readValues(file.toFile())) {
+            count = addAll(entries, builder);
+        }
+        log.info("Loaded {} expectations from {}", count, file);
+        return count;
+    }
+
+    /**
+     * Reads the expectations of a document in the file format, for example the body of a
+     * request publishing an expectation set.
+     */
+    public List<MockExpectation> read(InputStream content) throws IOException {
+        List<MockExpectation> expectations = new ArrayList<>();
+        OpenAIMockBuilder builder = new OpenAIMockBuilder(null, expectations, new OpenAIMockConfiguration());
+        try (MappingIterator<JsonNode> entries = objectMapper.readerFor(JsonNode.class).readValues(content)) {
+            addAll(entries, builder);
+        }
+        return expectations;
+    }
+
+    private int addAll(MappingIterator<JsonNode> entries, OpenAIMockBuilder builder) throws IOException {
+        int count = 0;
+        while (entries.hasNextValue()) {
+            addExpectation(entries.nextValue(), builder);
+            count++;
+        }
+        return count;
+    }
+
+    private void addExpectation(JsonNode entry, OpenAIMockBuilder builder) throws IOException {
+        JsonNode input = inputOf(entry);
+        if (!input.isTextual()) {
+            throw new IllegalArgumentException("Expectation entry without a textual 'input': " + entry);
+        }
+        InputMatchType matchType;
+        switch (entry.path("match").asText("exact")) {
+            case "contains":
+                matchType = InputMatchType.CONTAINS;
+                break;
+            case "regex":
+                matchType = InputMatchType.REGEX;
+                break;
+            case "exact":
+                matchType = InputMatchType.EXACT;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown match type in expectation entry: " + entry);
+        }
+        MockExpectation expectation = new MockExpectation(input.asText(), matchType);
+        if (entry.path("model").isTextual()) {
+            expectation.setModel(entry.path("model").asText());
+        }
+        applyResponse(entry, expectation);
+        builder.addExpectation(expectation);
+    }
+
+    /**
+     * Sets the response and tool steps described by an entry on an expectation. Shared by
+     * the eager entries of this loader and the lazily decoded ones of {@link MappedExpectationLoader}.
+     */
+    void applyResponse(JsonNode entry, MockExpectation expectation) throws IOException {
+        for (JsonNode step : entry.path("toolSteps")) {
+            ToolExecutionStep toolStep = new ToolExecutionStep();
+            for (JsonNode toolCall : step) {
+                ToolCallDefinition definition = new ToolCallDefinition(toolCall.path("name").asText());
+                Iterator<Map.Entry<String, JsonNode>> fields = toolCall.path("arguments").fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    definition.addArgument(field.getKey(), objectMapper.treeToValue(field.getValue(), Object.class));
+                }
+                toolStep.addToolCall(definition);
+            }
+            if (!toolStep.isEmpty()) {
+                expectation.addToolExecutionStep(toolStep);
+            }
+        }
+
+        JsonNode response = entry.path("response");
+        if (response.isTextual()) {
+            expectation.setExpectedResponse(response.asText());
+        } else if (response.isObject()) {
+            expectation.setCustomResponseFunction(recordedResponse(response));
+        }
+    }
+
+    /**
+     * Returns the input of an entry, either given explicitly or taken from a recorded request.
+     */
+    static JsonNode inputOf(JsonNode entry) {
+        if (entry.has("input")) {
+            return entry.path("input");
+        }
+        for (JsonNode message : entry.path("request").path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                return message.path("content");
+            }
+        }
+        return MissingNode.getInstance();
+    }
+
+    private BiFunction<RecordedRequest, String, MockResponse> recordedResponse(JsonNode response) throws IOException {
+        byte[] body = objectMapper.writeValueAsBytes(response);
+        return (request, input) -> new MockResponse().setBody(new Buffer().write(body));
+    }
+}
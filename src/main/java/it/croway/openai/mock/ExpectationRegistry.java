@@ -0,0 +1,215 @@
+package it.croway.openai.mock;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable index of mock expectations, grouped by model and by how their input is matched.
+ */
+public class ExpectationRegistry {
+    private static final ExpectationRegistry EMPTY = new ExpectationRegistry(Collections.emptyList());
+
+    private final List<MockExpectation> expectations;
+    private final Map<String, MatcherTable> tablesByModel;
+    private final MatcherTable anyModelTable;
+    private final Set<String> duplicateInputs;
+    private final FuzzyIndex fuzzyIndex;
+
+    public ExpectationRegistry(List<MockExpectation> expectations) {
+        this(expectations, false);
+    }
+
+    public ExpectationRegistry(List<MockExpectation> expectations, boolean fuzzyIndex) {
+        this.expectations = Collections.unmodifiableList(new ArrayList<>(expectations));
+        this.duplicateInputs = new LinkedHashSet<>();
+
+        Map<String, List<Integer>> idsByModel = new LinkedHashMap<>();
+        List<Integer> anyModelIds = new ArrayList<>();
+        for (int id = 0; id < this.expectations.size(); id++) {
+            String model = this.expectations.get(id).getModel();
+            if (model != null) {
+                idsByModel.computeIfAbsent(model, key -> new ArrayList<>()).add(id);
+            } else {
+                anyModelIds.add(id);
+            }
+        }
+
+        this.tablesByModel = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> entry : idsByModel.entrySet()) {
+            tablesByModel.put(entry.getKey(), new MatcherTable(entry.getValue()));
+        }
+        this.anyModelTable = new MatcherTable(anyModelIds);
+        this.fuzzyIndex = fuzzyIndex ? new FuzzyIndex(this.expectations) : null;
+    }
+
+    public static ExpectationRegistry empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the first expectation matching the request, or {@code null} if none matches.
+     */
+    public MockExpectation find(RequestContext context) {
+        int best = anyModelTable.find(context, Integer.MAX_VALUE);
+        if (context.getModel() != null) {
+            MatcherTable modelTable = tablesByModel.get(context.getModel());
+            if (modelTable != null) {
+                best = modelTable.find(context, best);
+            }
+        }
+        return best != Integer.MAX_VALUE ? expectations.get(best) : null;
+    }
+
+    /**
+     * Returns the first expectation matching the given input alone, or {@code null} if none matches.
+     * Expectations requiring a model or other request conditions are not considered.
+     */
+    public MockExpectation find(String input) {
+        return find(new RequestContext(input, false, 0, null, null, false, null, null,
+                Collections.emptyList(), null, null));
+    }
+
+    /**
+     * Returns the expectations closest to the request's input, scoring at least {@code minScore}, best first.
+     */
+    public List<FuzzyIndex.Candidate> findNearest(RequestContext context, int limit, double minScore) {
+        if (fuzzyIndex == null) {
+            throw new IllegalStateException("Fuzzy index not built for this registry");
+        }
+        return fuzzyIndex.nearest(context.getFirstUserMessage(), limit, minScore, expectation ->
+                (expectation.getModel() == null || expectation.getModel().equals(context.getModel()))
+                        && expectation.matchesConditions(context));
+    }
+
+    public boolean hasFuzzyIndex() {
+        return fuzzyIndex != null;
+    }
+
+    public List<MockExpectation> getExpectations() {
+        return expectations;
+    }
+
+    public Set<String> getDuplicateInputs() {
+        return Collections.unmodifiableSet(duplicateInputs);
+    }
+
+    public boolean hasDuplicates() {
+        return !duplicateInputs.isEmpty();
+    }
+
+    public int size() {
+        return expectations.size();
+    }
+
+    /**
+     * Expectations sharing the same model requirement, indexed by input match type.
+     */
+    private class MatcherTable {
+        private final Map<String, int[]> exactIds;
+        private final LiteralAutomaton containsAutomaton;
+        private final int[] containsIds;
+        private final int[] scannedIds;
+
+        MatcherTable(List<Integer> ids) {
+            Map<String, List<Integer>> exact = new HashMap<>(Math.max(16, ids.size() * 4 / 3 + 1));
+            Set<String> unconditionalInputs = new HashSet<>();
+            List<String> literals = new ArrayList<>();
+            List<Integer> literalIds = new ArrayList<>();
+            List<Integer> scanned = new ArrayList<>();
+
+            for (int id : ids) {
+                MockExpectation expectation = expectations.get(id);
+                String input = expectation.getExpectedInput();
+                switch (expectation.getInputMatchType()) {
+                    case CONTAINS:
+                        if (input.isEmpty()) {
+                            scanned.add(id);
+                        } else {
+                            literals.add(input);
+                            literalIds.add(id);
+                        }
+                        break;
+                    case REGEX:
+                        scanned.add(id);
+                        break;
+                    case EXACT:
+                    default:
+                        exact.computeIfAbsent(input, key -> new ArrayList<>()).add(id);
+                        if (expectation.getConditions().isEmpty() && !unconditionalInputs.add(input)) {
+                            duplicateInputs.add(input);
+                        }
+                        break;
+                }
+            }
+
+            this.exactIds = new HashMap<>(Math.max(16, exact.size() * 4 / 3 + 1));
+            for (Map.Entry<String, List<Integer>> entry : exact.entrySet()) {
+                exactIds.put(entry.getKey(), toArray(entry.getValue()));
+            }
+            this.containsAutomaton = literals.isEmpty() ? null : new LiteralAutomaton(literals);
+            this.containsIds = toArray(literalIds);
+            this.scannedIds = toArray(scanned);
+        }
+
+        /**
+         * Returns the lowest id below {@code best} whose expectation matches, or {@code best}.
+         */
+        int find(RequestContext context, int best) {
+            String input = context.getFirstUserMessage();
+            if (input == null) {
+                return best;
+            }
+
+            int[] candidates = exactIds.get(input);
+            if (candidates != null) {
+                for (int id : candidates) {
+                    if (id >= best) {
+                        break;
+                    }
+                    if (expectations.get(id).matchesConditions(context)) {
+                        best = id;
+                        break;
+                    }
+                }
+            }
+
+            if (containsAutomaton != null) {
+                BitSet found = containsAutomaton.findAll(input);
+                for (int literal = found.nextSetBit(0); literal >= 0; literal = found.nextSetBit(literal + 1)) {
+                    int id = containsIds[literal];
+                    if (id < best && expectations.get(id).matchesConditions(context)) {
+                        best = id;
+                    }
+                }
+            }
+
+            for (int id : scannedIds) {
+                if (id >= best) {
+                    break;
+                }
+                MockExpectation expectation = expectations.get(id);
+                if (expectation.matches(input) && expectation.matchesConditions(context)) {
+                    best = id;
+                    break;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
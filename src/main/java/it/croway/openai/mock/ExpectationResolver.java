@@ -0,0 +1,130 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.MockResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Finds the expectation for a request on behalf of every endpoint handler.
+ */
+public class ExpectationResolver {
+    private static final Logger log = LoggerFactory.getLogger(ExpectationResolver.class);
+
+    /**
+     * Lowest similarity of the nearest candidates listed when fuzzy matching finds nothing.
+     */
+    private static final double MISS_CANDIDATE_MIN_SCORE = 0.1;
+
+    private final ExpectationStore store;
+    private final OpenAIMockConfiguration configuration;
+    private final MockMetrics metrics;
+
+    public ExpectationResolver(ExpectationRegistry registry, OpenAIMockConfiguration configuration, MockMetrics metrics) {
+        this(ExpectationStore.of(registry), configuration, metrics);
+    }
+
+    public ExpectationResolver(ExpectationStore store, OpenAIMockConfiguration configuration, MockMetrics metrics) {
+        this.store = store;
+        this.configuration = configuration;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the loaded expectation matching the request.
+     *
+     * @throws NoMatchingExpectationException if fuzzy matching is enabled and nothing is close enough
+     * @throws IllegalStateException          if no expectation matches
+     */
+    public MockExpectation resolve(RequestContext context, RequestOutcome outcome) {
+        String input = context.getFirstUserMessage();
+        outcome.setInput(input);
+        ExpectationRegistry registry = store.getRegistry();
+        MockExpectation expectation = registry.find(context);
+        if (expectation == null && configuration.isFuzzyMatching()) {
+            List<FuzzyIndex.Candidate> candidates = registry.findNearest(context, 1, configuration.getFuzzyThreshold());
+            if (!candidates.isEmpty()) {
+                expectation = candidates.get(0).getExpectation();
+                log.debug("Fuzzy matched input {} to expectation {} with score {}",
+                        input, expectation.getExpectedInput(), candidates.get(0).getScore());
+            } else {
+                metrics.recordUnmatched(input);
+                // Misses are rare, so a wider and slower search for the candidates to report is fine
+                throw new NoMatchingExpectationException(input, registry.findNearest(context,
+                        configuration.getFuzzyCandidates(), MISS_CANDIDATE_MIN_SCORE));
+            }
+        }
+        if (expectation == null) {
+            metrics.recordUnmatched(input);
+            throw new IllegalStateException(String.format("No matching mock expectation found for input: %s", input));
+        }
+        expectation.ensureLoaded();
+        outcome.setExpectation(expectation);
+        sampleFault(expectation, outcome);
+        return expectation;
+    }
+
+    /**
+     * Decides the fault of the response as soon as the expectation is known.
+     * @throws FaultInjectedException if the sampled fault does not need the rendered body
+     */
+    private void sampleFault(MockExpectation expectation, RequestOutcome outcome) {
+        FaultPolicy faultPolicy = expectation.getFaultPolicy() != null
+                ? expectation.getFaultPolicy()
+                : configuration.getFaultPolicy();
+        if (faultPolicy == null || outcome.isFaultSampled()) {
+            return;
+        }
+        Fault fault = faultPolicy.sample();
+        outcome.setFault(fault);
+        if (fault != null && !fault.needsBody()) {
+            throw new FaultInjectedException(fault);
+        }
+    }
+
+    /**
+     * Returns the loaded expectation matching the request exactly, or {@code null} without
+     * fuzzy fallback or unmatched metrics, for endpoints that can answer misses themselves.
+     */
+    public MockExpectation find(RequestContext context) {
+        MockExpectation expectation = store.getRegistry().find(context);
+        if (expectation != null) {
+            expectation.ensureLoaded();
+        }
+        return expectation;
+    }
+
+    /**
+     * Runs the expectation's request assertion, if any, inline or on the async verifier.
+     */
+    public void assertRequest(MockExpectation expectation, RequestContext context) {
+        if (expectation.getRequestAssertion() == null) {
+            return;
+        }
+        AsyncRequestVerifier verifier = configuration.getAsyncVerifier();
+        if (verifier != null) {
+            verifier.submit(context.getFirstUserMessage(), expectation.getRequestAssertion(), context.getRequestBody());
+        } else {
+            expectation.getRequestAssertion().accept(context.getRequestBody());
+        }
+    }
+
+    /**
+     * Delays the response by the expectation's latency profile, or the default one.
+     */
+    public MockResponse applyLatency(MockExpectation expectation, MockResponse response) {
+        return getLatencyProfile(expectation).apply(response);
+    }
+
+    /**
+     * Returns the expectation's latency profile, or the default one.
+     */
+    public LatencyProfile getLatencyProfile(MockExpectation expectation) {
+        return expectation.getLatencyProfile() != null ? expectation.getLatencyProfile() : configuration.getDefaultLatency();
+    }
+
+    public ExpectationRegistry getRegistry() {
+        return store.getRegistry();
+    }
+}
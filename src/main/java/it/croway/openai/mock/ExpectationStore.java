@@ -0,0 +1,123 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes the expectations of a mock as immutable snapshots, so they can be changed while
+ * the server is handling traffic.
+ */
+public class ExpectationStore {
+    private static final Logger log = LoggerFactory.getLogger(ExpectationStore.class);
+
+    public static final String DEFAULT_SET = "default";
+
+    private final OpenAIMockConfiguration configuration;
+    private final ObjectMapper objectMapper;
+    private final AtomicReference<Snapshot> current;
+
+    public ExpectationStore(OpenAIMockConfiguration configuration, ObjectMapper objectMapper) {
+        this.configuration = configuration;
+        this.objectMapper = objectMapper;
+        this.current = new AtomicReference<>(new Snapshot(Collections.emptyMap(), ExpectationRegistry.empty(), 0));
+    }
+
+    /**
+     * Returns a store serving a fixed registry, for handlers used on their own.
+     */
+    public static ExpectationStore of(ExpectationRegistry registry) {
+        ExpectationStore store = new ExpectationStore(new OpenAIMockConfiguration(), new ObjectMapper());
+        store.current.set(new Snapshot(Collections.emptyMap(), registry, 0));
+        return store;
+    }
+
+    /**
+     * Returns the registry of the current snapshot.
+     */
+    public ExpectationRegistry getRegistry() {
+        return current.get().registry;
+    }
+
+    /**
+     * Adds the set, or replaces the set of the same name keeping its position.
+     *
+     * @throws IllegalStateException if an exact input is defined twice without conditions
+     */
+    public synchronized void put(String name, List<MockExpectation> expectations) {
+        Map<String, List<MockExpectation>> sets = new LinkedHashMap<>(current.get().sets);
+        sets.put(name, Collections.unmodifiableList(new ArrayList<>(expectations)));
+        publish(sets);
+        log.info("Published expectation set {} with {} expectations", name, expectations.size());
+    }
+
+    /**
+     * Removes the set, returning whether it existed.
+     */
+    public synchronized boolean remove(String name) {
+        Map<String, List<MockExpectation>> sets = new LinkedHashMap<>(current.get().sets);
+        if (sets.remove(name) == null) {
+            return false;
+        }
+        publish(sets);
+        log.info("Removed expectation set {}", name);
+        return true;
+    }
+
+    /**
+     * Returns the size of every set of the current snapshot, by name in matching order.
+     */
+    public Map<String, Integer> getSetSizes() {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        for (Map.Entry<String, List<MockExpectation>> entry : current.get().sets.entrySet()) {
+            sizes.put(entry.getKey(), entry.getValue().size());
+        }
+        return sizes;
+    }
+
+    /**
+     * Returns the number of snapshots published so far.
+     */
+    public long getVersion() {
+        return current.get().version;
+    }
+
+    private void publish(Map<String, List<MockExpectation>> sets) {
+        List<MockExpectation> all = new ArrayList<>();
+        for (List<MockExpectation> set : sets.values()) {
+            all.addAll(set);
+        }
+        ExpectationRegistry registry = new ExpectationRegistry(all, configuration.isFuzzyMatching());
+        if (registry.hasDuplicates()) {
+            throw new IllegalStateException("Duplicate expectations defined for inputs: " + registry.getDuplicateInputs());
+        }
+        ResponseCompiler compiler = new ResponseCompiler(objectMapper);
+        for (MockExpectation expectation : registry.getExpectations()) {
+            // Lazily loaded expectations are compiled when their response is decoded, and
+            // expectations kept from the previous snapshot are compiled already
+            if (expectation.isLoaded() && expectation.getCompiledResponse() == null) {
+                compiler.compile(expectation);
+            }
+        }
+        current.set(new Snapshot(Collections.unmodifiableMap(sets), registry, current.get().version + 1));
+    }
+
+    private static final class Snapshot {
+        private final Map<String, List<MockExpectation>> sets;
+        private final ExpectationRegistry registry;
+        private final long version;
+
+        Snapshot(Map<String, List<MockExpectation>> sets, ExpectationRegistry registry, long version) {
+            this.sets = sets;
+            this.registry = registry;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A transport failure injected into a response.
+ */
+public final class Fault {
+    private static final ByteString EVENT_SEPARATOR = ByteString.encodeUtf8("\n\n");
+
+    /**
+     * Length of the throttle period of bandwidth-limited bodies.
+     */
+    private static final long THROTTLE_PERIOD_MILLIS = 100;
+
+    public enum Type {
+        /** The connection is closed before the status line is written. */
+        RESET_BEFORE_HEADERS,
+        /** The headers are written, then the connection is closed without a body. */
+        RESET_AFTER_HEADERS,
+        /** Part of the body is written, then the connection is closed. */
+        TRUNCATED_BODY,
+        /** The body is written no faster than a number of bytes per second. */
+        THROTTLED_BODY,
+        /** One server-sent event, or the JSON body, is cut short but delivered in full. */
+        MALFORMED_BODY,
+        /** A server error, repeated for the following requests of the burst. */
+        SERVER_ERROR
+    }
+
+    private final Type type;
+    private final double fraction;
+    private final long bytesPerSecond;
+    private final int statusCode;
+    private final int burstLength;
+
+    private Fault(Type type, double fraction, long bytesPerSecond, int statusCode, int burstLength) {
+        this.type = type;
+        this.fraction = fraction;
+        this.bytesPerSecond = bytesPerSecond;
+        this.statusCode = statusCode;
+        this.burstLength = burstLength;
+    }
+
+    public static Fault resetBeforeHeaders() {
+        return new Fault(Type.RESET_BEFORE_HEADERS, 0, 0, 0, 1);
+    }
+
+    public static Fault resetAfterHeaders() {
+        return new Fault(Type.RESET_AFTER_HEADERS, 0, 0, 0, 1);
+    }
+
+    /**
+     * @param fraction share of the body written before the connection is closed, in [0, 1)
+     */
+    public static Fault truncatedBody(double fraction) {
+        if (fraction < 0 || fraction >= 1) {
+            throw new IllegalArgumentException("Truncated body fraction must be in [0, 1): " + fraction);
+        }
+        return new Fault(Type.TRUNCATED_BODY, fraction, 0, 0, 1);
+    }
+
+    public static Fault throttledBody(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("Bandwidth must be positive: " + bytesPerSecond);
+        }
+        return new Fault(Type.THROTTLED_BODY, 0, bytesPerSecond, 0, 1);
+    }
+
+    public static Fault malformedBody() {
+        return new Fault(Type.MALFORMED_BODY, 0, 0, 0, 1);
+    }
+
+    /**
+     * @param burstLength number of consecutive requests failing once the fault is injected
+     */
+    public static Fault serverErrors(int statusCode, int burstLength) {
+        if (statusCode < 500 || statusCode > 599) {
+            throw new IllegalArgumentException("Server error status must be 5xx: " + statusCode);
+        }
+        if (burstLength < 1) {
+            throw new IllegalArgumentException("Burst length must be at least 1: " + burstLength);
+        }
+        return new Fault(Type.SERVER_ERROR, 0, 0, statusCode, burstLength);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getBurstLength() {
+        return burstLength;
+    }
+
+    /**
+     * Whether the fault alters the rendered body rather than replacing the response.
+     */
+    public boolean needsBody() {
+        return type == Type.TRUNCATED_BODY || type == Type.THROTTLED_BODY || type == Type.MALFORMED_BODY;
+    }
+
+    /**
+     * Records the fault on the response, returning the response to send.
+     */
+    public MockResponse apply(MockResponse response, ResponseBuilder responseBuilder) {
+        switch (type) {
+            case RESET_BEFORE_HEADERS:
+                return response.setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            case RESET_AFTER_HEADERS:
+                return truncate(response, 0);
+            case TRUNCATED_BODY:
+                return truncate(response, fraction);
+            case THROTTLED_BODY:
+                return response.throttleBody(Math.max(1, bytesPerSecond * THROTTLE_PERIOD_MILLIS / 1000),
+                        THROTTLE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+            case MALFORMED_BODY:
+                return malform(response);
+            case SERVER_ERROR:
+            default:
+                return responseBuilder.createErrorResponse(statusCode, "Injected server error");
+        }
+    }
+
+    /**
+     * Keeps the declared length of the whole body but only the first part of its bytes.
+     */
+    private static MockResponse truncate(MockResponse response, double fraction) {
+        Buffer body = response.getBody();
+        long length = body != null ? body.size() : 0;
+        Buffer truncated = new Buffer();
+        if (length > 0) {
+            body.copyTo(truncated, 0, (long) (length * fraction));
+        }
+        return response.setBody(truncated)
+                .setHeader("Content-Length", Math.max(1, length))
+                .setSocketPolicy(SocketPolicy.DISCONNECT_AT_END);
+    }
+
+    /**
+     * Cuts the data of the middle server-sent event in half, or the whole body if it is not an event stream.
+     */
+    private static MockResponse malform(MockResponse response) {
+        Buffer body = response.getBody();
+        if (body == null || body.size() < 2) {
+            return response;
+        }
+        try {
+            long cutFrom;
+            long cutTo;
+            String contentType = response.getHeaders().get("Content-Type");
+            if (contentType != null && contentType.startsWith("text/event-stream")) {
+                long events = 0;
+                for (long index = body.indexOf(EVENT_SEPARATOR); index != -1;
+                        index = body.indexOf(EVENT_SEPARATOR, index + EVENT_SEPARATOR.size())) {
+                    events++;
+                }
+                long eventStart = 0;
+                for (long i = 0; i < events / 2; i++) {
+                    eventStart = body.indexOf(EVENT_SEPARATOR, eventStart) + EVENT_SEPARATOR.size();
+                }
+                long eventEnd = body.indexOf(EVENT_SEPARATOR, eventStart);
+                if (eventEnd == -1) {
+                    eventEnd = body.size();
+                }
+                cutFrom = eventStart + (eventEnd - eventStart) / 2;
+                cutTo = eventEnd;
+            } else {
+                cutFrom = body.size() / 2;
+                cutTo = body.size();
+            }
+
+            Buffer malformed = new Buffer();
+            body.copyTo(malformed, 0, cutFrom);
+            body.copyTo(malformed, cutTo, body.size() - cutTo);
+            return response.setBody(malformed);
+        } catch (IOException e) {
+            // In-memory buffers never fail to read
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package it.croway.openai.mock;
+
+/**
+ * Thrown once the expectation of a request is known and the fault sampled for it replaces
+ * the whole response, so the handler stops before rendering a body or advancing any state.
+ */
+class FaultInjectedException extends RuntimeException {
+    private final Fault fault;
+
+    FaultInjectedException(Fault fault) {
+        super("Injecting fault " + fault.getType(), null, false, false);
+        this.fault = fault;
+    }
+
+    Fault getFault() {
+        return fault;
+    }
+}
@@ -0,0 +1,69 @@
+package it.croway.openai.mock;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A probabilistic mix of {@link Fault}s, sampled once per request.
+ */
+public class FaultPolicy {
+    private final Fault[] faults;
+    private final double[] cumulativeProbabilities;
+    private final AtomicInteger burstRemaining;
+    private volatile Fault burstFault;
+
+    private FaultPolicy(Fault[] faults, double[] cumulativeProbabilities) {
+        this.faults = faults;
+        this.cumulativeProbabilities = cumulativeProbabilities;
+        this.burstRemaining = new AtomicInteger();
+    }
+
+    public static FaultPolicy of(double probability, Fault fault) {
+        return new FaultPolicy(new Fault[0], new double[0]).with(probability, fault);
+    }
+
+    public static FaultPolicy always(Fault fault) {
+        return of(1, fault);
+    }
+
+    /**
+     * Returns a new policy also injecting the fault with the given probability.
+     */
+    public FaultPolicy with(double probability, Fault fault) {
+        double total = cumulativeProbabilities.length > 0 ? cumulativeProbabilities[cumulativeProbabilities.length - 1] : 0;
+        if (probability <= 0 || total + probability > 1 + 1e-9) {
+            throw new IllegalArgumentException("Fault probabilities must be positive and add up to at most 1, got "
+                    + (total + probability));
+        }
+        Fault[] newFaults = Arrays.copyOf(faults, faults.length + 1);
+        double[] newProbabilities = Arrays.copyOf(cumulativeProbabilities, faults.length + 1);
+        newFaults[faults.length] = fault;
+        newProbabilities[faults.length] = total + probability;
+        return new FaultPolicy(newFaults, newProbabilities);
+    }
+
+    /**
+     * Returns the fault to inject into the next response, or {@code null} for a healthy one.
+     */
+    public Fault sample() {
+        for (int remaining = burstRemaining.get(); remaining > 0; remaining = burstRemaining.get()) {
+            if (burstRemaining.compareAndSet(remaining, remaining - 1)) {
+                return burstFault;
+            }
+        }
+
+        double roll = ThreadLocalRandom.current().nextDouble();
+        for (int i = 0; i < faults.length; i++) {
+            if (roll < cumulativeProbabilities[i]) {
+                Fault fault = faults[i];
+                if (fault.getBurstLength() > 1) {
+                    burstFault = fault;
+                    burstRemaining.set(fault.getBurstLength() - 1);
+                }
+                return fault;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,201 @@
+package it.croway.openai.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Trigram index over the exact inputs of a set of expectations, used to find the ones
+ * closest to an input that matched none of them.
+ */
+public class FuzzyIndex {
+    private static final int[] EMPTY = new int[0];
+    private static final Comparator<Candidate> BEST_FIRST = Comparator.comparingDouble(Candidate::getScore).reversed()
+            .thenComparingInt(candidate -> candidate.id);
+
+    private final List<MockExpectation> expectations;
+    private final long[][] trigramsById;
+    private final Map<Long, int[]> postings;
+
+    public FuzzyIndex(List<MockExpectation> expectations) {
+        this.expectations = new ArrayList<>();
+        for (MockExpectation expectation : expectations) {
+            if (expectation.getInputMatchType() == InputMatchType.EXACT) {
+                this.expectations.add(expectation);
+            }
+        }
+        this.trigramsById = new long[this.expectations.size()][];
+
+        Map<Long, List<Integer>> lists = new HashMap<>();
+        for (int id = 0; id < this.expectations.size(); id++) {
+            long[] trigrams = trigrams(this.expectations.get(id).getExpectedInput());
+            trigramsById[id] = trigrams;
+            for (long trigram : trigrams) {
+                lists.computeIfAbsent(trigram, key -> new ArrayList<>()).add(id);
+            }
+        }
+
+        this.postings = new HashMap<>(Math.max(16, lists.size() * 4 / 3 + 1));
+        for (Map.Entry<Long, List<Integer>> entry : lists.entrySet()) {
+            List<Integer> ids = entry.getValue();
+            int[] array = new int[ids.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = ids.get(i);
+            }
+            postings.put(entry.getKey(), array);
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} expectations scoring at least {@code minScore}, best first.
+     */
+    public List<Candidate> nearest(String input, int limit, double minScore) {
+        return nearest(input, limit, minScore, expectation -> true);
+    }
+
+    /**
+     * Returns up to {@code limit} expectations accepted by the filter and scoring at least {@code minScore}.
+     */
+    public List<Candidate> nearest(String input, int limit, double minScore, Predicate<MockExpectation> filter) {
+        if (input == null || limit <= 0 || expectations.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        long[] query = trigrams(input);
+        int[][] lists = new int[query.length][];
+        for (int i = 0; i < query.length; i++) {
+            int[] ids = postings.get(query[i]);
+            lists[i] = ids != null ? ids : EMPTY;
+        }
+        Arrays.sort(lists, Comparator.comparingInt(ids -> ids.length));
+
+        // A score of at least minScore needs ceil(minScore * |query|) shared trigrams, hence
+        // one of the |query| - ceil(minScore * |query|) + 1 rarest ones
+        int minShared = Math.max(1, (int) Math.ceil(minScore * query.length));
+        int prefix = Math.max(0, query.length - minShared + 1);
+
+        BitSet examined = new BitSet(expectations.size());
+        // The head is the worst candidate kept: the lowest score, then the latest indexed
+        PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, BEST_FIRST.reversed());
+        for (int i = 0; i < prefix; i++) {
+            for (int id : lists[i]) {
+                if (examined.get(id)) {
+                    continue;
+                }
+                examined.set(id);
+                long[] trigrams = trigramsById[id];
+                int shared = countShared(query, trigrams);
+                double score = shared / (double) (query.length + trigrams.length - shared);
+                if (score < minScore) {
+                    continue;
+                }
+                Candidate candidate = new Candidate(expectations.get(id), score, id);
+                if (best.size() == limit && BEST_FIRST.compare(candidate, best.peek()) >= 0
+                        || !filter.test(candidate.getExpectation())) {
+                    continue;
+                }
+                if (best.size() == limit) {
+                    best.poll();
+                }
+                best.add(candidate);
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(best);
+        result.sort(BEST_FIRST);
+        return result;
+    }
+
+    public int size() {
+        return expectations.size();
+    }
+
+    /**
+     * Returns the sorted distinct trigrams of the space-padded normalized text, each packed into a long.
+     */
+    static long[] trigrams(String text) {
+        String normalized = " " + normalize(text) + " ";
+        int count = Math.max(0, normalized.length() - 2);
+        long[] trigrams = new long[count];
+        for (int i = 0; i < count; i++) {
+            trigrams[i] = ((long) normalized.charAt(i) << 32)
+                    | ((long) normalized.charAt(i + 1) << 16)
+                    | normalized.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return distinct == count ? trigrams : Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static int countShared(long[] first, long[] second) {
+        int shared = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                shared++;
+                i++;
+                j++;
+            }
+        }
+        return shared;
+    }
+
+    static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    normalized.append(' ');
+                    pendingSpace = false;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * An expectation together with its similarity to the input, between 0 and 1.
+     */
+    public static final class Candidate {
+        private final MockExpectation expectation;
+        private final double score;
+        private final int id;
+
+        Candidate(MockExpectation expectation, double score, int id) {
+            this.expectation = expectation;
+            this.score = score;
+            this.id = id;
+        }
+
+        public MockExpectation getExpectation() {
+            return expectation;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.UUID;
+
+/**
+ * Streams a chat completion whose content is {@link GeneratedContent}, as a JSON body or as
+ * server-sent events.
+ */
+public class GeneratedBodyWriter implements StreamingBody {
+    private static final long FLUSH_THRESHOLD = 16 * 1024;
+
+    private final JsonFactory jsonFactory;
+    private final GeneratedContent content;
+    private final boolean eventStream;
+    private final int chunkSize;
+    private final TokenUsage usage;
+
+    public GeneratedBodyWriter(JsonFactory jsonFactory, GeneratedContent content, boolean eventStream, int chunkSize) {
+        this(jsonFactory, content, eventStream, chunkSize, null);
+    }
+
+    /**
+     * @param usage the usage to report, or {@code null} to leave it out
+     */
+    public GeneratedBodyWriter(JsonFactory jsonFactory, GeneratedContent content, boolean eventStream, int chunkSize,
+                               TokenUsage usage) {
+        this.jsonFactory = jsonFactory;
+        this.content = content;
+        this.eventStream = eventStream;
+        this.chunkSize = chunkSize;
+        this.usage = usage;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        Buffer buffer = new Buffer();
+        String id = UUID.randomUUID().toString();
+        long created = System.currentTimeMillis() / 1000L;
+        if (eventStream) {
+            writeEvents(buffer, out, id, created);
+        } else {
+            writeCompletion(buffer, out, id, created);
+        }
+        buffer.writeTo(out);
+        out.flush();
+    }
+
+    private void writeCompletion(Buffer buffer, OutputStream out, String id, long created) throws IOException {
+        buffer.writeUtf8("{\"id\":\"").writeUtf8(id)
+                .writeUtf8("\",\"object\":\"chat.completion\",\"created\":").writeDecimalLong(created)
+                .writeUtf8(",\"model\":\"").writeUtf8(ResponseBuilder.MODEL)
+                .writeUtf8("\",\"choices\":[{\"index\":0,\"finish_reason\":\"stop\",")
+                .writeUtf8("\"message\":{\"role\":\"assistant\",\"refusal\":null,\"content\":\"");
+        GeneratedContent.Cursor cursor = content.cursor();
+        while (cursor.hasNext()) {
+            buffer.writeUtf8(cursor.next());
+            if (buffer.size() >= FLUSH_THRESHOLD) {
+                buffer.writeTo(out);
+            }
+        }
+        buffer.writeUtf8("\"}}]");
+        if (usage != null) {
+            buffer.writeUtf8(",\"usage\":").writeUtf8(usage.toJson());
+        }
+        buffer.writeByte('}');
+    }
+
+    private void writeEvents(Buffer buffer, OutputStream out, String id, long created) throws IOException {
+        SseChunkWriter writer = new SseChunkWriter(jsonFactory, buffer, id, created, ResponseBuilder.MODEL);
+        writer.writeRoleChunk(false);
+        StringBuilder fragment = new StringBuilder(chunkSize + 16);
+        GeneratedContent.Cursor cursor = content.cursor();
+        while (cursor.hasNext()) {
+            fragment.append(cursor.next());
+            if (fragment.length() >= chunkSize) {
+                writer.writeContentChunk(fragment.toString());
+                fragment.setLength(0);
+                if (buffer.size() >= FLUSH_THRESHOLD) {
+                    buffer.writeTo(out);
+                }
+            }
+        }
+        if (fragment.length() > 0) {
+            writer.writeContentChunk(fragment.toString());
+        }
+        writer.writeFinishChunk("stop");
+        if (usage != null) {
+            writer.writeUsageChunk(usage);
+        }
+        writer.writeDone();
+    }
+}
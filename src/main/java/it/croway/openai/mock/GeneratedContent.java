@@ -0,0 +1,78 @@
+package it.croway.openai.mock;
+
+/**
+ * Deterministic synthetic text of a fixed number of tokens, produced one token at a time.
+ */
+public final class GeneratedContent {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final String[] WORDS = {
+            "the", "of", "and", "to", "in", "is", "that", "for", "it", "as", "was", "with", "be", "by", "on",
+            "not", "he", "this", "are", "or", "his", "from", "at", "which", "but", "have", "an", "had", "they",
+            "you", "were", "their", "one", "all", "we", "can", "her", "has", "there", "been", "if", "more",
+            "when", "will", "would", "who", "so", "no", "model", "token", "stream", "response", "request",
+            "latency", "buffer", "mock", "client", "server", "memory", "test", "data", "chunk", "output", "text"
+    };
+    private static final String[] SPACED_WORDS = new String[WORDS.length];
+
+    static {
+        for (int i = 0; i < WORDS.length; i++) {
+            SPACED_WORDS[i] = " " + WORDS[i];
+        }
+    }
+
+    private final int tokens;
+    private final long seed;
+
+    public GeneratedContent(int tokens, long seed) {
+        if (tokens < 0) {
+            throw new IllegalArgumentException("Generated token count must not be negative");
+        }
+        this.tokens = tokens;
+        this.seed = seed;
+    }
+
+    public int getTokens() {
+        return tokens;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Cursor cursor() {
+        return new Cursor(seed, tokens);
+    }
+
+    /**
+     * Single-use iterator over the tokens; every token after the first starts with a space.
+     */
+    public static final class Cursor {
+        private long state;
+        private int remaining;
+        private boolean first;
+
+        private Cursor(long seed, int tokens) {
+            this.state = seed;
+            this.remaining = tokens;
+            this.first = true;
+        }
+
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        public String next() {
+            remaining--;
+            state += GOLDEN_GAMMA;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            int word = (int) ((z ^ (z >>> 31)) >>> 58);
+            if (first) {
+                first = false;
+                return WORDS[word];
+            }
+            return SPACED_WORDS[word];
+        }
+    }
+}
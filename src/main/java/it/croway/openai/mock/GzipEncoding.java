@@ -0,0 +1,97 @@
+package it.croway.openai.mock;
+
+import okio.Buffer;
+import okio.GzipSink;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip content encoding, which can also assemble a stream from segments deflated ahead of time.
+ */
+public class GzipEncoding implements ContentEncoding {
+    public static final String NAME = "gzip";
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    // Final, empty block with fixed Huffman codes
+    private static final byte[] FINAL_BLOCK = {3, 0};
+
+    private final int level;
+
+    public GzipEncoding() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public GzipEncoding(int level) {
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Gzip level must be between -1 and 9");
+        }
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public Buffer encode(Buffer body) throws IOException {
+        Buffer encoded = new Buffer();
+        GzipSink sink = new GzipSink(encoded);
+        sink.deflater().setLevel(level);
+        sink.write(body, body.size());
+        sink.close();
+        return encoded;
+    }
+
+    /**
+     * Deflates a segment into non-final blocks ending on a byte boundary, without references
+     * to any data before it, so it can be placed anywhere in a stream.
+     */
+    public byte[] deflateSegment(byte[] segment) {
+        if (segment.length == 0) {
+            return segment;
+        }
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(segment);
+            Buffer out = new Buffer();
+            byte[] chunk = new byte[Math.max(64, segment.length / 2)];
+            int length;
+            do {
+                length = deflater.deflate(chunk, 0, chunk.length, Deflater.FULL_FLUSH);
+                out.write(chunk, 0, length);
+            } while (length == chunk.length || !deflater.needsInput());
+            return out.readByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public void writeHeader(Buffer sink) {
+        sink.write(HEADER);
+    }
+
+    /**
+     * Writes data as stored, non-final blocks of at most 65535 bytes each.
+     */
+    public void writeStored(Buffer sink, byte[] data) {
+        for (int offset = 0; offset < data.length; offset += 0xffff) {
+            int length = Math.min(0xffff, data.length - offset);
+            sink.writeByte(0);
+            sink.writeShortLe(length);
+            sink.writeShortLe(~length);
+            sink.write(data, offset, length);
+        }
+    }
+
+    public void writeTrailer(Buffer sink, long crc32, long size) {
+        sink.write(FINAL_BLOCK);
+        sink.writeIntLe((int) crc32);
+        sink.writeIntLe((int) size);
+    }
+}
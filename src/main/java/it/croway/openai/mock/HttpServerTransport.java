@@ -0,0 +1,388 @@
+package it.croway.openai.mock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.Headers;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * High-concurrency transport backed by the JDK {@link HttpServer}.
+ */
+public class HttpServerTransport implements MockServerTransport {
+    private static final Logger log = LoggerFactory.getLogger(HttpServerTransport.class);
+
+    private static final int DEFAULT_BACKLOG = 4096;
+
+    private final InetAddress address;
+    private final int backlog;
+    private final AtomicInteger sequenceNumber;
+    private HttpServer server;
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduler;
+
+    public HttpServerTransport() {
+        this(DEFAULT_BACKLOG);
+    }
+
+    public HttpServerTransport(int backlog) {
+        this(InetAddress.getLoopbackAddress(), backlog);
+    }
+
+    public HttpServerTransport(InetAddress address) {
+        this(address, DEFAULT_BACKLOG);
+    }
+
+    /**
+     * @param address local address to listen on, such as the wildcard address to accept
+     *                connections from other hosts; the loopback address by default
+     */
+    public HttpServerTransport(InetAddress address, int backlog) {
+        this.address = address;
+        this.backlog = backlog;
+        this.sequenceNumber = new AtomicInteger();
+    }
+
+    @Override
+    public void start(int port, Dispatcher dispatcher) throws IOException {
+        executor = newRequestExecutor();
+        scheduler = Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                daemonThreadFactory("openai-mock-scheduler-"));
+        server = HttpServer.create(new InetSocketAddress(address, port), backlog);
+        server.createContext("/", exchange -> handle(exchange, dispatcher));
+        server.setExecutor(executor);
+        server.start();
+        log.info("HTTP server transport started on {}", getBaseUrl());
+    }
+
+    @Override
+    public String getBaseUrl() {
+        if (server == null) {
+            throw new IllegalStateException("Transport not started");
+        }
+        InetSocketAddress address = server.getAddress();
+        return baseUrl(address.getHostString(), address.getPort());
+    }
+
+    /**
+     * Formats the URL of a server, bracketing IPv6 addresses such as the wildcard one.
+     */
+    static String baseUrl(String host, int port) {
+        return "http://" + (host.indexOf(':') >= 0 ? "[" + host + "]" : host) + ":" + port + "/";
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            scheduler.shutdownNow();
+            log.info("HTTP server transport shut down");
+        }
+    }
+
+    private void handle(HttpExchange exchange, Dispatcher dispatcher) throws IOException {
+        MockResponse response;
+        StreamingBody streamingBody = null;
+        LatencyDistribution interChunk = null;
+        try {
+            RecordedRequest request = toRecordedRequest(exchange);
+            if (dispatcher instanceof OpenAIMockServerDispatcher) {
+                StreamedResponse streamed = ((OpenAIMockServerDispatcher) dispatcher).dispatchStreaming(request);
+                response = streamed.getResponse();
+                streamingBody = streamed.getBody();
+                interChunk = streamed.getInterChunk();
+            } else {
+                response = dispatcher.dispatch(request);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendEmptyResponse(exchange, 503);
+            return;
+        } catch (RuntimeException e) {
+            log.error("Error dispatching request", e);
+            sendEmptyResponse(exchange, 500);
+            return;
+        }
+
+        SocketPolicy socketPolicy = response.getSocketPolicy();
+        if (socketPolicy == SocketPolicy.DISCONNECT_AFTER_REQUEST || socketPolicy == SocketPolicy.DISCONNECT_AT_END) {
+            disconnect(exchange, response);
+            return;
+        }
+
+        long headersDelay = response.getHeadersDelay(TimeUnit.NANOSECONDS);
+        LatencyDistribution chunkDelays = interChunk;
+        Runnable writer = streamingBody != null
+                ? streamResponse(exchange, response, streamingBody, chunkDelays)
+                : () -> writeResponse(exchange, response, chunkDelays);
+        if (headersDelay > 0) {
+            scheduler.schedule(writer, headersDelay, TimeUnit.NANOSECONDS);
+        } else {
+            writer.run();
+        }
+    }
+
+    /**
+     * Writes the headers and then the body as it is produced, with chunked transfer encoding.
+     * @param interChunk pause before each flushed chunk after the first, or {@code null} for none
+     */
+    private Runnable streamResponse(HttpExchange exchange, MockResponse response, StreamingBody body,
+                                    LatencyDistribution interChunk) {
+        Runnable writer = () -> {
+            try {
+                writeHeaders(exchange, response);
+                exchange.sendResponseHeaders(statusCode(response), 0);
+                try (OutputStream out = interChunk != null
+                        ? new PacedOutputStream(exchange.getResponseBody(), interChunk)
+                        : exchange.getResponseBody()) {
+                    body.writeTo(out);
+                }
+            } catch (IOException e) {
+                log.debug("Error streaming response", e);
+            } finally {
+                exchange.close();
+            }
+        };
+        return response.getHeadersDelay(TimeUnit.NANOSECONDS) > 0 ? () -> executor.execute(writer) : writer;
+    }
+
+    /**
+     * Writes the part of an injected faulty response that reaches the client, then fails the
+     * exchange, the only way to make the server drop the connection.
+     */
+    private void disconnect(HttpExchange exchange, MockResponse response) throws IOException {
+        if (response.getSocketPolicy() == SocketPolicy.DISCONNECT_AT_END) {
+            writeHeaders(exchange, response);
+            Buffer body = response.getBody();
+            // The declared length of a truncated body is longer than what is written
+            String contentLength = response.getHeaders().get("Content-Length");
+            long declaredLength = contentLength != null ? Long.parseLong(contentLength) : body.size();
+            exchange.sendResponseHeaders(statusCode(response), declaredLength > 0 ? declaredLength : -1);
+            if (body.size() > 0) {
+                OutputStream out = exchange.getResponseBody();
+                body.writeTo(out);
+                out.flush();
+            }
+        }
+        throw new IOException("Injected disconnect");
+    }
+
+    private void writeHeaders(HttpExchange exchange, MockResponse response) {
+        Headers headers = response.getHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            if (!headers.name(i).equalsIgnoreCase("Content-Length")) {
+                exchange.getResponseHeaders().add(headers.name(i), headers.value(i));
+            }
+        }
+    }
+
+    private void sendEmptyResponse(HttpExchange exchange, int statusCode) throws IOException {
+        try {
+            exchange.sendResponseHeaders(statusCode, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private RecordedRequest toRecordedRequest(HttpExchange exchange) throws IOException {
+        Buffer body = new Buffer();
+        body.readFrom(exchange.getRequestBody());
+
+        Headers.Builder headers = new Headers.Builder();
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                headers.addUnsafeNonAscii(header.getKey(), value);
+            }
+        }
+
+        String requestLine = exchange.getRequestMethod() + " " + exchange.getRequestURI().getRawPath()
+                + (exchange.getRequestURI().getRawQuery() != null ? "?" + exchange.getRequestURI().getRawQuery() : "")
+                + " " + exchange.getProtocol();
+
+        return new RecordedRequest(requestLine, headers.build(), Collections.emptyList(), body.size(), body,
+                sequenceNumber.getAndIncrement(), new ExchangeSocket(exchange.getLocalAddress()), null);
+    }
+
+    /**
+     * @param interChunk delay before each throttled slice, or {@code null} for the response's throttle period
+     */
+    private void writeResponse(HttpExchange exchange, MockResponse response, LatencyDistribution interChunk) {
+        try {
+            writeHeaders(exchange, response);
+
+            Buffer body = response.getBody();
+            long length = body != null ? body.size() : 0;
+            exchange.sendResponseHeaders(statusCode(response), length > 0 ? length : -1);
+            if (length == 0) {
+                exchange.close();
+                return;
+            }
+
+            long bytesPerPeriod = response.getThrottleBytesPerPeriod();
+            long period = response.getThrottlePeriod(TimeUnit.NANOSECONDS);
+            if (period > 0 && bytesPerPeriod < length) {
+                new ThrottledBodyWriter(exchange, body, bytesPerPeriod,
+                        interChunk != null ? interChunk : () -> period).run();
+            } else {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    body.writeTo(out);
+                }
+                exchange.close();
+            }
+        } catch (IOException e) {
+            log.debug("Error writing response", e);
+            exchange.close();
+        }
+    }
+
+    private int statusCode(MockResponse response) {
+        // The status line has the form "HTTP/1.1 200 OK"
+        String[] parts = response.getStatus().split(" ", 3);
+        return Integer.parseInt(parts[1]);
+    }
+
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            log.debug("Virtual threads not available, using a cached thread pool");
+            return Executors.newCachedThreadPool(daemonThreadFactory("openai-mock-http-"));
+        }
+    }
+
+    private static ThreadFactory daemonThreadFactory(String namePrefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Writes a response body in throttled slices, scheduling each slice instead of sleeping.
+     */
+    private class ThrottledBodyWriter implements Runnable {
+        private final HttpExchange exchange;
+        private final Buffer body;
+        private final long bytesPerPeriod;
+        private final LatencyDistribution period;
+        private final OutputStream out;
+
+        ThrottledBodyWriter(HttpExchange exchange, Buffer body, long bytesPerPeriod, LatencyDistribution period) {
+            this.exchange = exchange;
+            this.body = body;
+            this.bytesPerPeriod = bytesPerPeriod;
+            this.period = period;
+            this.out = exchange.getResponseBody();
+        }
+
+        @Override
+        public void run() {
+            try {
+                body.writeTo(out, Math.min(bytesPerPeriod, body.size()));
+                out.flush();
+                if (body.size() > 0) {
+                    scheduler.schedule(this, period.sampleNanos(), TimeUnit.NANOSECONDS);
+                } else {
+                    out.close();
+                    exchange.close();
+                }
+            } catch (IOException e) {
+                log.debug("Error writing throttled response body", e);
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Pauses before the first write that follows a flush, pacing a body that flushes each chunk.
+     */
+    private static class PacedOutputStream extends FilterOutputStream {
+        private final LatencyDistribution pause;
+        private boolean flushed;
+
+        PacedOutputStream(OutputStream out, LatencyDistribution pause) {
+            super(out);
+            this.pause = pause;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            pace();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            pace();
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            flushed = true;
+        }
+
+        private void pace() throws IOException {
+            if (!flushed) {
+                return;
+            }
+            flushed = false;
+            try {
+                TimeUnit.NANOSECONDS.sleep(pause.sampleNanos());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted between chunks");
+            }
+        }
+    }
+
+    /**
+     * Unconnected socket exposing the exchange's local address to {@link RecordedRequest}.
+     */
+    private static class ExchangeSocket extends Socket {
+        private final InetAddress localAddress;
+        private final int localPort;
+
+        ExchangeSocket(InetSocketAddress localAddress) throws IOException {
+            // Supplying the host name avoids a reverse DNS lookup inside RecordedRequest
+            this.localAddress = InetAddress.getByAddress(localAddress.getHostString(), localAddress.getAddress().getAddress());
+            this.localPort = localAddress.getPort();
+        }
+
+        @Override
+        public InetAddress getLocalAddress() {
+            return localAddress;
+        }
+
+        @Override
+        public int getLocalPort() {
+            return localPort;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package it.croway.openai.mock;
+
+/**
+ * How an expectation's input is compared to the first user message of a request.
+ */
+public enum InputMatchType {
+    EXACT,
+    CONTAINS,
+    REGEX
+}
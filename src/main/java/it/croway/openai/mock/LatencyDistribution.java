@@ -0,0 +1,82 @@
+package it.croway.openai.mock;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution of simulated delays, sampled once per use.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    /**
+     * Returns a non-negative delay in nanoseconds.
+     */
+    long sampleNanos();
+
+    static LatencyDistribution none() {
+        return () -> 0L;
+    }
+
+    static LatencyDistribution fixed(Duration delay) {
+        long nanos = delay.toNanos();
+        return () -> nanos;
+    }
+
+    /**
+     * Normal distribution truncated at zero.
+     */
+    static LatencyDistribution normal(Duration mean, Duration standardDeviation) {
+        long meanNanos = mean.toNanos();
+        long deviationNanos = standardDeviation.toNanos();
+        return () -> Math.max(0L, meanNanos + (long) (ThreadLocalRandom.current().nextGaussian() * deviationNanos));
+    }
+
+    /**
+     * Log-normal distribution with the given median and shape {@code sigma}, which produces
+     * the long right tail typical of provider latencies.
+     */
+    static LatencyDistribution logNormal(Duration median, double sigma) {
+        double mu = Math.log(Math.max(1L, median.toNanos()));
+        return () -> (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+    }
+
+    /**
+     * Distribution reproducing recorded percentiles, for example {@code {0.5: 400ms, 0.9: 900ms, 0.99: 2s}}.
+     * Values between two recorded percentiles are linearly interpolated.
+     */
+    static LatencyDistribution percentiles(Map<Double, Duration> recordedPercentiles) {
+        if (recordedPercentiles.isEmpty()) {
+            throw new IllegalArgumentException("At least one percentile is required");
+        }
+
+        TreeMap<Double, Duration> sorted = new TreeMap<>(recordedPercentiles);
+        double[] quantiles = new double[sorted.size()];
+        long[] delays = new long[sorted.size()];
+        int index = 0;
+        for (Map.Entry<Double, Duration> entry : sorted.entrySet()) {
+            if (entry.getKey() < 0.0 || entry.getKey() > 1.0) {
+                throw new IllegalArgumentException("Percentiles must be between 0 and 1: " + entry.getKey());
+            }
+            quantiles[index] = entry.getKey();
+            delays[index] = entry.getValue().toNanos();
+            index++;
+        }
+
+        return () -> {
+            double quantile = ThreadLocalRandom.current().nextDouble();
+            if (quantile <= quantiles[0]) {
+                return delays[0];
+            }
+            for (int i = 1; i < quantiles.length; i++) {
+                if (quantile <= quantiles[i]) {
+                    double fraction = (quantile - quantiles[i - 1]) / (quantiles[i] - quantiles[i - 1]);
+                    return delays[i - 1] + (long) (fraction * (delays[i] - delays[i - 1]));
+                }
+            }
+            return delays[delays.length - 1];
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package it.croway.openai.mock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with exponential buckets from 1 microsecond to about 17 seconds.
+ */
+public class LatencyHistogram {
+    private static final int BUCKET_COUNT = 25;
+    private static final long[] UPPER_BOUNDS_NANOS = new long[BUCKET_COUNT];
+
+    static {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            UPPER_BOUNDS_NANOS[i] = TimeUnit.MICROSECONDS.toNanos(1L << i);
+        }
+    }
+
+    private final LongAdder[] buckets;
+    private final LongAdder overflow;
+    private final LongAdder sumNanos;
+
+    public LatencyHistogram() {
+        this.buckets = new LongAdder[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+        this.overflow = new LongAdder();
+        this.sumNanos = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        long micros = Math.max(0L, nanos - 1) / 1000L;
+        int index = 64 - Long.numberOfLeadingZeros(micros);
+        if (index < BUCKET_COUNT) {
+            buckets[index].increment();
+        } else {
+            overflow.increment();
+        }
+        sumNanos.add(nanos);
+    }
+
+    public static int getNumberOfBuckets() {
+        return BUCKET_COUNT;
+    }
+
+    public static long getUpperBoundNanos(int bucket) {
+        return UPPER_BOUNDS_NANOS[bucket];
+    }
+
+    /**
+     * Returns the number of recordings in the given bucket, not cumulative.
+     */
+    public long getBucketCount(int bucket) {
+        return buckets[bucket].sum();
+    }
+
+    public long getCount() {
+        long count = overflow.sum();
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * Returns an upper bound of the given quantile (between 0 and 1), in nanoseconds.
+     */
+    public long getQuantileUpperBoundNanos(double quantile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += buckets[i].sum();
+            if (cumulative >= rank) {
+                return UPPER_BOUNDS_NANOS[i];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
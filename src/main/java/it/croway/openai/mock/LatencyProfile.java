@@ -0,0 +1,106 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated provider latency: a time-to-first-token delay and a delay between streamed chunks.
+ */
+public class LatencyProfile {
+    private static final LatencyProfile NONE = new LatencyProfile(LatencyDistribution.none(), LatencyDistribution.none());
+    private static final ByteString EVENT_SEPARATOR = ByteString.encodeUtf8("\n\n");
+
+    private final LatencyDistribution firstByte;
+    private final LatencyDistribution interChunk;
+
+    public LatencyProfile(LatencyDistribution firstByte, LatencyDistribution interChunk) {
+        this.firstByte = firstByte;
+        this.interChunk = interChunk;
+    }
+
+    public static LatencyProfile none() {
+        return NONE;
+    }
+
+    public static LatencyProfile firstByte(LatencyDistribution firstByte) {
+        return new LatencyProfile(firstByte, LatencyDistribution.none());
+    }
+
+    public LatencyProfile withInterChunk(LatencyDistribution interChunk) {
+        return new LatencyProfile(firstByte, interChunk);
+    }
+
+    public LatencyDistribution getFirstByte() {
+        return firstByte;
+    }
+
+    public LatencyDistribution getInterChunk() {
+        return interChunk;
+    }
+
+    /**
+     * Samples the profile and records the delays on the response.
+     */
+    public MockResponse apply(MockResponse response) {
+        if (this == NONE) {
+            return response;
+        }
+
+        long firstByteNanos = firstByte.sampleNanos();
+        if (firstByteNanos > 0) {
+            response.setHeadersDelay(firstByteNanos, TimeUnit.NANOSECONDS);
+        }
+        return throttleEvents(response);
+    }
+
+    /**
+     * Samples the inter-chunk delay and throttles a server-sent event body at the average event size.
+     */
+    public MockResponse throttleEvents(MockResponse response) {
+        if (this == NONE) {
+            return response;
+        }
+
+        long interChunkNanos = interChunk.sampleNanos();
+        if (interChunkNanos > 0 && isEventStream(response)) {
+            Buffer body = response.getBody();
+            long events = countEvents(body);
+            if (events > 1) {
+                response.throttleBody(Math.max(1L, body.size() / events), interChunkNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Returns whether the response is an event stream whose body is throttled between chunks.
+     */
+    static boolean isThrottledEventStream(MockResponse response) {
+        return response.getThrottlePeriod(TimeUnit.NANOSECONDS) > 0 && isEventStream(response);
+    }
+
+    private static boolean isEventStream(MockResponse response) {
+        String contentType = response.getHeaders().get("Content-Type");
+        return contentType != null && contentType.startsWith("text/event-stream") && response.getBody() != null;
+    }
+
+    private long countEvents(Buffer body) {
+        try {
+            long events = 0;
+            long index = body.indexOf(EVENT_SEPARATOR);
+            while (index != -1) {
+                events++;
+                index = body.indexOf(EVENT_SEPARATOR, index + EVENT_SEPARATOR.size());
+            }
+            return events;
+        } catch (IOException e) {
+            // In-memory buffers never fail to read
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package it.croway.openai.mock;
+
+/**
+ * Response of an expectation decoded on first use, such as one stored in a
+ * memory-mapped fixture file.
+ */
+@FunctionalInterface
+public interface LazyResponse {
+    /**
+     * Sets the response and tool steps on the expectation.
+     */
+    void load(MockExpectation expectation);
+}
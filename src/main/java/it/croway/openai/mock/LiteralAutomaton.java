@@ -0,0 +1,143 @@
+package it.croway.openai.mock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton finding all of a set of literals in a single pass over the text.
+ */
+class LiteralAutomaton {
+    private static final char[] NO_KEYS = new char[0];
+    private static final int[] NO_TARGETS = new int[0];
+
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] failure;
+    private final int[][] outputs;
+
+    /**
+     * @param literals non-empty literals, identified by their index in the list
+     */
+    LiteralAutomaton(List<String> literals) {
+        List<char[]> stateKeys = new ArrayList<>();
+        List<int[]> stateTargets = new ArrayList<>();
+        List<int[]> stateOutputs = new ArrayList<>();
+        stateKeys.add(NO_KEYS);
+        stateTargets.add(NO_TARGETS);
+        stateOutputs.add(NO_TARGETS);
+
+        for (int literal = 0; literal < literals.size(); literal++) {
+            String text = literals.get(literal);
+            if (text.isEmpty()) {
+                throw new IllegalArgumentException("Literals cannot be empty");
+            }
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                int next = transition(stateKeys.get(state), stateTargets.get(state), c);
+                if (next < 0) {
+                    next = stateKeys.size();
+                    stateKeys.add(NO_KEYS);
+                    stateTargets.add(NO_TARGETS);
+                    stateOutputs.add(NO_TARGETS);
+                    addTransition(stateKeys, stateTargets, state, c, next);
+                }
+                state = next;
+            }
+            stateOutputs.set(state, append(stateOutputs.get(state), literal));
+        }
+
+        int stateCount = stateKeys.size();
+        this.keys = stateKeys.toArray(new char[0][]);
+        this.targets = stateTargets.toArray(new int[0][]);
+        this.outputs = stateOutputs.toArray(new int[0][]);
+        this.failure = new int[stateCount];
+        buildFailureLinks();
+    }
+
+    /**
+     * Returns the indexes of all literals occurring in the text.
+     */
+    BitSet findAll(String text) {
+        BitSet found = new BitSet();
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next;
+            while ((next = transition(keys[state], targets[state], c)) < 0 && state != 0) {
+                state = failure[state];
+            }
+            state = Math.max(next, 0);
+            for (int literal : outputs[state]) {
+                found.set(literal);
+            }
+        }
+        return found;
+    }
+
+    private void buildFailureLinks() {
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : targets[0]) {
+            failure[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < keys[state].length; i++) {
+                char c = keys[state][i];
+                int child = targets[state][i];
+                int fallback = failure[state];
+                int next;
+                while ((next = transition(keys[fallback], targets[fallback], c)) < 0 && fallback != 0) {
+                    fallback = failure[fallback];
+                }
+                failure[child] = next >= 0 && next != child ? next : 0;
+                // Literals ending at the failure state also end here
+                outputs[child] = merge(outputs[child], outputs[failure[child]]);
+                queue.add(child);
+            }
+        }
+    }
+
+    private static int transition(char[] stateKeys, int[] stateTargets, char c) {
+        int index = Arrays.binarySearch(stateKeys, c);
+        return index >= 0 ? stateTargets[index] : -1;
+    }
+
+    private static void addTransition(List<char[]> stateKeys, List<int[]> stateTargets, int state, char c, int target) {
+        char[] oldKeys = stateKeys.get(state);
+        int[] oldTargets = stateTargets.get(state);
+        int insertAt = -Arrays.binarySearch(oldKeys, c) - 1;
+
+        char[] newKeys = new char[oldKeys.length + 1];
+        int[] newTargets = new int[oldTargets.length + 1];
+        System.arraycopy(oldKeys, 0, newKeys, 0, insertAt);
+        System.arraycopy(oldTargets, 0, newTargets, 0, insertAt);
+        newKeys[insertAt] = c;
+        newTargets[insertAt] = target;
+        System.arraycopy(oldKeys, insertAt, newKeys, insertAt + 1, oldKeys.length - insertAt);
+        System.arraycopy(oldTargets, insertAt, newTargets, insertAt + 1, oldTargets.length - insertAt);
+
+        stateKeys.set(state, newKeys);
+        stateTargets.set(state, newTargets);
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    private static int[] merge(int[] first, int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,225 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads large JSONL expectation corpora from a memory-mapped file, decoding each response
+ * the first time its expectation matches.
+ */
+public class MappedExpectationLoader {
+    private static final Logger log = LoggerFactory.getLogger(MappedExpectationLoader.class);
+
+    private final ObjectMapper objectMapper;
+    private final ExpectationFileLoader entryDecoder;
+
+    public MappedExpectationLoader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.entryDecoder = new ExpectationFileLoader(objectMapper);
+    }
+
+    public int load(Path file, OpenAIMockBuilder builder) throws IOException {
+        MappedByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Expectation file too large to map: " + file);
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        long start = System.nanoTime();
+        int count = 0;
+        int lineStart = 0;
+        int limit = mapping.limit();
+        for (int i = 0; i <= limit; i++) {
+            if (i < limit && mapping.get(i) != '\n') {
+                continue;
+            }
+            if (!isBlank(mapping, lineStart, i)) {
+                builder.addExpectation(indexLine(mapping, lineStart, i - lineStart, file));
+                count++;
+            }
+            lineStart = i + 1;
+        }
+        log.info("Indexed {} expectations from {} in {} ms", count, file, (System.nanoTime() - start) / 1_000_000);
+        return count;
+    }
+
+    private MockExpectation indexLine(ByteBuffer mapping, int offset, int length, Path file) throws IOException {
+        String input = null;
+        String match = "exact";
+        String model = null;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(new ByteBufferInputStream(mapping, offset, length))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Expectation entries must be JSON objects in " + file + " at byte " + offset);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                switch (fieldName) {
+                    case "input":
+                        input = valueToken == JsonToken.VALUE_STRING ? parser.getText() : null;
+                        break;
+                    case "request":
+                        if (input == null && valueToken == JsonToken.START_OBJECT) {
+                            input = readRecordedInput(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case "match":
+                        match = parser.getText();
+                        break;
+                    case "model":
+                        model = valueToken == JsonToken.VALUE_STRING ? parser.getText() : null;
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+
+        if (input == null) {
+            throw new IllegalArgumentException("Expectation entry without a textual 'input' in " + file + " at byte " + offset);
+        }
+
+        MockExpectation expectation = new MockExpectation(input, matchType(match));
+        expectation.setModel(model);
+        expectation.setLazyResponse(new MappedResponse(mapping, offset, length));
+        return expectation;
+    }
+
+    /**
+     * Reads the first user message of a recorded request object, skipping everything else.
+     */
+    private String readRecordedInput(JsonParser parser) throws IOException {
+        String input = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            if (input != null || !"messages".equals(fieldName) || valueToken != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (input != null || token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                String role = null;
+                String content = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String messageField = parser.getCurrentName();
+                    JsonToken messageValue = parser.nextToken();
+                    if ("role".equals(messageField) && messageValue == JsonToken.VALUE_STRING) {
+                        role = parser.getText();
+                    } else if ("content".equals(messageField) && messageValue == JsonToken.VALUE_STRING) {
+                        content = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if ("user".equals(role)) {
+                    input = content != null ? content : "";
+                }
+            }
+        }
+        return input;
+    }
+
+    private static InputMatchType matchType(String match) {
+        switch (match) {
+            case "contains":
+                return InputMatchType.CONTAINS;
+            case "regex":
+                return InputMatchType.REGEX;
+            case "exact":
+                return InputMatchType.EXACT;
+            default:
+                throw new IllegalArgumentException("Unknown match type in expectation entry: " + match);
+        }
+    }
+
+    private static boolean isBlank(ByteBuffer mapping, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = mapping.get(i);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the response of one line of the mapped file.
+     */
+    private class MappedResponse implements LazyResponse {
+        private final ByteBuffer mapping;
+        private final int offset;
+        private final int length;
+
+        MappedResponse(ByteBuffer mapping, int offset, int length) {
+            this.mapping = mapping;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public void load(MockExpectation expectation) {
+            try {
+                JsonNode entry = objectMapper.readTree(new ByteBufferInputStream(mapping, offset, length));
+                entryDecoder.applyResponse(entry, expectation);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to decode expectation response at byte " + offset, e);
+            }
+            new ResponseCompiler(objectMapper).compile(expectation);
+        }
+    }
+
+    /**
+     * Reads a region of a buffer without changing the buffer's position.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+        private final int end;
+        private int position;
+
+        ByteBufferInputStream(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() {
+            return position < end ? buffer.get(position++) & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int targetOffset, int length) {
+            if (position >= end) {
+                return -1;
+            }
+            int count = Math.min(length, end - position);
+            buffer.get(position, target, targetOffset, count);
+            position += count;
+            return count;
+        }
+    }
+}
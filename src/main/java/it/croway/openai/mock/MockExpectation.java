@@ -3,8 +3,12 @@ package it.croway.openai.mock;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 /**
  * Represents a mock expectation for a specific user input.
@@ -12,13 +16,30 @@ import java.util.function.Consumer;
  */
 public class MockExpectation {
     private final String expectedInput;
+    private final InputMatchType inputMatchType;
+    private final Pattern inputPattern;
+    private final List<RequestCondition> conditions;
     private final ToolExecutionSequence toolSequence;
+    private String model;
     private String expectedResponse;
+    private float[] embedding;
+    private GeneratedContent generatedContent;
     private BiFunction<RecordedRequest, String, MockResponse> customResponseFunction;
     private Consumer<String> requestAssertion;
+    private CompiledResponse compiledResponse;
+    private LatencyProfile latencyProfile;
+    private FaultPolicy faultPolicy;
+    private volatile LazyResponse lazyResponse;
 
     public MockExpectation(String expectedInput) {
+        this(expectedInput, InputMatchType.EXACT);
+    }
+
+    public MockExpectation(String expectedInput, InputMatchType inputMatchType) {
         this.expectedInput = expectedInput;
+        this.inputMatchType = inputMatchType;
+        this.inputPattern = inputMatchType == InputMatchType.REGEX ? Pattern.compile(expectedInput) : null;
+        this.conditions = new ArrayList<>();
         this.toolSequence = new ToolExecutionSequence();
     }
 
@@ -27,10 +48,37 @@ public class MockExpectation {
         return expectedInput;
     }
 
+    public InputMatchType getInputMatchType() {
+        return inputMatchType;
+    }
+
+    /**
+     * Returns the model the request must ask for, or {@code null} to match any model.
+     */
+    public String getModel() {
+        return model;
+    }
+
+    public List<RequestCondition> getConditions() {
+        return Collections.unmodifiableList(conditions);
+    }
+
+    public boolean hasConditions() {
+        return model != null || !conditions.isEmpty();
+    }
+
     public String getExpectedResponse() {
         return expectedResponse;
     }
 
+    public float[] getEmbedding() {
+        return embedding;
+    }
+
+    public GeneratedContent getGeneratedContent() {
+        return generatedContent;
+    }
+
     public BiFunction<RecordedRequest, String, MockResponse> getCustomResponseFunction() {
         return customResponseFunction;
     }
@@ -43,11 +91,39 @@ public class MockExpectation {
         return toolSequence;
     }
 
+    public CompiledResponse getCompiledResponse() {
+        return compiledResponse;
+    }
+
+    public LatencyProfile getLatencyProfile() {
+        return latencyProfile;
+    }
+
+    public FaultPolicy getFaultPolicy() {
+        return faultPolicy;
+    }
+
     // Setters
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public void addCondition(RequestCondition condition) {
+        conditions.add(condition);
+    }
+
     public void setExpectedResponse(String expectedResponse) {
         this.expectedResponse = expectedResponse;
     }
 
+    public void setEmbedding(float[] embedding) {
+        this.embedding = embedding;
+    }
+
+    public void setGeneratedContent(GeneratedContent generatedContent) {
+        this.generatedContent = generatedContent;
+    }
+
     public void setCustomResponseFunction(BiFunction<RecordedRequest, String, MockResponse> customResponseFunction) {
         this.customResponseFunction = customResponseFunction;
     }
@@ -56,29 +132,60 @@ public class MockExpectation {
         this.requestAssertion = requestAssertion;
     }
 
-    // Tool sequence delegation methods
-    public void addToolExecutionStep(ToolExecutionStep step) {
-        toolSequence.addStep(step);
+    public void setCompiledResponse(CompiledResponse compiledResponse) {
+        this.compiledResponse = compiledResponse;
+    }
+
+    public void setLatencyProfile(LatencyProfile latencyProfile) {
+        this.latencyProfile = latencyProfile;
+    }
+
+    public void setFaultPolicy(FaultPolicy faultPolicy) {
+        this.faultPolicy = faultPolicy;
     }
 
-    public ToolExecutionStep getCurrentToolStep() {
-        return toolSequence.getCurrentStep();
+    /**
+     * Defers decoding of the response until the expectation is first matched.
+     */
+    public void setLazyResponse(LazyResponse lazyResponse) {
+        this.lazyResponse = lazyResponse;
     }
 
-    public void advanceToNextToolStep() {
-        toolSequence.advanceToNextStep();
+    public boolean isLoaded() {
+        return lazyResponse == null;
+    }
+
+    /**
+     * Decodes the lazy response, if any, exactly once.
+     */
+    public void ensureLoaded() {
+        if (lazyResponse == null) {
+            return;
+        }
+        synchronized (this) {
+            LazyResponse pending = lazyResponse;
+            if (pending != null) {
+                pending.load(this);
+                lazyResponse = null;
+            }
+        }
+    }
+
+    // Tool sequence delegation methods
+    public void addToolExecutionStep(ToolExecutionStep step) {
+        toolSequence.addStep(step);
     }
 
-    public boolean hasMoreToolSteps() {
-        return toolSequence.hasMoreSteps();
+    public ToolExecutionStep getToolStep(int index) {
+        return toolSequence.getStep(index);
     }
 
-    public boolean isInToolSequence() {
-        return toolSequence.isInProgress();
+    public ToolExecutionStep getLastToolStep() {
+        return toolSequence.getLastStep();
     }
 
-    public void resetToolSequence() {
-        toolSequence.reset();
+    public boolean hasToolStep(int index) {
+        return toolSequence.hasStep(index);
     }
 
     // Response type determination
@@ -87,20 +194,58 @@ public class MockExpectation {
             return MockResponseType.CUSTOM_FUNCTION;
         }
 
-        if (!toolSequence.isEmpty() && toolSequence.hasCurrentStep()) {
+        if (embedding != null) {
+            return MockResponseType.EMBEDDING;
+        }
+
+        if (!toolSequence.isEmpty()) {
             return MockResponseType.TOOL_CALLS;
         }
 
+        if (generatedContent != null) {
+            return MockResponseType.GENERATED;
+        }
+
         return MockResponseType.SIMPLE_TEXT;
     }
 
     public boolean matches(String input) {
-        return expectedInput.equals(input);
+        if (input == null) {
+            return false;
+        }
+        switch (inputMatchType) {
+            case CONTAINS:
+                return input.contains(expectedInput);
+            case REGEX:
+                return inputPattern.matcher(input).matches();
+            case EXACT:
+            default:
+                return expectedInput.equals(input);
+        }
+    }
+
+    public boolean matches(RequestContext context) {
+        if (model != null && !model.equals(context.getModel())) {
+            return false;
+        }
+        return matches(context.getFirstUserMessage()) && matchesConditions(context);
+    }
+
+    /**
+     * Evaluates the additional conditions only, assuming input and model already matched.
+     */
+    public boolean matchesConditions(RequestContext context) {
+        for (RequestCondition condition : conditions) {
+            if (!condition.test(context)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public String toString() {
-        return String.format("MockExpectation{input='%s', response='%s', toolSteps=%d}",
-                expectedInput, expectedResponse, toolSequence.getTotalSteps());
+        return String.format("MockExpectation{input='%s', match=%s, response='%s', toolSteps=%d}",
+                expectedInput, inputMatchType, expectedResponse, toolSequence.getTotalSteps());
     }
 }
\ No newline at end of file
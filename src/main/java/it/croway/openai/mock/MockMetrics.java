@@ -0,0 +1,288 @@
+package it.croway.openai.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Low-overhead instrumentation of the dispatch path, also served in Prometheus text format
+ * at {@code /__admin/metrics}.
+ */
+public class MockMetrics {
+    public static final String METRICS_PATH = "/__admin/metrics";
+
+    /**
+     * Distinct unmatched inputs tracked individually; further ones are only counted in total.
+     */
+    private static final int MAX_TRACKED_UNMATCHED_INPUTS = 1000;
+
+    private static final int LABEL_HASH_BYTES = 8;
+
+    private final ConcurrentMap<String, LongAdder> requestsByExpectation;
+    private final Map<MockResponseType, LongAdder> responsesByType;
+    private final ConcurrentMap<String, LongAdder> unmatchedByInput;
+    private final LongAdder unmatched;
+    private final ConcurrentMap<Integer, LongAdder> errorsByStatus;
+    private final Map<Fault.Type, LongAdder> faultsByType;
+    private final Map<ConversationStateStore.EvictionReason, LongAdder> conversationEvictions;
+    private final LatencyHistogram parseLatency;
+    private final LatencyHistogram renderLatency;
+    private final LatencyHistogram totalLatency;
+
+    public MockMetrics() {
+        this.requestsByExpectation = new ConcurrentHashMap<>();
+        this.responsesByType = new EnumMap<>(MockResponseType.class);
+        for (MockResponseType type : MockResponseType.values()) {
+            responsesByType.put(type, new LongAdder());
+        }
+        this.unmatchedByInput = new ConcurrentHashMap<>();
+        this.unmatched = new LongAdder();
+        this.errorsByStatus = new ConcurrentHashMap<>();
+        this.faultsByType = new EnumMap<>(Fault.Type.class);
+        for (Fault.Type type : Fault.Type.values()) {
+            faultsByType.put(type, new LongAdder());
+        }
+        this.conversationEvictions = new EnumMap<>(ConversationStateStore.EvictionReason.class);
+        for (ConversationStateStore.EvictionReason reason : ConversationStateStore.EvictionReason.values()) {
+            conversationEvictions.put(reason, new LongAdder());
+        }
+        this.parseLatency = new LatencyHistogram();
+        this.renderLatency = new LatencyHistogram();
+        this.totalLatency = new LatencyHistogram();
+    }
+
+    public void recordMatch(MockExpectation expectation, MockResponseType responseType) {
+        counter(requestsByExpectation, expectation.getExpectedInput()).increment();
+        responsesByType.get(responseType).increment();
+    }
+
+    public void recordUnmatched(String input) {
+        unmatched.increment();
+        LongAdder counter = unmatchedByInput.get(input);
+        if (counter == null && unmatchedByInput.size() < MAX_TRACKED_UNMATCHED_INPUTS) {
+            counter = counter(unmatchedByInput, input);
+        }
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    public void recordError(int statusCode) {
+        counter(errorsByStatus, statusCode).increment();
+    }
+
+    public void recordFault(Fault.Type type) {
+        faultsByType.get(type).increment();
+    }
+
+    public void recordConversationEvictions(ConversationStateStore.EvictionReason reason, int count) {
+        conversationEvictions.get(reason).add(count);
+    }
+
+    public void recordParse(long nanos) {
+        parseLatency.record(nanos);
+    }
+
+    public void recordRender(long nanos) {
+        renderLatency.record(nanos);
+    }
+
+    public void recordTotal(long nanos) {
+        totalLatency.record(nanos);
+    }
+
+    public long getRequestCount(String expectedInput) {
+        LongAdder counter = requestsByExpectation.get(expectedInput);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    public Map<String, Long> getRequestCounts() {
+        return snapshot(requestsByExpectation);
+    }
+
+    public long getResponseCount(MockResponseType responseType) {
+        return responsesByType.get(responseType).sum();
+    }
+
+    public long getUnmatchedCount() {
+        return unmatched.sum();
+    }
+
+    public Map<String, Long> getUnmatchedInputs() {
+        return snapshot(unmatchedByInput);
+    }
+
+    public long getErrorCount() {
+        long errors = 0;
+        for (LongAdder counter : errorsByStatus.values()) {
+            errors += counter.sum();
+        }
+        return errors;
+    }
+
+    public Map<Integer, Long> getErrorCounts() {
+        return snapshot(errorsByStatus);
+    }
+
+    public long getFaultCount(Fault.Type type) {
+        return faultsByType.get(type).sum();
+    }
+
+    public long getConversationEvictions(ConversationStateStore.EvictionReason reason) {
+        return conversationEvictions.get(reason).sum();
+    }
+
+    public LatencyHistogram getParseLatency() {
+        return parseLatency;
+    }
+
+    public LatencyHistogram getRenderLatency() {
+        return renderLatency;
+    }
+
+    public LatencyHistogram getTotalLatency() {
+        return totalLatency;
+    }
+
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# HELP openai_mock_requests_total Requests matched per expectation.\n");
+        out.append("# TYPE openai_mock_requests_total counter\n");
+        for (Map.Entry<String, Long> entry : getRequestCounts().entrySet()) {
+            sample(out, "openai_mock_requests_total", "expectation", labelOf(entry.getKey()), entry.getValue());
+        }
+
+        out.append("# HELP openai_mock_responses_total Responses per response type.\n");
+        out.append("# TYPE openai_mock_responses_total counter\n");
+        for (Map.Entry<MockResponseType, LongAdder> entry : responsesByType.entrySet()) {
+            sample(out, "openai_mock_responses_total", "type", entry.getKey().name(), entry.getValue().sum());
+        }
+
+        out.append("# HELP openai_mock_unmatched_requests_total Requests without a matching expectation.\n");
+        out.append("# TYPE openai_mock_unmatched_requests_total counter\n");
+        out.append("openai_mock_unmatched_requests_total ").append(getUnmatchedCount()).append('\n');
+        for (Map.Entry<String, Long> entry : getUnmatchedInputs().entrySet()) {
+            sample(out, "openai_mock_unmatched_requests_total", "input", labelOf(entry.getKey()), entry.getValue());
+        }
+
+        out.append("# HELP openai_mock_errors_total Error responses per status code.\n");
+        out.append("# TYPE openai_mock_errors_total counter\n");
+        for (Map.Entry<Integer, Long> entry : getErrorCounts().entrySet()) {
+            sample(out, "openai_mock_errors_total", "status", String.valueOf(entry.getKey()), entry.getValue());
+        }
+
+        out.append("# HELP openai_mock_faults_total Injected faults per fault type.\n");
+        out.append("# TYPE openai_mock_faults_total counter\n");
+        for (Map.Entry<Fault.Type, LongAdder> entry : faultsByType.entrySet()) {
+            sample(out, "openai_mock_faults_total", "type", entry.getKey().name(), entry.getValue().sum());
+        }
+
+        out.append("# HELP openai_mock_conversation_evictions_total Tool conversations evicted per reason.\n");
+        out.append("# TYPE openai_mock_conversation_evictions_total counter\n");
+        for (Map.Entry<ConversationStateStore.EvictionReason, LongAdder> entry : conversationEvictions.entrySet()) {
+            sample(out, "openai_mock_conversation_evictions_total", "reason", entry.getKey().name(), entry.getValue().sum());
+        }
+
+        out.append("# HELP openai_mock_request_duration_seconds Request handling latency per phase.\n");
+        out.append("# TYPE openai_mock_request_duration_seconds histogram\n");
+        histogram(out, "parse", parseLatency);
+        histogram(out, "render", renderLatency);
+        histogram(out, "total", totalLatency);
+
+        return out.toString();
+    }
+
+    /**
+     * Returns the label value of an expectation or unmatched input in the Prometheus text:
+     * the first 16 hex digits of the SHA-256 of its text, stable across runs.
+     */
+    public static String labelOf(String input) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+            StringBuilder label = new StringBuilder(LABEL_HASH_BYTES * 2);
+            for (int i = 0; i < LABEL_HASH_BYTES; i++) {
+                label.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            }
+            return label.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void histogram(StringBuilder out, String phase, LatencyHistogram histogram) {
+        long cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.getNumberOfBuckets(); i++) {
+            cumulative += histogram.getBucketCount(i);
+            out.append("openai_mock_request_duration_seconds_bucket{phase=\"").append(phase)
+                    .append("\",le=\"").append(toSeconds(LatencyHistogram.getUpperBoundNanos(i))).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        long count = histogram.getCount();
+        out.append("openai_mock_request_duration_seconds_bucket{phase=\"").append(phase).append("\",le=\"+Inf\"} ")
+                .append(count).append('\n');
+        out.append("openai_mock_request_duration_seconds_sum{phase=\"").append(phase).append("\"} ")
+                .append(toSeconds(histogram.getSumNanos())).append('\n');
+        out.append("openai_mock_request_duration_seconds_count{phase=\"").append(phase).append("\"} ")
+                .append(count).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, long count) {
+        out.append(name).append('{').append(label).append("=\"");
+        escapeLabelValue(out, value);
+        out.append("\"} ").append(count).append('\n');
+    }
+
+    private static void escapeLabelValue(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                default:
+                    out.append(c);
+                    break;
+            }
+        }
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private static <K> LongAdder counter(ConcurrentMap<K, LongAdder> counters, K key) {
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    private static <K extends Comparable<K>> Map<K, Long> snapshot(Map<K, LongAdder> counters) {
+        Map<K, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<K, LongAdder> entry : counters.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().sum());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+}
@@ -7,5 +7,7 @@ public enum MockResponseType {
     SIMPLE_TEXT,
     TOOL_CALLS,
     CUSTOM_FUNCTION,
-    FINAL_TOOL_RESPONSE
+    FINAL_TOOL_RESPONSE,
+    EMBEDDING,
+    GENERATED
 }
@@ -0,0 +1,19 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.Dispatcher;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Network transport serving mock responses through an okhttp {@link Dispatcher}.
+ */
+public interface MockServerTransport extends Closeable {
+
+    /**
+     * Starts listening on the given port, or on a random free port when {@code port} is 0.
+     */
+    void start(int port, Dispatcher dispatcher) throws IOException;
+
+    String getBaseUrl();
+}
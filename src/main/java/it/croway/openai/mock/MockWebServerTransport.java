@@ -0,0 +1,52 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockWebServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Transport backed by okhttp's {@link MockWebServer}, suited for unit tests.
+ */
+public class MockWebServerTransport implements MockServerTransport {
+    private final InetAddress address;
+    private MockWebServer server;
+
+    public MockWebServerTransport() {
+        this(null);
+    }
+
+    /**
+     * @param address local address to listen on, or {@code null} for {@code localhost}
+     */
+    public MockWebServerTransport(InetAddress address) {
+        this.address = address;
+    }
+
+    @Override
+    public void start(int port, Dispatcher dispatcher) throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new DrainingDispatcher(server, dispatcher));
+        if (address != null) {
+            server.start(address, port);
+        } else {
+            server.start(port);
+        }
+    }
+
+    @Override
+    public String getBaseUrl() {
+        if (server == null) {
+            throw new IllegalStateException("Transport not started");
+        }
+        return server.url("/").toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Handles model listing and retrieval.
+ */
+public class ModelsHandler implements EndpointHandler {
+    private final ExpectationStore store;
+    private final ObjectMapper objectMapper;
+    private final ResponseBuilder responseBuilder;
+    private volatile Models models;
+
+    public ModelsHandler(ExpectationRegistry registry, ObjectMapper objectMapper) {
+        this(ExpectationStore.of(registry), objectMapper);
+    }
+
+    public ModelsHandler(ExpectationStore store, ObjectMapper objectMapper) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.responseBuilder = new ResponseBuilder(objectMapper);
+    }
+
+    @Override
+    public MockResponse handle(RecordedRequest request, RequestOutcome outcome) {
+        Models models = currentModels();
+        String path = request.getPath();
+        int queryStart = path.indexOf('?');
+        if (queryStart >= 0) {
+            path = path.substring(0, queryStart);
+        }
+        if (path.endsWith("/models")) {
+            return new MockResponse().setHeader("Content-Type", "application/json").setBody(models.listBody);
+        }
+
+        String id = path.substring(path.lastIndexOf('/') + 1);
+        String body = models.modelBodies.get(id);
+        if (body == null) {
+            return responseBuilder.createErrorResponse(404, "The model '" + id + "' does not exist");
+        }
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+
+    private Models currentModels() {
+        ExpectationRegistry registry = store.getRegistry();
+        Models rendered = models;
+        if (rendered == null || rendered.registry != registry) {
+            // Racing threads may render the same snapshot twice, which is harmless
+            rendered = new Models(registry, objectMapper);
+            models = rendered;
+        }
+        return rendered;
+    }
+
+    private static final class Models {
+        private final ExpectationRegistry registry;
+        private final String listBody;
+        private final Map<String, String> modelBodies;
+
+        Models(ExpectationRegistry registry, ObjectMapper objectMapper) {
+            this.registry = registry;
+            Set<String> ids = new LinkedHashSet<>();
+            ids.add(ResponseBuilder.MODEL);
+            for (MockExpectation expectation : registry.getExpectations()) {
+                if (expectation.getModel() != null) {
+                    ids.add(expectation.getModel());
+                }
+            }
+
+            List<Map<String, Object>> models = new ArrayList<>(ids.size());
+            this.modelBodies = new HashMap<>();
+            try {
+                for (String id : ids) {
+                    Map<String, Object> model = new LinkedHashMap<>();
+                    model.put("id", id);
+                    model.put("object", "model");
+                    model.put("created", 0);
+                    model.put("owned_by", "openai-mock");
+                    models.add(model);
+                    modelBodies.put(id, objectMapper.writeValueAsString(model));
+                }
+                Map<String, Object> list = new LinkedHashMap<>();
+                list.put("object", "list");
+                list.put("data", models);
+                this.listBody = objectMapper.writeValueAsString(list);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
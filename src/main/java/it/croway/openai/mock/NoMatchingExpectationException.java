@@ -0,0 +1,27 @@
+package it.croway.openai.mock;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when no expectation matches a request, carrying the nearest candidates
+ * when fuzzy matching is enabled.
+ */
+public class NoMatchingExpectationException extends IllegalStateException {
+    private final String input;
+    private final List<FuzzyIndex.Candidate> candidates;
+
+    public NoMatchingExpectationException(String input, List<FuzzyIndex.Candidate> candidates) {
+        super(String.format("No matching mock expectation found for input: %s", input));
+        this.input = input;
+        this.candidates = candidates != null ? candidates : Collections.emptyList();
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public List<FuzzyIndex.Candidate> getCandidates() {
+        return candidates;
+    }
+}
@@ -3,57 +3,207 @@ package it.croway.openai.mock;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
 import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Main mock server for OpenAI API testing.
  * Implements JUnit 5 extension lifecycle methods.
  */
-public class OpenAIMock implements BeforeEachCallback, AfterEachCallback {
+public class OpenAIMock implements BeforeAllCallback, BeforeEachCallback, AfterEachCallback {
     private static final Logger log = LoggerFactory.getLogger(OpenAIMock.class);
+    private static final ExtensionContext.Namespace STORE_NAMESPACE = ExtensionContext.Namespace.create(OpenAIMock.class);
 
     private MockWebServer server;
+    private ServerPool pool;
+    private SharedMockServer sharedServer;
+    private String namespace;
+    private final ServerLifecycle lifecycle;
     private final List<MockExpectation> expectations;
     private final OpenAIMockBuilder builder;
     private final ObjectMapper objectMapper;
+    private final OpenAIMockConfiguration configuration;
+    private final MockMetrics metrics;
+    private final ExpectationStore store;
 
     public OpenAIMock() {
+        this(ServerLifecycle.PER_TEST);
+    }
+
+    public OpenAIMock(ServerLifecycle lifecycle) {
+        this.lifecycle = lifecycle;
         this.expectations = new ArrayList<>();
         this.objectMapper = new ObjectMapper();
-        this.builder = new OpenAIMockBuilder(this, this.expectations);
+        this.configuration = new OpenAIMockConfiguration();
+        this.metrics = new MockMetrics();
+        this.store = new ExpectationStore(this.configuration, this.objectMapper);
+        this.builder = new OpenAIMockBuilder(this, this.expectations, this.configuration);
     }
 
     public OpenAIMockBuilder builder() {
         return this.builder;
     }
 
+    ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Returns a builder for a named expectation set, published when {@link OpenAIMockBuilder#build()} is called.
+     */
+    public OpenAIMockBuilder expectationSet(String name) {
+        return new OpenAIMockBuilder(this, new ArrayList<>(), configuration, name);
+    }
+
+    /**
+     * Removes a named expectation set, returning whether it existed.
+     */
+    public boolean removeExpectationSet(String name) {
+        return store.remove(name);
+    }
+
+    /**
+     * Returns the store publishing the expectation sets of this mock, also managed through
+     * {@code /__admin/expectations}.
+     */
+    public ExpectationStore getExpectationStore() {
+        return store;
+    }
+
+    ExpectationRegistry getRegistry() {
+        return store.getRegistry();
+    }
+
+    OpenAIMockServerDispatcher createDispatcher() {
+        return new OpenAIMockServerDispatcher(store, configuration, metrics, objectMapper);
+    }
+
+    /**
+     * Returns the metrics recorded for requests served by this mock, also available in
+     * Prometheus text format at {@code /__admin/metrics}.
+     */
+    public MockMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the journal of the most recent requests served by this mock.
+     */
+    public RequestJournal getJournal() {
+        return configuration.getJournal();
+    }
+
+    public ServerLifecycle getLifecycle() {
+        return lifecycle;
+    }
+
     public String getBaseUrl() {
+        if (sharedServer != null && namespace != null) {
+            return sharedServer.getBaseUrl(namespace);
+        }
+        if (pool != null) {
+            return pool.getBaseUrl();
+        }
         if (server == null) {
             throw new IllegalStateException("Mock server not started. Call beforeEach() first.");
         }
         return server.url("/").toString();
     }
 
+    /**
+     * Returns the base URLs of every server of the pool, or the single base URL when the
+     * mock is not pooled. The front port of a pool, if any, is returned by {@link #getBaseUrl()}.
+     */
+    public List<String> getBaseUrls() {
+        if (pool != null) {
+            return pool.getBaseUrls();
+        }
+        return Collections.singletonList(getBaseUrl());
+    }
+
+    @Override
+    public void beforeAll(ExtensionContext context) throws Exception {
+        if (lifecycle != ServerLifecycle.PER_TEST) {
+            // Start the shared server up front so the first test does not pay for it
+            resolveSharedServer(context);
+        }
+    }
+
     @Override
     public void beforeEach(ExtensionContext context) throws Exception {
+        if (lifecycle != ServerLifecycle.PER_TEST && configuration.getServerPoolSize() > 1) {
+            throw new IllegalStateException("Server pools are only supported with ServerLifecycle.PER_TEST");
+        }
+        OpenAIMockServerDispatcher dispatcher = createDispatcher();
+        configuration.getJournal().clear();
+
+        if (lifecycle != ServerLifecycle.PER_TEST) {
+            sharedServer = resolveSharedServer(context);
+            namespace = sharedServer.register(dispatcher);
+            log.debug("Registered mock namespace {} on shared server", namespace);
+            return;
+        }
+
+        if (configuration.getServerPoolSize() > 1) {
+            pool = new ServerPool(configuration.getServerPoolSize(), MockWebServerTransport::new,
+                    configuration.isServerPoolFrontPort());
+            pool.start(0, dispatcher);
+            return;
+        }
+
         server = new MockWebServer();
         server.start();
-        server.setDispatcher(new OpenAIMockServerDispatcher(expectations, objectMapper));
+        server.setDispatcher(new DrainingDispatcher(server, dispatcher));
 
         log.info("Mock web server started on {}", server.url("/"));
     }
 
     @Override
     public void afterEach(ExtensionContext context) throws Exception {
-        if (server != null) {
+        if (sharedServer != null && namespace != null) {
+            sharedServer.unregister(namespace);
+            log.debug("Unregistered mock namespace {} from shared server", namespace);
+            namespace = null;
+        } else if (pool != null) {
+            pool.close();
+            pool = null;
+        } else if (server != null) {
             server.shutdown();
             log.info("Mock web server shut down");
         }
+
+        // Rethrows failures of request assertions that ran off the dispatch thread
+        if (configuration.getAsyncVerifier() != null) {
+            configuration.getAsyncVerifier().verify();
+        }
+    }
+
+    private SharedMockServer resolveSharedServer(ExtensionContext context) {
+        ExtensionContext storeContext = lifecycle == ServerLifecycle.PER_JVM
+                ? context.getRoot()
+                : classContext(context);
+
+        return storeContext.getStore(STORE_NAMESPACE).getOrComputeIfAbsent(SharedMockServer.class, key -> {
+            try {
+                return new SharedMockServer();
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to start shared mock web server", e);
+            }
+        }, SharedMockServer.class);
+    }
+
+    private ExtensionContext classContext(ExtensionContext context) {
+        ExtensionContext current = context;
+        while (current.getTestMethod().isPresent() && current.getParent().isPresent()) {
+            current = current.getParent().get();
+        }
+        return current;
     }
-}
\ No newline at end of file
+}
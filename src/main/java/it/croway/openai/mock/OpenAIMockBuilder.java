@@ -1,13 +1,17 @@
 package it.croway.openai.mock;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Fluent builder for creating OpenAI mock expectations.
@@ -17,11 +21,122 @@ public class OpenAIMockBuilder {
 
     private final OpenAIMock mock;
     private final List<MockExpectation> expectations;
+    private final OpenAIMockConfiguration configuration;
+    private final String setName;
     private MockExpectation currentExpectation;
 
-    public OpenAIMockBuilder(OpenAIMock mock, List<MockExpectation> expectations) {
+    public OpenAIMockBuilder(OpenAIMock mock, List<MockExpectation> expectations, OpenAIMockConfiguration configuration) {
+        this(mock, expectations, configuration, ExpectationStore.DEFAULT_SET);
+    }
+
+    public OpenAIMockBuilder(OpenAIMock mock, List<MockExpectation> expectations, OpenAIMockConfiguration configuration, String setName) {
         this.mock = mock;
         this.expectations = expectations;
+        this.configuration = configuration;
+        this.setName = setName;
+    }
+
+    public OpenAIMockBuilder streamChunkSize(int chunkSize) {
+        log.debug("Setting stream chunk size: {}", chunkSize);
+        configuration.setStreamChunkSize(chunkSize);
+        return this;
+    }
+
+    public OpenAIMockBuilder defaultLatency(LatencyProfile latencyProfile) {
+        log.debug("Setting default latency profile");
+        configuration.setDefaultLatency(latencyProfile);
+        return this;
+    }
+
+    public OpenAIMockBuilder rateLimit(long requestsPerMinute, long tokensPerMinute) {
+        return rateLimit(requestsPerMinute, tokensPerMinute, RateLimiter.KeyType.API_KEY);
+    }
+
+    public OpenAIMockBuilder rateLimit(long requestsPerMinute, long tokensPerMinute, RateLimiter.KeyType keyType) {
+        log.debug("Setting rate limit: {} requests and {} tokens per minute by {}", requestsPerMinute, tokensPerMinute, keyType);
+        configuration.setRateLimiter(new RateLimiter(requestsPerMinute, tokensPerMinute, keyType));
+        return this;
+    }
+
+    public OpenAIMockBuilder journal(int capacity, int maxBodyBytes) {
+        log.debug("Setting request journal capacity: {} entries of up to {} body bytes", capacity, maxBodyBytes);
+        configuration.setJournal(new RequestJournal(capacity, maxBodyBytes));
+        return this;
+    }
+
+    public OpenAIMockBuilder asyncAssertions() {
+        return asyncAssertions(AsyncRequestVerifier.DEFAULT_WORKERS, AsyncRequestVerifier.DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public OpenAIMockBuilder asyncAssertions(int workers, int queueCapacity) {
+        log.debug("Running request assertions on {} workers with a queue of {}", workers, queueCapacity);
+        configuration.setAsyncVerifier(new AsyncRequestVerifier(workers, queueCapacity));
+        return this;
+    }
+
+    public OpenAIMockBuilder fuzzyMatching(double threshold) {
+        return fuzzyMatching(threshold, OpenAIMockConfiguration.DEFAULT_FUZZY_CANDIDATES);
+    }
+
+    public OpenAIMockBuilder fuzzyMatching(double threshold, int candidates) {
+        log.debug("Enabling fuzzy matching with threshold {} and {} candidates", threshold, candidates);
+        configuration.setFuzzyMatching(threshold, candidates);
+        return this;
+    }
+
+    public OpenAIMockBuilder faults(FaultPolicy faultPolicy) {
+        log.debug("Setting global fault policy");
+        configuration.setFaultPolicy(faultPolicy);
+        return this;
+    }
+
+    public OpenAIMockBuilder serverPool(int servers) {
+        return serverPool(servers, false);
+    }
+
+    public OpenAIMockBuilder serverPool(int servers, boolean frontPort) {
+        log.debug("Serving each test from {} servers{}", servers, frontPort ? " behind a round-robin front port" : "");
+        configuration.setServerPool(servers, frontPort);
+        return this;
+    }
+
+    public OpenAIMockBuilder conversationLimits(int maxConversations, long idleTtl, TimeUnit unit) {
+        log.debug("Keeping at most {} tool conversations, idle for at most {} {}", maxConversations, idleTtl, unit);
+        configuration.setConversationLimits(maxConversations, idleTtl, unit);
+        return this;
+    }
+
+    public OpenAIMockBuilder usage() {
+        return usage(Tokenizer.approximate(), TokenCounter.DEFAULT_CACHE_SIZE);
+    }
+
+    public OpenAIMockBuilder usage(Tokenizer tokenizer, int cacheSize) {
+        log.debug("Reporting token usage with {} tokenizer and a cache of {} texts",
+                tokenizer.isExact() ? "an exact" : "an approximate", cacheSize);
+        configuration.setTokenCounter(new TokenCounter(tokenizer, cacheSize));
+        return this;
+    }
+
+    public OpenAIMockBuilder compression() {
+        return compression(0, new GzipEncoding());
+    }
+
+    public OpenAIMockBuilder compression(int minBodySize, ContentEncoding... encodings) {
+        log.debug("Compressing responses of at least {} bytes", minBodySize);
+        configuration.setCompression(new ResponseCompression(minBodySize, Arrays.asList(encodings)));
+        return this;
+    }
+
+    public OpenAIMockBuilder deterministicEmbeddings(int dimensions) {
+        log.debug("Generating deterministic embeddings with {} dimensions", dimensions);
+        configuration.setEmbeddingDimensions(dimensions);
+        return this;
+    }
+
+    public OpenAIMockBuilder route(String method, String path, EndpointHandler handler) {
+        log.debug("Adding route: {} {}", method, path);
+        configuration.getCustomRoutes().register(method, path, handler);
+        return this;
     }
 
     public OpenAIMockBuilder when(String expectedInput) {
@@ -30,6 +145,55 @@ public class OpenAIMockBuilder {
         return this;
     }
 
+    public OpenAIMockBuilder whenContaining(String substring) {
+        log.debug("Setting up expectation for input containing: {}", substring);
+        currentExpectation = new MockExpectation(substring, InputMatchType.CONTAINS);
+        return this;
+    }
+
+    public OpenAIMockBuilder whenMatching(String regex) {
+        log.debug("Setting up expectation for input matching: {}", regex);
+        currentExpectation = new MockExpectation(regex, InputMatchType.REGEX);
+        return this;
+    }
+
+    public OpenAIMockBuilder withModel(String model) {
+        validateCurrentExpectation("withModel()");
+        log.debug("Restricting expectation to model: {}", model);
+        currentExpectation.setModel(model);
+        return this;
+    }
+
+    public OpenAIMockBuilder withSystemPrompt(String systemPrompt) {
+        validateCurrentExpectation("withSystemPrompt()");
+        log.debug("Restricting expectation to system prompt: {}", systemPrompt);
+        currentExpectation.addCondition(context -> systemPrompt.equals(context.getSystemPrompt()));
+        return this;
+    }
+
+    public OpenAIMockBuilder withTool(String toolName) {
+        validateCurrentExpectation("withTool()");
+        log.debug("Restricting expectation to requests declaring tool: {}", toolName);
+        currentExpectation.addCondition(context -> context.getToolNames().contains(toolName));
+        return this;
+    }
+
+    public OpenAIMockBuilder withTemperature(double temperature) {
+        validateCurrentExpectation("withTemperature()");
+        log.debug("Restricting expectation to temperature: {}", temperature);
+        currentExpectation.addCondition(context -> context.getTemperature() != null
+                && Double.compare(context.getTemperature(), temperature) == 0);
+        return this;
+    }
+
+    public OpenAIMockBuilder withJsonPath(String path, Predicate<JsonNode> predicate) {
+        validateCurrentExpectation("withJsonPath()");
+        log.debug("Restricting expectation with a predicate on: {}", path);
+        String pointer = RequestContext.toJsonPointer(path);
+        currentExpectation.addCondition(context -> predicate.test(context.getRootNode().at(pointer)));
+        return this;
+    }
+
     public OpenAIMockBuilder replyWith(String expectedResponse) {
         validateCurrentExpectation("replyWith()");
         log.debug("Setting expected response: {}", expectedResponse);
@@ -37,6 +201,20 @@ public class OpenAIMockBuilder {
         return this;
     }
 
+    public OpenAIMockBuilder replyWithGenerated(int tokens, long seed) {
+        validateCurrentExpectation("replyWithGenerated()");
+        log.debug("Setting generated response of {} tokens with seed {}", tokens, seed);
+        currentExpectation.setGeneratedContent(new GeneratedContent(tokens, seed));
+        return this;
+    }
+
+    public OpenAIMockBuilder replyWithEmbedding(float... embedding) {
+        validateCurrentExpectation("replyWithEmbedding()");
+        log.debug("Setting expected embedding with {} dimensions", embedding.length);
+        currentExpectation.setEmbedding(embedding.clone());
+        return this;
+    }
+
     public OpenAIMockBuilder invokeTool(String toolName) {
         validateCurrentExpectation("invokeTool()");
         log.debug("Adding new tool execution step with tool: {}", toolName);
@@ -53,7 +231,7 @@ public class OpenAIMockBuilder {
         validateHasToolSteps("andInvokeTool()");
 
         log.debug("Adding parallel tool to current step: {}", toolName);
-        ToolExecutionStep currentStep = currentExpectation.getCurrentToolStep();
+        ToolExecutionStep currentStep = currentExpectation.getLastToolStep();
         currentStep.addToolCall(new ToolCallDefinition(toolName));
 
         return this;
@@ -63,7 +241,7 @@ public class OpenAIMockBuilder {
         validateCurrentExpectation("withParam()");
         validateHasToolSteps("withParam()");
 
-        ToolExecutionStep currentStep = currentExpectation.getCurrentToolStep();
+        ToolExecutionStep currentStep = currentExpectation.getLastToolStep();
         if (currentStep.isEmpty()) {
             throw new IllegalStateException("No tool calls in current step to add parameters to");
         }
@@ -89,6 +267,24 @@ public class OpenAIMockBuilder {
         return this;
     }
 
+    public OpenAIMockBuilder withLatency(LatencyProfile latencyProfile) {
+        validateCurrentExpectation("withLatency()");
+        log.debug("Setting latency profile");
+        currentExpectation.setLatencyProfile(latencyProfile);
+        return this;
+    }
+
+    public OpenAIMockBuilder withFault(Fault fault) {
+        return withFaults(FaultPolicy.always(fault));
+    }
+
+    public OpenAIMockBuilder withFaults(FaultPolicy faultPolicy) {
+        validateCurrentExpectation("withFaults()");
+        log.debug("Setting fault policy");
+        currentExpectation.setFaultPolicy(faultPolicy);
+        return this;
+    }
+
     public OpenAIMockBuilder andThenInvokeTool(String toolName) {
         validateCurrentExpectation("andThenInvokeTool()");
         validateHasToolSteps("andThenInvokeTool()");
@@ -97,7 +293,6 @@ public class OpenAIMockBuilder {
         ToolExecutionStep newStep = new ToolExecutionStep();
         newStep.addToolCall(new ToolCallDefinition(toolName));
         currentExpectation.addToolExecutionStep(newStep);
-        currentExpectation.advanceToNextToolStep();
 
         return this;
     }
@@ -110,13 +305,28 @@ public class OpenAIMockBuilder {
         return this;
     }
 
+    /**
+     * Adds an expectation created outside the fluent API, for example by a file loader.
+     */
+    void addExpectation(MockExpectation expectation) {
+        if (currentExpectation != null) {
+            end();
+        }
+        expectations.add(expectation);
+    }
+
+    /**
+     * Publishes the expectations defined so far as this builder's expectation set, replacing
+     * the previous version of the set while requests keep being served.
+     */
     public OpenAIMock build() {
         if (currentExpectation != null) {
             log.debug("Auto-finalizing current expectation during build");
             expectations.add(currentExpectation);
             currentExpectation = null;
         }
-        log.info("Built OpenAIMock with {} expectations", expectations.size());
+        mock.getExpectationStore().put(setName, expectations);
+        log.info("Built OpenAIMock with {} expectations in set {}", expectations.size(), setName);
         return mock;
     }
 
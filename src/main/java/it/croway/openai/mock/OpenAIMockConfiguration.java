@@ -0,0 +1,231 @@
+package it.croway.openai.mock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Global settings shared by all expectations of an {@link OpenAIMock}.
+ */
+public class OpenAIMockConfiguration {
+    public static final int DEFAULT_STREAM_CHUNK_SIZE = 8;
+    public static final int DEFAULT_FUZZY_CANDIDATES = 5;
+
+    private int streamChunkSize;
+    private LatencyProfile defaultLatency;
+    private RateLimiter rateLimiter;
+    private RequestJournal journal;
+    private double fuzzyThreshold;
+    private int fuzzyCandidates;
+    private int embeddingDimensions;
+    private ResponseCompression compression;
+    private FaultPolicy faultPolicy;
+    private TokenCounter tokenCounter;
+    private int maxConversations;
+    private long conversationIdleTtlNanos;
+    private int serverPoolSize;
+    private boolean serverPoolFrontPort;
+    private AsyncRequestVerifier asyncVerifier;
+    private final RouteTable customRoutes;
+
+    public OpenAIMockConfiguration() {
+        this.streamChunkSize = DEFAULT_STREAM_CHUNK_SIZE;
+        this.defaultLatency = LatencyProfile.none();
+        this.fuzzyCandidates = DEFAULT_FUZZY_CANDIDATES;
+        this.serverPoolSize = 1;
+        this.maxConversations = ConversationStateStore.DEFAULT_MAX_ENTRIES;
+        this.conversationIdleTtlNanos = ConversationStateStore.DEFAULT_IDLE_TTL_NANOS;
+        this.journal = new RequestJournal(RequestJournal.DEFAULT_CAPACITY, RequestJournal.DEFAULT_MAX_BODY_BYTES);
+        this.customRoutes = new RouteTable();
+    }
+
+    public int getStreamChunkSize() {
+        return streamChunkSize;
+    }
+
+    public void setStreamChunkSize(int streamChunkSize) {
+        if (streamChunkSize <= 0) {
+            throw new IllegalArgumentException("Stream chunk size must be positive");
+        }
+        this.streamChunkSize = streamChunkSize;
+    }
+
+    public LatencyProfile getDefaultLatency() {
+        return defaultLatency;
+    }
+
+    /**
+     * Returns the rate limiter applied to every request, or {@code null} if requests are not limited.
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    public void setDefaultLatency(LatencyProfile defaultLatency) {
+        this.defaultLatency = defaultLatency != null ? defaultLatency : LatencyProfile.none();
+    }
+
+    /**
+     * Returns the routes added with {@link OpenAIMockBuilder#route}, which take precedence
+     * over the built-in endpoints.
+     */
+    public RouteTable getCustomRoutes() {
+        return customRoutes;
+    }
+
+    /**
+     * Returns the response compression settings, or {@code null} if bodies are never compressed.
+     */
+    public ResponseCompression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(ResponseCompression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Returns the faults injected into responses of expectations without their own policy,
+     * or {@code null} if responses are healthy.
+     */
+    public FaultPolicy getFaultPolicy() {
+        return faultPolicy;
+    }
+
+    public void setFaultPolicy(FaultPolicy faultPolicy) {
+        this.faultPolicy = faultPolicy;
+    }
+
+    /**
+     * Returns the counter filling the {@code usage} block of responses, or {@code null} if
+     * responses carry no usage.
+     */
+    public TokenCounter getTokenCounter() {
+        return tokenCounter;
+    }
+
+    public void setTokenCounter(TokenCounter tokenCounter) {
+        this.tokenCounter = tokenCounter;
+    }
+
+    /**
+     * Returns the maximum number of tool conversations whose progress is kept.
+     */
+    public int getMaxConversations() {
+        return maxConversations;
+    }
+
+    /**
+     * Returns how long a tool conversation may stay idle before its progress is dropped,
+     * or 0 if conversations are only bounded in number.
+     */
+    public long getConversationIdleTtlNanos() {
+        return conversationIdleTtlNanos;
+    }
+
+    public void setConversationLimits(int maxConversations, long idleTtl, TimeUnit unit) {
+        if (maxConversations <= 0) {
+            throw new IllegalArgumentException("Maximum number of conversations must be positive");
+        }
+        if (idleTtl < 0) {
+            throw new IllegalArgumentException("Conversation idle TTL must not be negative");
+        }
+        this.maxConversations = maxConversations;
+        this.conversationIdleTtlNanos = unit.toNanos(idleTtl);
+    }
+
+    /**
+     * Returns the number of servers started for each test, sharing the expectations and metrics.
+     */
+    public int getServerPoolSize() {
+        return serverPoolSize;
+    }
+
+    /**
+     * Returns whether a pool of servers also listens on a front port balancing connections over them.
+     */
+    public boolean isServerPoolFrontPort() {
+        return serverPoolFrontPort;
+    }
+
+    public void setServerPool(int size, boolean frontPort) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Server pool size must be positive");
+        }
+        this.serverPoolSize = size;
+        this.serverPoolFrontPort = frontPort;
+    }
+
+    /**
+     * Returns the verifier running request assertions off the dispatch thread, or {@code null}
+     * if assertions run inline.
+     */
+    public AsyncRequestVerifier getAsyncVerifier() {
+        return asyncVerifier;
+    }
+
+    public void setAsyncVerifier(AsyncRequestVerifier asyncVerifier) {
+        this.asyncVerifier = asyncVerifier;
+    }
+
+    public RequestJournal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(RequestJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns whether inputs matching no expectation fall back to the nearest one.
+     */
+    public boolean isFuzzyMatching() {
+        return fuzzyThreshold > 0;
+    }
+
+    public double getFuzzyThreshold() {
+        return fuzzyThreshold;
+    }
+
+    public int getFuzzyCandidates() {
+        return fuzzyCandidates;
+    }
+
+    /**
+     * @param threshold  minimum trigram similarity, between 0 (exclusive) and 1, for a fuzzy match
+     * @param candidates number of nearest candidates listed when nothing matches
+     */
+    public void setFuzzyMatching(double threshold, int candidates) {
+        if (threshold <= 0 || threshold > 1) {
+            throw new IllegalArgumentException("Fuzzy matching threshold must be in (0, 1]");
+        }
+        if (candidates <= 0) {
+            throw new IllegalArgumentException("Fuzzy matching candidates must be positive");
+        }
+        this.fuzzyThreshold = threshold;
+        this.fuzzyCandidates = candidates;
+    }
+
+    /**
+     * Returns whether embeddings inputs without an explicit embedding get a generated one.
+     */
+    public boolean isDeterministicEmbeddings() {
+        return embeddingDimensions > 0;
+    }
+
+    /**
+     * Returns the dimensions of generated embeddings, unless a request asks for others.
+     */
+    public int getEmbeddingDimensions() {
+        return embeddingDimensions;
+    }
+
+    public void setEmbeddingDimensions(int embeddingDimensions) {
+        if (embeddingDimensions <= 0) {
+            throw new IllegalArgumentException("Embedding dimensions must be positive");
+        }
+        this.embeddingDimensions = embeddingDimensions;
+    }
+}
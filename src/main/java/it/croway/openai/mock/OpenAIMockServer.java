@@ -0,0 +1,125 @@
+package it.croway.openai.mock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Standalone mock server, for pointing load-test clients at an expectation model outside JUnit.
+ * Usage: {@code OpenAIMockServer --expectations <file> [--host <address>] [--port <port>] [--transport http|mockwebserver] [--servers <n>]}
+ */
+public class OpenAIMockServer {
+    private static final Logger log = LoggerFactory.getLogger(OpenAIMockServer.class);
+
+    private static final String MAX_IDLE_CONNECTIONS_PROPERTY = "sun.net.httpserver.maxIdleConnections";
+
+    private final OpenAIMock mock;
+    private final MockServerTransport transport;
+
+    public OpenAIMockServer(OpenAIMock mock, MockServerTransport transport) {
+        this.mock = mock;
+        this.transport = transport;
+    }
+
+    public void start(int port) throws IOException {
+        transport.start(port, mock.createDispatcher());
+    }
+
+    public String getBaseUrl() {
+        return transport.getBaseUrl();
+    }
+
+    public void stop() throws IOException {
+        transport.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path expectationsFile = null;
+        InetAddress host = InetAddress.getLoopbackAddress();
+        int port = 8080;
+        String transportName = "http";
+        int servers = 1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--expectations":
+                    expectationsFile = Paths.get(requireValue(args, ++i));
+                    break;
+                case "--host":
+                    host = InetAddress.getByName(requireValue(args, ++i));
+                    break;
+                case "--port":
+                    port = Integer.parseInt(requireValue(args, ++i));
+                    break;
+                case "--transport":
+                    transportName = requireValue(args, ++i);
+                    break;
+                case "--servers":
+                    servers = Integer.parseInt(requireValue(args, ++i));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (expectationsFile == null) {
+            throw new IllegalArgumentException("Usage: OpenAIMockServer --expectations <file> [--host <address>] [--port <port>] "
+                    + "[--transport http|mockwebserver] [--servers <n>]");
+        }
+
+        // The JDK server closes idle keep-alive connections beyond this limit (200 by default)
+        if (System.getProperty(MAX_IDLE_CONNECTIONS_PROPERTY) == null) {
+            System.setProperty(MAX_IDLE_CONNECTIONS_PROPERTY, "100000");
+        }
+
+        OpenAIMock mock = new OpenAIMock();
+        if (expectationsFile.getFileName().toString().endsWith(".jsonl")) {
+            new MappedExpectationLoader(mock.getObjectMapper()).load(expectationsFile, mock.builder());
+        } else {
+            new ExpectationFileLoader(mock.getObjectMapper()).load(expectationsFile, mock.builder());
+        }
+        mock.builder().build();
+
+        String name = transportName;
+        InetAddress address = host;
+        MockServerTransport transport = servers > 1
+                ? new ServerPool(servers, () -> createTransport(name, address), true, address)
+                : createTransport(transportName, address);
+        OpenAIMockServer server = new OpenAIMockServer(mock, transport);
+        server.start(port);
+        log.info("OpenAI mock server listening on {}", server.getBaseUrl());
+
+        CountDownLatch shutdown = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop();
+            } catch (IOException e) {
+                log.warn("Error while stopping mock server", e);
+            }
+            shutdown.countDown();
+        }));
+        shutdown.await();
+    }
+
+    private static MockServerTransport createTransport(String name, InetAddress address) {
+        switch (name) {
+            case "http":
+                return new HttpServerTransport(address);
+            case "mockwebserver":
+                return new MockWebServerTransport(address);
+            default:
+                throw new IllegalArgumentException("Unknown transport: " + name);
+        }
+    }
+
+    private static String requireValue(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+}
@@ -1,24 +1,246 @@
 package it.croway.openai.mock;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
- * Dispatcher that routes incoming requests to the appropriate request handler.
+ * Dispatcher that routes incoming requests to the handler of their endpoint, and applies
+ * rate limiting, fault injection, metrics and the request journal around them.
  */
 public class OpenAIMockServerDispatcher extends Dispatcher {
-    private final RequestHandler requestHandler;
+    private static final Logger log = LoggerFactory.getLogger(OpenAIMockServerDispatcher.class);
 
-    public OpenAIMockServerDispatcher(List<MockExpectation> expectations, ObjectMapper objectMapper) {
-        this.requestHandler = new RequestHandler(expectations, objectMapper);
+    private final RouteTable routes;
+    private final OpenAIMockConfiguration configuration;
+    private final MockMetrics metrics;
+    private final ResponseBuilder responseBuilder;
+    private final ExpectationResolver resolver;
+
+    public OpenAIMockServerDispatcher(ExpectationRegistry registry, OpenAIMockConfiguration configuration, ObjectMapper objectMapper) {
+        this(registry, configuration, new MockMetrics(), objectMapper);
+    }
+
+    public OpenAIMockServerDispatcher(ExpectationRegistry registry, OpenAIMockConfiguration configuration, MockMetrics metrics, ObjectMapper objectMapper) {
+        this(ExpectationStore.of(registry), configuration, metrics, objectMapper);
     }
 
+    public OpenAIMockServerDispatcher(ExpectationStore store, OpenAIMockConfiguration configuration, MockMetrics metrics, ObjectMapper objectMapper) {
+        this.configuration = configuration;
+        this.metrics = metrics;
+        this.responseBuilder = new ResponseBuilder(objectMapper);
+
+        this.resolver = new ExpectationResolver(store, configuration, metrics);
+        ModelsHandler modelsHandler = new ModelsHandler(store, objectMapper);
+        ExpectationAdminHandler adminHandler = new ExpectationAdminHandler(store, objectMapper);
+        // Routes also match below a base path, so "/v1/embeddings" resolves to "/embeddings"
+        this.routes = new RouteTable()
+                .register("POST", "/chat/completions", new RequestHandler(resolver, configuration, metrics, objectMapper))
+                .register("POST", "/completions", new CompletionsHandler(resolver, configuration, objectMapper))
+                .register("POST", "/embeddings", new EmbeddingsHandler(resolver, configuration, objectMapper))
+                .register("POST", "/responses", new ResponsesHandler(resolver, configuration, objectMapper))
+                .register("GET", "/models", modelsHandler)
+                .register("GET", "/models/*", modelsHandler)
+                .register("GET", MockMetrics.METRICS_PATH, (request, outcome) -> new MockResponse()
+                        .setResponseCode(200)
+                        .setHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+                        .setBody(metrics.toPrometheusText()), false);
+        for (String method : ExpectationAdminHandler.ROUTED_METHODS) {
+            routes.register(method, ExpectationAdminHandler.EXPECTATIONS_PATH, adminHandler, false)
+                    .register(method, ExpectationAdminHandler.EXPECTATIONS_PATH + "/*", adminHandler, false);
+        }
+        routes.registerAll(configuration.getCustomRoutes());
+    }
+
+    /**
+     * Dispatches the request, buffering any streaming body into the response.
+     */
     @Override
-    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
-        return requestHandler.handleRequest(request);
+    public MockResponse dispatch(RecordedRequest request) {
+        RequestOutcome outcome = new RequestOutcome();
+        MockResponse response = dispatch(request, outcome);
+        boolean events = outcome.getStreamingBody() instanceof EventStreamBody;
+        bufferStreamingBody(response, outcome);
+        if (events && outcome.getExpectation() != null) {
+            resolver.getLatencyProfile(outcome.getExpectation()).throttleEvents(response);
+        }
+        return response;
+    }
+
+    /**
+     * Dispatches the request, leaving a streaming body and its inter-chunk delays to the transport.
+     */
+    public StreamedResponse dispatchStreaming(RecordedRequest request) {
+        RequestOutcome outcome = new RequestOutcome();
+        MockResponse response = dispatch(request, outcome);
+        LatencyDistribution interChunk = null;
+        // A throttled body fault replaces the latency throttle
+        if (outcome.getExpectation() != null && outcome.getFault() == null
+                && (LatencyProfile.isThrottledEventStream(response) || outcome.getStreamingBody() instanceof EventStreamBody)) {
+            interChunk = resolver.getLatencyProfile(outcome.getExpectation()).getInterChunk();
+        }
+        return new StreamedResponse(response, outcome.getStreamingBody(), interChunk);
+    }
+
+    private MockResponse dispatch(RecordedRequest request, RequestOutcome outcome) {
+        RouteTable.Route route = routes.resolve(request.getMethod(), request.getPath());
+        if (route != null && !route.isInstrumented()) {
+            return handle(route.getHandler(), request, outcome);
+        }
+
+        long start = System.nanoTime();
+        ResponseCompression compression = configuration.getCompression();
+        if (compression != null) {
+            outcome.setContentEncoding(compression.negotiate(request.getHeader("Accept-Encoding")));
+        }
+        MockResponse response;
+        if (route == null) {
+            log.warn("No route for {} {}", request.getMethod(), request.getPath());
+            response = responseBuilder.createUnknownRouteResponse(request.getMethod(), request.getPath());
+        } else {
+            response = rateLimited(route.getHandler(), request, outcome);
+        }
+        if (outcome.getContentEncoding() != null) {
+            response = compress(compression, response, outcome.getContentEncoding());
+        }
+        if (!outcome.isFaultSampled() && configuration.getFaultPolicy() != null) {
+            // Requests that never resolved an expectation, such as unknown routes, had no side effects to skip
+            outcome.setFault(configuration.getFaultPolicy().sample());
+        }
+        if (outcome.getFault() != null) {
+            response = injectFault(outcome.getFault(), response, outcome);
+        }
+        long durationNanos = System.nanoTime() - start;
+        metrics.recordTotal(durationNanos);
+
+        if (outcome.getExpectation() != null && outcome.getResponseType() != null) {
+            metrics.recordMatch(outcome.getExpectation(), outcome.getResponseType());
+        }
+        int statusCode = statusCode(response);
+        if (statusCode >= 400) {
+            metrics.recordError(statusCode);
+        }
+        configuration.getJournal().record(request, outcome.getInput(), outcome.getExpectation() != null,
+                outcome.getResponseType(), statusCode, durationNanos);
+        return response;
+    }
+
+    private MockResponse rateLimited(EndpointHandler handler, RecordedRequest request, RequestOutcome outcome) {
+        RateLimiter rateLimiter = configuration.getRateLimiter();
+        if (rateLimiter == null) {
+            return handle(handler, request, outcome);
+        }
+
+        RateLimiter.Decision[] decision = new RateLimiter.Decision[1];
+        if (configuration.getTokenCounter() != null) {
+            // Handlers charge the prompt tokens they report in usage, as soon as they have counted them
+            outcome.setPromptTokenCharge(promptTokens -> {
+                decision[0] = rateLimiter.tryAcquire(request, promptTokens);
+                if (!decision[0].isAllowed()) {
+                    throw new RateLimitExceededException();
+                }
+            });
+        } else {
+            decision[0] = rateLimiter.tryAcquire(request);
+            if (!decision[0].isAllowed()) {
+                return rateLimitResponse(decision[0]);
+            }
+        }
+        MockResponse response = handle(handler, request, outcome);
+        if (decision[0] == null) {
+            // Invalid requests fail before their tokens are counted and only use up a request
+            decision[0] = rateLimiter.tryAcquire(request, 0);
+        }
+        if (!decision[0].isAllowed()) {
+            return rateLimitResponse(decision[0]);
+        }
+        if (outcome.getFault() != null && !outcome.getFault().needsBody()) {
+            // The request was never served, so it does not count against the limits
+            decision[0].refund();
+        }
+        return decision[0].addHeaders(response);
+    }
+
+    private MockResponse rateLimitResponse(RateLimiter.Decision decision) {
+        log.debug("Rate limit exceeded on {}", decision.getLimitType());
+        if (decision.isTooLarge()) {
+            return decision.addHeaders(responseBuilder.createRequestTooLargeResponse(
+                    configuration.getRateLimiter().getTokensPerMinute(), decision.getTokens()));
+        }
+        return decision.addHeaders(responseBuilder.createRateLimitResponse(decision.getLimitType()));
+    }
+
+    private MockResponse handle(EndpointHandler handler, RecordedRequest request, RequestOutcome outcome) {
+        try {
+            return handler.handle(request, outcome);
+        } catch (RateLimitExceededException e) {
+            // Replaced by the rate limit response
+            return new MockResponse();
+        } catch (FaultInjectedException e) {
+            // The fault replaces this placeholder once the response is instrumented
+            return new MockResponse().setHeader("Content-Type", "application/json");
+        } catch (NoMatchingExpectationException e) {
+            log.warn(e.getMessage());
+            return responseBuilder.createNoMatchResponse(e.getInput(), e.getCandidates());
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            log.warn("Invalid request: {}", e.getMessage());
+            return responseBuilder.createErrorResponse(400, e.getMessage());
+        } catch (Exception e) {
+            log.error("Error processing request", e);
+            return responseBuilder.createErrorResponse(500, "Error processing request: " + e.getMessage());
+        }
+    }
+
+    private MockResponse injectFault(Fault fault, MockResponse response, RequestOutcome outcome) {
+        log.debug("Injecting fault {}", fault.getType());
+        metrics.recordFault(fault.getType());
+        // Faulty responses are rare, so generated bodies are buffered to apply the fault to them
+        bufferStreamingBody(response, outcome);
+        return fault.apply(response, responseBuilder);
+    }
+
+    private static void bufferStreamingBody(MockResponse response, RequestOutcome outcome) {
+        if (outcome.getStreamingBody() == null) {
+            return;
+        }
+        Buffer body = new Buffer();
+        try {
+            outcome.getStreamingBody().writeTo(body.outputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        response.setBody(body);
+        outcome.setStreamingBody(null);
+    }
+
+    private MockResponse compress(ResponseCompression compression, MockResponse response, ContentEncoding encoding) {
+        try {
+            return compression.compress(response, encoding);
+        } catch (Exception e) {
+            log.error("Error compressing response", e);
+            return responseBuilder.createErrorResponse(500, "Error compressing response: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the code from a status line of the form "HTTP/1.1 200 OK".
+     */
+    private static int statusCode(MockResponse response) {
+        String status = response.getStatus();
+        int start = status.indexOf(' ') + 1;
+        int end = status.indexOf(' ', start);
+        try {
+            return Integer.parseInt(end < 0 ? status.substring(start) : status.substring(start, end));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
-}
\ No newline at end of file
+}
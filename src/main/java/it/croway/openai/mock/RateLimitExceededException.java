@@ -0,0 +1,12 @@
+package it.croway.openai.mock;
+
+/**
+ * Thrown when the prompt tokens a handler charges exceed the rate limits, so the handler
+ * stops before resolving an expectation.
+ */
+class RateLimitExceededException extends RuntimeException {
+
+    RateLimitExceededException() {
+        super("Rate limit exceeded", null, false, false);
+    }
+}
@@ -0,0 +1,267 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OpenAI-style rate limiter with a requests-per-minute and a tokens-per-minute bucket per key.
+ */
+public class RateLimiter {
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Request attribute used to group requests into rate limit buckets.
+     */
+    public enum KeyType {
+        API_KEY("Authorization"),
+        ORGANIZATION("OpenAI-Organization");
+
+        private final String header;
+
+        KeyType(String header) {
+            this.header = header;
+        }
+
+        public String getHeader() {
+            return header;
+        }
+    }
+
+    private final long requestsPerMinute;
+    private final long tokensPerMinute;
+    private final KeyType keyType;
+    private final ConcurrentMap<String, Buckets> bucketsByKey;
+
+    /**
+     * @param requestsPerMinute request limit, or 0 for no request limit
+     * @param tokensPerMinute   token limit, or 0 for no token limit
+     */
+    public RateLimiter(long requestsPerMinute, long tokensPerMinute, KeyType keyType) {
+        if (requestsPerMinute < 0 || tokensPerMinute < 0) {
+            throw new IllegalArgumentException("Rate limits cannot be negative");
+        }
+        this.requestsPerMinute = requestsPerMinute;
+        this.tokensPerMinute = tokensPerMinute;
+        this.keyType = keyType;
+        this.bucketsByKey = new ConcurrentHashMap<>();
+    }
+
+    public long getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    public long getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    public Decision tryAcquire(RecordedRequest request) {
+        return tryAcquire(request, estimateTokens(request));
+    }
+
+    /**
+     * Charges the request with a known number of prompt tokens, such as the count of the
+     * configured {@link TokenCounter}, instead of estimating it from the body size.
+     */
+    public Decision tryAcquire(RecordedRequest request, long tokens) {
+        String key = request.getHeader(keyType.getHeader());
+        return tryAcquire(key != null ? key : "anonymous", Math.max(1L, tokens), System.nanoTime());
+    }
+
+    Decision tryAcquire(String key, long tokens, long nowNanos) {
+        Buckets buckets = bucketsByKey.get(key);
+        if (buckets == null) {
+            Buckets created = new Buckets(requestsPerMinute, tokensPerMinute, nowNanos);
+            buckets = bucketsByKey.putIfAbsent(key, created);
+            if (buckets == null) {
+                buckets = created;
+            }
+        }
+
+        if (tokensPerMinute > 0 && tokens > tokensPerMinute) {
+            // Like OpenAI, a request larger than the whole token limit is rejected without a retry hint
+            return new Decision(false, "tokens", -1, buckets, nowNanos, tokens);
+        }
+        long requestWait = buckets.requests.tryAcquire(1, nowNanos);
+        if (requestWait > 0) {
+            return new Decision(false, "requests", requestWait, buckets, nowNanos, tokens);
+        }
+        long tokenWait = buckets.tokens.tryAcquire(tokens, nowNanos);
+        if (tokenWait > 0) {
+            buckets.requests.release(1);
+            return new Decision(false, "tokens", tokenWait, buckets, nowNanos, tokens);
+        }
+        return new Decision(true, null, 0, buckets, nowNanos, tokens);
+    }
+
+    /**
+     * Estimates about four bytes of request body per token.
+     */
+    private long estimateTokens(RecordedRequest request) {
+        return Math.max(1L, (request.getBodySize() + 3) / 4);
+    }
+
+    /**
+     * Outcome of a rate limit check, able to decorate responses with the matching headers.
+     */
+    public static final class Decision {
+        private final boolean allowed;
+        private final String limitType;
+        private final long retryAfterNanos;
+        private final Buckets buckets;
+        private final long nowNanos;
+        private final long tokens;
+
+        private Decision(boolean allowed, String limitType, long retryAfterNanos, Buckets buckets, long nowNanos, long tokens) {
+            this.allowed = allowed;
+            this.limitType = limitType;
+            this.retryAfterNanos = retryAfterNanos;
+            this.buckets = buckets;
+            this.nowNanos = nowNanos;
+            this.tokens = tokens;
+        }
+
+        /**
+         * Gives back the request and tokens taken by an allowed request that was not served.
+         * Rejected requests took nothing.
+         */
+        public void refund() {
+            if (allowed) {
+                buckets.requests.release(1);
+                buckets.tokens.release(tokens);
+            }
+        }
+
+        public boolean isAllowed() {
+            return allowed;
+        }
+
+        /**
+         * Returns {@code "requests"} or {@code "tokens"} for rejected requests.
+         */
+        public String getLimitType() {
+            return limitType;
+        }
+
+        /**
+         * Returns how long to wait before retrying, or -1 if the request is larger than the
+         * token limit and can never be allowed.
+         */
+        public long getRetryAfterNanos() {
+            return retryAfterNanos;
+        }
+
+        /**
+         * Returns the tokens the request asked for.
+         */
+        public long getTokens() {
+            return tokens;
+        }
+
+        public boolean isTooLarge() {
+            return !allowed && retryAfterNanos < 0;
+        }
+
+        public MockResponse addHeaders(MockResponse response) {
+            addBucketHeaders(response, "requests", buckets.requests);
+            addBucketHeaders(response, "tokens", buckets.tokens);
+            if (!allowed && !isTooLarge()) {
+                long retryAfterMillis = TimeUnit.NANOSECONDS.toMillis(retryAfterNanos) + 1;
+                response.setHeader("retry-after-ms", retryAfterMillis);
+                response.setHeader("Retry-After", (retryAfterMillis + 999) / 1000);
+            }
+            return response;
+        }
+
+        private void addBucketHeaders(MockResponse response, String name, TokenBucket bucket) {
+            if (bucket.limit == 0) {
+                return;
+            }
+            response.setHeader("x-ratelimit-limit-" + name, bucket.limit);
+            response.setHeader("x-ratelimit-remaining-" + name, bucket.remaining(nowNanos));
+            response.setHeader("x-ratelimit-reset-" + name, formatDuration(bucket.nanosUntilFull(nowNanos)));
+        }
+
+        /**
+         * Formats durations the way OpenAI does in reset headers, for example "20ms", "1.5s" or "6m0s".
+         */
+        private static String formatDuration(long nanos) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            if (millis < 1000) {
+                return millis + "ms";
+            }
+            long minutes = millis / 60_000;
+            double seconds = (millis % 60_000) / 1000.0;
+            String secondsText = seconds == Math.rint(seconds) ? String.valueOf((long) seconds) : String.valueOf(seconds);
+            return minutes > 0 ? minutes + "m" + secondsText + "s" : secondsText + "s";
+        }
+    }
+
+    private static final class Buckets {
+        private final TokenBucket requests;
+        private final TokenBucket tokens;
+
+        private Buckets(long requestsPerMinute, long tokensPerMinute, long nowNanos) {
+            this.requests = new TokenBucket(requestsPerMinute, nowNanos);
+            this.tokens = new TokenBucket(tokensPerMinute, nowNanos);
+        }
+    }
+
+    /**
+     * GCRA token bucket whose only state is the time at which it would be full again.
+     */
+    private static final class TokenBucket {
+        private final long limit;
+        private final long emissionIntervalNanos;
+        private final long burstNanos;
+        private final AtomicLong theoreticalArrival;
+
+        private TokenBucket(long limit, long nowNanos) {
+            this.limit = limit;
+            this.emissionIntervalNanos = limit > 0 ? Math.max(1L, MINUTE_NANOS / limit) : 0;
+            this.burstNanos = emissionIntervalNanos * limit;
+            this.theoreticalArrival = new AtomicLong(nowNanos);
+        }
+
+        /**
+         * Takes {@code cost} units and returns 0, or returns how long to wait for them.
+         */
+        long tryAcquire(long cost, long nowNanos) {
+            if (limit == 0) {
+                return 0;
+            }
+            long increment = cost * emissionIntervalNanos;
+            while (true) {
+                long current = theoreticalArrival.get();
+                long base = current - nowNanos < 0 ? nowNanos : current;
+                long next = base + increment;
+                long excess = next - nowNanos - burstNanos;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (theoreticalArrival.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        void release(long cost) {
+            if (limit > 0) {
+                theoreticalArrival.addAndGet(-cost * emissionIntervalNanos);
+            }
+        }
+
+        long remaining(long nowNanos) {
+            long used = nanosUntilFull(nowNanos);
+            return Math.max(0L, (burstNanos - used) / emissionIntervalNanos);
+        }
+
+        long nanosUntilFull(long nowNanos) {
+            return Math.max(0L, theoreticalArrival.get() - nowNanos);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package it.croway.openai.mock;
+
+/**
+ * Additional condition a request must satisfy for an expectation to match,
+ * evaluated after the input itself matched.
+ */
+@FunctionalInterface
+public interface RequestCondition {
+    boolean test(RequestContext context);
+}
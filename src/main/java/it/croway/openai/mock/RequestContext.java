@@ -1,24 +1,211 @@
 package it.croway.openai.mock;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
- * Context object that parses and provides easy access to request information.
+ * Context object that provides easy access to request information.
  */
 public class RequestContext {
-    private final JsonNode rootNode;
-    private final JsonNode messagesNode;
+    private final String firstUserMessage;
+    private final boolean toolRole;
+    private final int toolRounds;
+    private final String firstToolCallId;
+    private final String lastToolCallId;
+    private final String systemPrompt;
+    private final boolean stream;
+    private final String model;
+    private final Double temperature;
+    private final List<String> toolNames;
+    private final int promptTokens;
+    private final boolean includeUsage;
+    private final Buffer body;
+    private final ObjectMapper objectMapper;
+    private JsonNode rootNode;
 
     public RequestContext(JsonNode rootNode) {
+        JsonNode messagesNode = rootNode.path("messages").isArray() ? rootNode.path("messages") : MissingNode.getInstance();
         this.rootNode = rootNode;
-        this.messagesNode = rootNode.path("messages");
+        this.firstUserMessage = findFirstUserMessage(messagesNode);
+        this.toolRole = containsToolRole(messagesNode);
+        this.toolRounds = countToolRounds(messagesNode);
+        this.firstToolCallId = findFirstToolCallId(messagesNode);
+        this.lastToolCallId = findLastToolCallId(messagesNode);
+        this.systemPrompt = findSystemPrompt(messagesNode);
+        this.stream = rootNode.path("stream").asBoolean(false);
+        this.model = rootNode.path("model").isTextual() ? rootNode.path("model").asText() : null;
+        this.temperature = rootNode.path("temperature").isNumber() ? rootNode.path("temperature").asDouble() : null;
+        this.toolNames = findToolNames(rootNode.path("tools"));
+        this.promptTokens = 0;
+        this.includeUsage = rootNode.path("stream_options").path("include_usage").asBoolean(false);
+        this.body = null;
+        this.objectMapper = null;
+    }
+
+    RequestContext(String firstUserMessage, boolean toolRole, int toolRounds, String firstToolCallId,
+                   String systemPrompt, boolean stream, String model, Double temperature, List<String> toolNames,
+                   Buffer body, ObjectMapper objectMapper) {
+        this(firstUserMessage, toolRole, toolRounds, firstToolCallId, null, systemPrompt, stream, model, temperature,
+                toolNames, 0, false, body, objectMapper);
+    }
+
+    RequestContext(String firstUserMessage, boolean toolRole, int toolRounds, String firstToolCallId, String lastToolCallId,
+                   String systemPrompt, boolean stream, String model, Double temperature, List<String> toolNames,
+                   int promptTokens, boolean includeUsage, Buffer body, ObjectMapper objectMapper) {
+        this.firstUserMessage = firstUserMessage;
+        this.toolRole = toolRole;
+        this.toolRounds = toolRounds;
+        this.firstToolCallId = firstToolCallId;
+        this.lastToolCallId = lastToolCallId;
+        this.systemPrompt = systemPrompt;
+        this.stream = stream;
+        this.model = model;
+        this.temperature = temperature;
+        this.toolNames = toolNames;
+        this.promptTokens = promptTokens;
+        this.includeUsage = includeUsage;
+        this.body = body;
+        this.objectMapper = objectMapper;
     }
 
     public boolean hasToolRole() {
-        if (!messagesNode.isArray()) {
-            return false;
+        return toolRole;
+    }
+
+    public String getFirstUserMessage() {
+        return firstUserMessage;
+    }
+
+    /**
+     * Returns the id of the first tool call in the message history, which identifies the conversation.
+     */
+    public String getFirstToolCallId() {
+        return firstToolCallId;
+    }
+
+    /**
+     * Returns the {@code tool_call_id} of the last tool message in the history.
+     */
+    public String getLastToolCallId() {
+        return lastToolCallId;
+    }
+
+    /**
+     * Counts the rounds of tool results in the message history, where consecutive
+     * tool messages belong to the same round.
+     */
+    public int countToolRounds() {
+        return toolRounds;
+    }
+
+    public boolean isStream() {
+        return stream;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Returns the content of the first system or developer message, or {@code null} if there is none.
+     */
+    public String getSystemPrompt() {
+        return systemPrompt;
+    }
+
+    /**
+     * Returns the sampling temperature, or {@code null} if the request does not set one.
+     */
+    public Double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * Returns the names of the functions declared in the request's {@code tools}.
+     */
+    public List<String> getToolNames() {
+        return toolNames;
+    }
+
+    /**
+     * Returns the tokens of the prompt messages, or 0 if they were not counted.
+     */
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    /**
+     * Returns whether a streaming request asked for a final usage chunk with {@code stream_options.include_usage}.
+     */
+    public boolean isIncludeUsage() {
+        return includeUsage;
+    }
+
+    /**
+     * Returns the raw request body, or {@code null} if the context was built from a JSON tree.
+     */
+    public String getRequestBody() {
+        return body != null ? body.snapshot().utf8() : null;
+    }
+
+    public JsonNode getMessagesNode() {
+        return getRootNode().path("messages");
+    }
+
+    /**
+     * Returns the node at a simple JSON path such as {@code $.messages[0].role} or a JSON pointer.
+     */
+    public JsonNode at(String path) {
+        return getRootNode().at(toJsonPointer(path));
+    }
+
+    static String toJsonPointer(String path) {
+        if (path.isEmpty() || path.startsWith("/")) {
+            return path;
+        }
+        StringBuilder pointer = new StringBuilder();
+        int start = path.startsWith("$") ? 1 : 0;
+        for (int i = start; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '.' || c == '[') {
+                pointer.append('/');
+            } else if (c == '~') {
+                pointer.append("~0");
+            } else if (c == '/') {
+                pointer.append("~1");
+            } else if (c != ']') {
+                pointer.append(c);
+            }
+        }
+        if (pointer.length() > 0 && pointer.charAt(0) != '/') {
+            pointer.insert(0, '/');
         }
+        return pointer.toString();
+    }
+
+    public JsonNode getRootNode() {
+        if (rootNode == null && body == null) {
+            return MissingNode.getInstance();
+        }
+        if (rootNode == null) {
+            try {
+                rootNode = objectMapper.readTree(body.peek().inputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to parse request body", e);
+            }
+        }
+        return rootNode;
+    }
 
+    private static boolean containsToolRole(JsonNode messagesNode) {
         for (JsonNode messageNode : messagesNode) {
             String role = messageNode.path("role").asText();
             if ("tool".equals(role)) {
@@ -28,11 +215,7 @@ public class RequestContext {
         return false;
     }
 
-    public String getFirstUserMessage() {
-        if (!messagesNode.isArray()) {
-            return null;
-        }
-
+    private static String findFirstUserMessage(JsonNode messagesNode) {
         for (JsonNode messageNode : messagesNode) {
             String role = messageNode.path("role").asText();
             if ("user".equals(role)) {
@@ -42,11 +225,68 @@ public class RequestContext {
         return null;
     }
 
-    public JsonNode getMessagesNode() {
-        return messagesNode;
+    private static String findSystemPrompt(JsonNode messagesNode) {
+        for (JsonNode messageNode : messagesNode) {
+            if (RequestReader.isSystemRole(messageNode.path("role").asText())) {
+                return messageNode.path("content").asText();
+            }
+        }
+        return null;
     }
 
-    public JsonNode getRootNode() {
-        return rootNode;
+    private static List<String> findToolNames(JsonNode toolsNode) {
+        if (!toolsNode.isArray()) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>();
+        for (JsonNode toolNode : toolsNode) {
+            JsonNode name = toolNode.path("function").path("name");
+            if (name.isTextual()) {
+                names.add(name.asText());
+            }
+        }
+        return names;
+    }
+
+    private static String findFirstToolCallId(JsonNode messagesNode) {
+        for (JsonNode messageNode : messagesNode) {
+            String role = messageNode.path("role").asText();
+            if ("assistant".equals(role)) {
+                JsonNode toolCallId = messageNode.path("tool_calls").path(0).path("id");
+                if (toolCallId.isTextual()) {
+                    return toolCallId.asText();
+                }
+            } else if ("tool".equals(role)) {
+                JsonNode toolCallId = messageNode.path("tool_call_id");
+                if (toolCallId.isTextual()) {
+                    return toolCallId.asText();
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String findLastToolCallId(JsonNode messagesNode) {
+        String lastToolCallId = null;
+        for (JsonNode messageNode : messagesNode) {
+            JsonNode toolCallId = messageNode.path("tool_call_id");
+            if ("tool".equals(messageNode.path("role").asText()) && toolCallId.isTextual()) {
+                lastToolCallId = toolCallId.asText();
+            }
+        }
+        return lastToolCallId;
+    }
+
+    private static int countToolRounds(JsonNode messagesNode) {
+        int rounds = 0;
+        boolean previousWasTool = false;
+        for (JsonNode messageNode : messagesNode) {
+            boolean isTool = "tool".equals(messageNode.path("role").asText());
+            if (isTool && !previousWasTool) {
+                rounds++;
+            }
+            previousWasTool = isTool;
+        }
+        return rounds;
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,5 @@
 package it.croway.openai.mock;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -8,86 +7,137 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Handles incoming requests and matches them to appropriate mock expectations.
+ * Handles chat completion requests and matches them to appropriate mock expectations.
  */
-public class RequestHandler {
+public class RequestHandler implements EndpointHandler {
     private static final Logger log = LoggerFactory.getLogger(RequestHandler.class);
 
-    private final List<MockExpectation> expectations;
+    public static final String CONVERSATION_ID_HEADER = "X-Conversation-Id";
+
+    private final OpenAIMockConfiguration configuration;
     private final ResponseBuilder responseBuilder;
+    private final RequestReader requestReader;
+    private final ConversationStateStore conversations;
+    private final MockMetrics metrics;
+    private final ExpectationResolver resolver;
     private final ObjectMapper objectMapper;
 
-    public RequestHandler(List<MockExpectation> expectations, ObjectMapper objectMapper) {
-        this.expectations = expectations;
+    public RequestHandler(ExpectationRegistry registry, OpenAIMockConfiguration configuration, ObjectMapper objectMapper) {
+        this(registry, configuration, new MockMetrics(), objectMapper);
+    }
+
+    public RequestHandler(ExpectationRegistry registry, OpenAIMockConfiguration configuration, MockMetrics metrics, ObjectMapper objectMapper) {
+        this(new ExpectationResolver(registry, configuration, metrics), configuration, metrics, objectMapper);
+    }
+
+    public RequestHandler(ExpectationResolver resolver, OpenAIMockConfiguration configuration, MockMetrics metrics, ObjectMapper objectMapper) {
+        this.configuration = configuration;
+        this.metrics = metrics;
+        this.resolver = resolver;
         this.objectMapper = objectMapper;
+        this.requestReader = new RequestReader(objectMapper);
         this.responseBuilder = new ResponseBuilder(objectMapper);
+        this.conversations = new ConversationStateStore(configuration.getMaxConversations(),
+                configuration.getConversationIdleTtlNanos(), TimeUnit.NANOSECONDS, metrics);
     }
 
-    public MockResponse handleRequest(RecordedRequest request) {
-        try {
-            String requestBody = request.getBody().readUtf8();
-            log.debug("Processing request: {}", requestBody);
+    /**
+     * Handles a request on its own, without the rate limiting, instrumentation and error
+     * responses applied by {@link OpenAIMockServerDispatcher}.
+     */
+    MockResponse handleRequest(RecordedRequest request) throws Exception {
+        return handle(request, new RequestOutcome());
+    }
 
-            JsonNode rootNode = objectMapper.readTree(requestBody);
-            RequestContext context = new RequestContext(rootNode);
+    /**
+     * Handles a chat completion request, failing with an exception the dispatcher turns into an error response.
+     */
+    @Override
+    public MockResponse handle(RecordedRequest request, RequestOutcome outcome) throws Exception {
+        long parseStart = System.nanoTime();
+        RequestContext context = requestReader.read(request.getBody(), configuration.getTokenCounter());
+        long renderStart = System.nanoTime();
+        metrics.recordParse(renderStart - parseStart);
+        outcome.chargePromptTokens(context.getPromptTokens());
+        if (log.isDebugEnabled()) {
+            log.debug("Processing request: {}", context.getRequestBody());
+        }
 
-            if (context.hasToolRole()) {
-                return handleToolSequenceResponse(context);
-            } else {
-                return handleUserInput(request, requestBody, context);
-            }
-        } catch (Exception e) {
-            log.error("Error processing request", e);
-            return responseBuilder.createErrorResponse(500, "Error processing request: " + e.getMessage());
+        MockResponse response;
+        if (context.hasToolRole()) {
+            response = handleToolSequenceResponse(request, context, outcome);
+        } else {
+            response = handleUserInput(request, context, outcome);
         }
+        metrics.recordRender(System.nanoTime() - renderStart);
+        return response;
     }
 
-    private MockResponse handleToolSequenceResponse(RequestContext context) throws Exception {
+    private MockResponse handleToolSequenceResponse(RecordedRequest request, RequestContext context, RequestOutcome outcome) throws Exception {
         String originalInput = context.getFirstUserMessage();
         if (originalInput == null) {
             log.warn("Could not find original user input in message history");
             return responseBuilder.createErrorResponse(400, "Original user input not found");
         }
 
-        MockExpectation expectation = findExpectationByInput(originalInput);
+        MockExpectation expectation = resolver.resolve(context, outcome);
         if (expectation == null) {
             log.warn("No matching expectation found for tool sequence with input: {}", originalInput);
             return responseBuilder.createErrorResponse(404, "No matching expectation found for tool sequence");
         }
 
-        expectation.advanceToNextToolStep();
+        String conversationId = resolveConversationId(request, context);
+        int stepIndex = conversationId != null
+                ? conversations.step(conversationId, context.countToolRounds(), context.getLastToolCallId())
+                : context.countToolRounds();
 
-        if (expectation.hasMoreToolSteps()) {
-            log.debug("Executing next tool step for expectation: {}", originalInput);
-            return createToolCallResponse(expectation);
+        if (expectation.hasToolStep(stepIndex)) {
+            log.debug("Executing tool step {} for expectation: {}", stepIndex, originalInput);
+            outcome.setResponseType(MockResponseType.TOOL_CALLS);
+            return applyLatency(expectation, createToolCallResponse(expectation, stepIndex, context, outcome));
         } else {
             log.debug("Tool sequence completed for expectation: {}", originalInput);
-            return responseBuilder.createFinalToolResponse(context.getMessagesNode(), expectation.getExpectedResponse());
+            outcome.setResponseType(MockResponseType.FINAL_TOOL_RESPONSE);
+            if (conversationId != null) {
+                conversations.reset(conversationId);
+            }
+            TokenUsage usage = isUsageReported(context)
+                    ? usage(context, responseBuilder.resolveFinalToolContent(context.getMessagesNode(), expectation.getExpectedResponse()), null)
+                    : null;
+            if (context.isStream()) {
+                return applyLatency(expectation, streamEvents(outcome, responseBuilder.createStreamingFinalToolBody(
+                        context.getMessagesNode(), expectation.getExpectedResponse(), configuration.getStreamChunkSize(), usage)));
+            }
+            return applyLatency(expectation, responseBuilder.createFinalToolResponse(context.getMessagesNode(),
+                    expectation.getExpectedResponse(), usage));
         }
     }
 
-    private MockResponse handleUserInput(RecordedRequest request, String requestBody, RequestContext context) throws Exception {
+    private MockResponse handleUserInput(RecordedRequest request, RequestContext context, RequestOutcome outcome) throws Exception {
         String userInput = context.getFirstUserMessage();
         if (userInput == null) {
             log.warn("User message content not found in request");
             throw new IllegalArgumentException("User message content not found in request");
         }
 
-        MockExpectation expectation = findExpectationByInput(userInput);
-
-        expectation.resetToolSequence();
+        MockExpectation expectation = resolver.resolve(context, outcome);
 
-        // Execute request assertion if present
-        if (expectation.getRequestAssertion() != null) {
-            expectation.getRequestAssertion().accept(requestBody);
+        String conversationId = request.getHeader(CONVERSATION_ID_HEADER);
+        if (conversationId != null) {
+            conversations.reset(conversationId);
         }
 
-        return createResponse(expectation, request, userInput);
+        resolver.assertRequest(expectation, context);
+
+        outcome.setResponseType(expectation.getResponseType());
+        return applyLatency(expectation, createResponse(expectation, request, userInput, context, outcome));
     }
 
-    private MockResponse createResponse(MockExpectation expectation, RecordedRequest request, String userInput) throws Exception {
+    private MockResponse createResponse(MockExpectation expectation, RecordedRequest request, String userInput,
+                                        RequestContext context, RequestOutcome outcome) throws Exception {
         MockResponseType responseType = expectation.getResponseType();
 
         switch (responseType) {
@@ -96,27 +146,104 @@ public class RequestHandler {
                 return expectation.getCustomResponseFunction().apply(request, userInput);
 
             case TOOL_CALLS:
-                return createToolCallResponse(expectation);
+                return createToolCallResponse(expectation, 0, context, outcome);
+
+            case GENERATED:
+                log.debug("Streaming generated response of {} tokens", expectation.getGeneratedContent().getTokens());
+                outcome.setStreamingBody(responseBuilder.createGeneratedBody(expectation.getGeneratedContent(),
+                        context.isStream(), configuration.getStreamChunkSize(),
+                        usage(context, expectation.getGeneratedContent().getTokens())));
+                return responseBuilder.createGeneratedResponse(context.isStream());
 
             case SIMPLE_TEXT:
             default:
                 log.debug("Creating simple text response");
-                return responseBuilder.createSimpleTextResponse(expectation.getExpectedResponse());
+                TokenUsage usage = usage(context, expectation.getExpectedResponse(), null);
+                if (context.isStream()) {
+                    return streamEvents(outcome, responseBuilder.createStreamingTextBody(expectation.getExpectedResponse(),
+                            configuration.getStreamChunkSize(), usage));
+                }
+                if (expectation.getCompiledResponse() != null) {
+                    return createCompiledResponse(expectation.getCompiledResponse(), outcome, usage);
+                }
+                return responseBuilder.createSimpleTextResponse(expectation.getExpectedResponse(), usage);
         }
     }
 
-    private MockResponse createToolCallResponse(MockExpectation expectation) throws Exception {
-        ToolExecutionStep currentStep = expectation.getCurrentToolStep();
+    private MockResponse createToolCallResponse(MockExpectation expectation, int stepIndex, RequestContext context,
+                                                RequestOutcome outcome) throws Exception {
+        ToolExecutionStep currentStep = expectation.getToolStep(stepIndex);
+        TokenUsage usage = usage(context, expectation.getExpectedResponse(), currentStep.getToolCalls());
+        if (context.isStream()) {
+            return streamEvents(outcome, responseBuilder.createStreamingToolCallBody(
+                    expectation.getExpectedResponse(),
+                    currentStep.getToolCalls(),
+                    configuration.getStreamChunkSize(),
+                    usage
+            ));
+        }
+        if (currentStep.getCompiledResponse() != null) {
+            return createCompiledResponse(currentStep.getCompiledResponse(), outcome, usage);
+        }
         return responseBuilder.createToolCallResponse(
                 expectation.getExpectedResponse(),
-                currentStep.getToolCalls()
+                currentStep.getToolCalls(),
+                usage
         );
     }
 
-    private MockExpectation findExpectationByInput(String input) {
-        return expectations.stream()
-                .filter(expectation -> expectation.matches(input))
-                .findFirst()
-                .orElseThrow(() -> new IllegalStateException(String.format("No matching mock expectation found for input: %s", input)));
+    private MockResponse streamEvents(RequestOutcome outcome, EventStreamBody events) {
+        outcome.setStreamingBody(events);
+        return responseBuilder.createEventStreamResponse();
+    }
+
+    /**
+     * Renders a compiled response, compressed only from the configured minimum body size.
+     */
+    private MockResponse createCompiledResponse(CompiledResponse compiledResponse, RequestOutcome outcome, TokenUsage usage) {
+        ContentEncoding encoding = outcome.getContentEncoding();
+        if (encoding != null && compiledResponse.size(usage) < configuration.getCompression().getMinBodySize()) {
+            encoding = null;
+        }
+        return responseBuilder.createCompiledResponse(compiledResponse, encoding, usage);
+    }
+
+    /**
+     * Returns the usage of a response with the given content and tool calls, or {@code null}
+     * if usage is not reported or a streaming request did not ask for it.
+     */
+    private TokenUsage usage(RequestContext context, String content, List<ToolCallDefinition> toolCalls) throws Exception {
+        if (!isUsageReported(context)) {
+            return null;
+        }
+        TokenCounter tokenCounter = configuration.getTokenCounter();
+        int completionTokens = tokenCounter.count(content);
+        if (toolCalls != null) {
+            completionTokens += tokenCounter.countToolCalls(toolCalls, objectMapper);
+        }
+        return usage(context, completionTokens);
+    }
+
+    private TokenUsage usage(RequestContext context, int completionTokens) {
+        return isUsageReported(context) ? new TokenUsage(context.getPromptTokens(), completionTokens) : null;
+    }
+
+    private boolean isUsageReported(RequestContext context) {
+        return configuration.getTokenCounter() != null && (!context.isStream() || context.isIncludeUsage());
+    }
+
+    private MockResponse applyLatency(MockExpectation expectation, MockResponse response) {
+        return resolver.applyLatency(expectation, response);
+    }
+
+    /**
+     * Identifies the conversation from its header or else the first tool call id in the history.
+     */
+    private String resolveConversationId(RecordedRequest request, RequestContext context) {
+        String conversationId = request.getHeader(CONVERSATION_ID_HEADER);
+        if (conversationId != null) {
+            return conversationId;
+        }
+        return context.getFirstToolCallId();
     }
-}
\ No newline at end of file
+}
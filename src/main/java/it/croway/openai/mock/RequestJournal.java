@@ -0,0 +1,211 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Bounded journal of the requests served by a mock.
+ */
+public class RequestJournal {
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final int DEFAULT_MAX_BODY_BYTES = 256;
+
+    private final int capacity;
+    private final int maxBodyBytes;
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong sequence;
+
+    /**
+     * @param capacity     number of most recent requests to keep
+     * @param maxBodyBytes request body bytes kept per entry, or 0 to drop bodies entirely
+     */
+    public RequestJournal(int capacity, int maxBodyBytes) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Journal capacity must be positive");
+        }
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("Journal body size cannot be negative");
+        }
+        this.capacity = capacity;
+        this.maxBodyBytes = maxBodyBytes;
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.sequence = new AtomicLong();
+    }
+
+    void record(RecordedRequest request, String input, boolean matched, MockResponseType responseType,
+                int statusCode, long durationNanos) {
+        long entrySequence = sequence.getAndIncrement();
+        Entry entry = new Entry(entrySequence, System.currentTimeMillis(), request.getMethod(), request.getPath(),
+                input, matched, responseType, statusCode, durationNanos, request.getBodySize(),
+                truncatedBody(request.getBody()));
+        entries.set((int) (entrySequence % capacity), entry);
+    }
+
+    /**
+     * Keeps at most {@code maxBodyBytes} of the body, cut before any UTF-8 sequence that
+     * would not fit whole.
+     */
+    private String truncatedBody(Buffer body) {
+        if (maxBodyBytes == 0 || body == null) {
+            return null;
+        }
+        long length = Math.min(maxBodyBytes, body.size());
+        // Continuation bytes look like 10xxxxxx; never start the cut-off part with one
+        while (length > 0 && length < body.size() && (body.getByte(length) & 0xC0) == 0x80) {
+            length--;
+        }
+        return body.snapshot((int) length).utf8();
+    }
+
+    /**
+     * Returns the retained entries, oldest first.
+     */
+    public List<Entry> getEntries() {
+        long end = sequence.get();
+        long start = Math.max(0, end - capacity);
+        List<Entry> snapshot = new ArrayList<>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            Entry entry = entries.get((int) (i % capacity));
+            // Skip slots not written yet or already overwritten by a newer request
+            if (entry != null && entry.getSequence() == i) {
+                snapshot.add(entry);
+            }
+        }
+        return Collections.unmodifiableList(snapshot);
+    }
+
+    public List<Entry> find(Predicate<Entry> predicate) {
+        List<Entry> found = new ArrayList<>();
+        for (Entry entry : getEntries()) {
+            if (predicate.test(entry)) {
+                found.add(entry);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns how many retained entries have the given user input.
+     */
+    public int count(String input) {
+        return find(entry -> input.equals(entry.getInput())).size();
+    }
+
+    public List<Entry> getUnmatched() {
+        return find(entry -> !entry.isMatched());
+    }
+
+    /**
+     * Returns the number of requests recorded since creation or the last {@link #clear()},
+     * including evicted ones.
+     */
+    public long getTotalRecorded() {
+        return sequence.get();
+    }
+
+    /**
+     * Forgets every entry recorded so far and numbers the next one 0 again.
+     */
+    public void clear() {
+        for (int i = 0; i < capacity; i++) {
+            entries.set(i, null);
+        }
+        sequence.set(0);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Summary of a single request.
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final long timestampMillis;
+        private final String method;
+        private final String path;
+        private final String input;
+        private final boolean matched;
+        private final MockResponseType responseType;
+        private final int statusCode;
+        private final long durationNanos;
+        private final long bodySize;
+        private final String bodyPreview;
+
+        Entry(long sequence, long timestampMillis, String method, String path, String input, boolean matched,
+              MockResponseType responseType, int statusCode, long durationNanos, long bodySize, String bodyPreview) {
+            this.sequence = sequence;
+            this.timestampMillis = timestampMillis;
+            this.method = method;
+            this.path = path;
+            this.input = input;
+            this.matched = matched;
+            this.responseType = responseType;
+            this.statusCode = statusCode;
+            this.durationNanos = durationNanos;
+            this.bodySize = bodySize;
+            this.bodyPreview = bodyPreview;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the user input the request was matched on, or {@code null} if none was found.
+         */
+        public String getInput() {
+            return input;
+        }
+
+        public boolean isMatched() {
+            return matched;
+        }
+
+        /**
+         * Returns the type of response served, or {@code null} for unmatched or failed requests.
+         */
+        public MockResponseType getResponseType() {
+            return responseType;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public long getBodySize() {
+            return bodySize;
+        }
+
+        /**
+         * Returns the beginning of the request body, or {@code null} if bodies are not kept.
+         */
+        public String getBodyPreview() {
+            return bodyPreview;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package it.croway.openai.mock;
+
+import java.util.function.IntConsumer;
+
+/**
+ * What a request was matched to, filled in by an {@link EndpointHandler} while it is handled,
+ * together with the content encoding negotiated for its response.
+ */
+public class RequestOutcome {
+    private String input;
+    private MockExpectation expectation;
+    private MockResponseType responseType;
+    private ContentEncoding contentEncoding;
+    private StreamingBody streamingBody;
+    private Fault fault;
+    private boolean faultSampled;
+    private IntConsumer promptTokenCharge;
+
+    public String getInput() {
+        return input;
+    }
+
+    public void setInput(String input) {
+        this.input = input;
+    }
+
+    /**
+     * Returns the matched expectation, or {@code null} if the request matched none.
+     */
+    public MockExpectation getExpectation() {
+        return expectation;
+    }
+
+    public void setExpectation(MockExpectation expectation) {
+        this.expectation = expectation;
+    }
+
+    /**
+     * Returns the type of response served, or {@code null} if no response was produced for a match.
+     */
+    public MockResponseType getResponseType() {
+        return responseType;
+    }
+
+    public void setResponseType(MockResponseType responseType) {
+        this.responseType = responseType;
+    }
+
+    /**
+     * Returns the encoding the client accepts for the response, or {@code null} for identity.
+     * Handlers may encode bodies themselves; any other body is encoded after the handler.
+     */
+    public ContentEncoding getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public void setContentEncoding(ContentEncoding contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Returns the body to write after the response headers, or {@code null} if the response
+     * carries its own body.
+     */
+    public StreamingBody getStreamingBody() {
+        return streamingBody;
+    }
+
+    public void setStreamingBody(StreamingBody streamingBody) {
+        this.streamingBody = streamingBody;
+    }
+
+    /**
+     * Returns the fault to inject into the response, or {@code null} for a healthy one.
+     */
+    public Fault getFault() {
+        return fault;
+    }
+
+    /**
+     * Returns whether the fault policy was already sampled for this request.
+     */
+    public boolean isFaultSampled() {
+        return faultSampled;
+    }
+
+    public void setFault(Fault fault) {
+        this.fault = fault;
+        this.faultSampled = true;
+    }
+
+    /**
+     * Charges the prompt tokens reported in the response's {@code usage} to the rate limiter.
+     * @throws RateLimitExceededException if the request is over the limits
+     */
+    public void chargePromptTokens(int promptTokens) {
+        IntConsumer charge = promptTokenCharge;
+        if (charge != null) {
+            promptTokenCharge = null;
+            charge.accept(promptTokens);
+        }
+    }
+
+    void setPromptTokenCharge(IntConsumer promptTokenCharge) {
+        this.promptTokenCharge = promptTokenCharge;
+    }
+}
@@ -0,0 +1,317 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Extracts the fields needed to dispatch a chat completion request in a single pass over its body.
+ */
+public class RequestReader {
+    private final ObjectMapper objectMapper;
+
+    public RequestReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public RequestContext read(Buffer body) throws IOException {
+        return read(body, null);
+    }
+
+    /**
+     * @param tokenCounter counts the prompt tokens of the messages, or {@code null} to skip counting
+     */
+    public RequestContext read(Buffer body, TokenCounter tokenCounter) throws IOException {
+        MessagesSummary messages = new MessagesSummary();
+        boolean stream = false;
+        boolean includeUsage = false;
+        String model = null;
+        Double temperature = null;
+        List<String> toolNames = Collections.emptyList();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(body.peek().inputStream())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Request body must be a JSON object");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+
+                switch (fieldName) {
+                    case "messages":
+                        if (valueToken == JsonToken.START_ARRAY) {
+                            readMessages(parser, messages, tokenCounter);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case "stream":
+                        stream = valueToken == JsonToken.VALUE_TRUE;
+                        break;
+                    case "stream_options":
+                        includeUsage = valueToken == JsonToken.START_OBJECT && readIncludeUsage(parser);
+                        break;
+                    case "model":
+                        model = valueToken == JsonToken.VALUE_STRING ? parser.getText() : null;
+                        parser.skipChildren();
+                        break;
+                    case "temperature":
+                        temperature = valueToken.isNumeric() ? parser.getDoubleValue() : null;
+                        parser.skipChildren();
+                        break;
+                    case "tools":
+                        if (valueToken == JsonToken.START_ARRAY) {
+                            toolNames = readToolNames(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+
+        int promptTokens = tokenCounter != null && messages.count > 0
+                ? messages.promptTokens + TokenCounter.REPLY_PRIMING_TOKENS
+                : messages.promptTokens;
+        return new RequestContext(messages.firstUserMessage, messages.toolRounds > 0, messages.toolRounds,
+                messages.firstToolCallId, messages.lastToolCallId, messages.systemPrompt, stream, model, temperature,
+                toolNames, promptTokens, includeUsage, body, objectMapper);
+    }
+
+    private void readMessages(JsonParser parser, MessagesSummary summary, TokenCounter tokenCounter) throws IOException {
+        boolean previousWasTool = false;
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                previousWasTool = false;
+                continue;
+            }
+
+            Message message = readMessage(parser, summary.firstUserMessage == null, summary.systemPrompt == null, tokenCounter);
+            boolean isTool = "tool".equals(message.role);
+            summary.count++;
+            if (tokenCounter != null) {
+                summary.promptTokens += tokenCounter.countMessage(message.role, message.name, message.tokens);
+            }
+
+            if (isTool && !previousWasTool) {
+                summary.toolRounds++;
+            }
+            if (isTool && message.toolCallId != null) {
+                summary.lastToolCallId = message.toolCallId;
+            }
+            previousWasTool = isTool;
+
+            if (summary.firstUserMessage == null && "user".equals(message.role)) {
+                summary.firstUserMessage = message.content != null ? message.content : "";
+            }
+            if (summary.systemPrompt == null && isSystemRole(message.role)) {
+                summary.systemPrompt = message.content != null ? message.content : "";
+            }
+            if (summary.firstToolCallId == null) {
+                if (isTool) {
+                    summary.firstToolCallId = message.toolCallId;
+                } else if ("assistant".equals(message.role)) {
+                    summary.firstToolCallId = message.firstToolCallsId;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one message object, materializing the content only when it is needed.
+     */
+    private Message readMessage(JsonParser parser, boolean needsUserContent, boolean needsSystemContent,
+                                TokenCounter tokenCounter) throws IOException {
+        Message message = new Message();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+
+            switch (fieldName) {
+                case "role":
+                    message.role = valueToken.isScalarValue() ? parser.getText() : null;
+                    parser.skipChildren();
+                    break;
+                case "content":
+                    boolean needed = needsUserContent && (message.role == null || "user".equals(message.role))
+                            || needsSystemContent && (message.role == null || isSystemRole(message.role));
+                    if (needed && valueToken.isScalarValue()) {
+                        message.content = parser.getText();
+                        message.tokens += tokenCounter != null ? tokenCounter.count(message.content) : 0;
+                    } else if (tokenCounter != null) {
+                        message.content = needed ? "" : null;
+                        message.tokens += countContent(parser, valueToken, tokenCounter);
+                    } else {
+                        message.content = needed ? "" : null;
+                        parser.skipChildren();
+                    }
+                    break;
+                case "name":
+                    message.name = tokenCounter != null && valueToken == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    parser.skipChildren();
+                    break;
+                case "tool_call_id":
+                    message.toolCallId = valueToken == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    parser.skipChildren();
+                    break;
+                case "tool_calls":
+                    if (valueToken == JsonToken.START_ARRAY) {
+                        message.firstToolCallsId = readToolCalls(parser, message, tokenCounter);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Reads the function names declared in the {@code tools} array.
+     */
+    private List<String> readToolNames(JsonParser parser) throws IOException {
+        List<String> names = new ArrayList<>();
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                if ("function".equals(fieldName) && valueToken == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String functionField = parser.getCurrentName();
+                        JsonToken functionValue = parser.nextToken();
+                        if ("name".equals(functionField) && functionValue == JsonToken.VALUE_STRING) {
+                            names.add(parser.getText());
+                        }
+                        parser.skipChildren();
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return names;
+    }
+
+    static boolean isSystemRole(String role) {
+        return "system".equals(role) || "developer".equals(role);
+    }
+
+    /**
+     * Reads the id of the first tool call, counting the names and arguments of all of them
+     * when a token counter is given.
+     */
+    private String readToolCalls(JsonParser parser, Message message, TokenCounter tokenCounter) throws IOException {
+        String id = null;
+        boolean first = true;
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if ((first || tokenCounter != null) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String fieldName = parser.getCurrentName();
+                    JsonToken valueToken = parser.nextToken();
+                    if (first && "id".equals(fieldName) && valueToken == JsonToken.VALUE_STRING) {
+                        id = parser.getText();
+                    } else if (tokenCounter != null && "function".equals(fieldName) && valueToken == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            JsonToken functionValue = parser.nextToken();
+                            if (functionValue == JsonToken.VALUE_STRING) {
+                                message.tokens += tokenCounter.count(parser.getText());
+                            }
+                            parser.skipChildren();
+                        }
+                    }
+                    parser.skipChildren();
+                }
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return id;
+    }
+
+    /**
+     * Counts the tokens of a content value: a string or an array of parts with a {@code text}.
+     */
+    private int countContent(JsonParser parser, JsonToken valueToken, TokenCounter tokenCounter) throws IOException {
+        if (valueToken == JsonToken.VALUE_STRING) {
+            return tokenCounter.count(parser.getText());
+        }
+        if (valueToken != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return 0;
+        }
+        int tokens = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.VALUE_STRING && "text".equals(fieldName)) {
+                    tokens += tokenCounter.count(parser.getText());
+                }
+                parser.skipChildren();
+            }
+        }
+        return tokens;
+    }
+
+    private boolean readIncludeUsage(JsonParser parser) throws IOException {
+        boolean includeUsage = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            if ("include_usage".equals(fieldName)) {
+                includeUsage = valueToken == JsonToken.VALUE_TRUE;
+            }
+            parser.skipChildren();
+        }
+        return includeUsage;
+    }
+
+    private static class MessagesSummary {
+        private String firstUserMessage;
+        private int toolRounds;
+        private String firstToolCallId;
+        private String lastToolCallId;
+        private String systemPrompt;
+        private int count;
+        private int promptTokens;
+    }
+
+    private static class Message {
+        private String role;
+        private String name;
+        private String content;
+        private int tokens;
+        private String toolCallId;
+        private String firstToolCallsId;
+    }
+}
@@ -1,12 +1,16 @@
 package it.croway.openai.mock;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -17,6 +21,9 @@ import java.util.stream.StreamSupport;
  * Builder class for creating different types of OpenAI API mock responses.
  */
 public class ResponseBuilder {
+    static final String MODEL = "gpt-3.5-turbo";
+    private static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream";
+
     private final ObjectMapper objectMapper;
 
     public ResponseBuilder(ObjectMapper objectMapper) {
@@ -24,81 +31,372 @@ public class ResponseBuilder {
     }
 
     public MockResponse createSimpleTextResponse(String content) throws Exception {
+        return createSimpleTextResponse(content, null);
+    }
+
+    public MockResponse createSimpleTextResponse(String content, TokenUsage usage) throws Exception {
         Map<String, Object> responseMessage = createBaseMessage();
         responseMessage.put("content", content);
 
         Map<String, Object> choice = createBaseChoice("stop", responseMessage);
-        Map<String, Object> chatCompletion = createBaseChatCompletion(choice);
+        Map<String, Object> chatCompletion = createBaseChatCompletion(choice, usage);
 
         return new MockResponse().setBody(objectMapper.writeValueAsString(chatCompletion));
     }
 
     public MockResponse createToolCallResponse(String content, List<ToolCallDefinition> toolCalls) throws Exception {
+        return createToolCallResponse(content, toolCalls, null);
+    }
+
+    public MockResponse createToolCallResponse(String content, List<ToolCallDefinition> toolCalls, TokenUsage usage) throws Exception {
         Map<String, Object> responseMessage = createBaseMessage();
         responseMessage.put("content", content);
         responseMessage.put("tool_calls", buildToolCallsList(toolCalls));
 
         Map<String, Object> choice = createBaseChoice("tool_calls", responseMessage);
-        Map<String, Object> chatCompletion = createBaseChatCompletion(choice);
+        Map<String, Object> chatCompletion = createBaseChatCompletion(choice, usage);
 
         return new MockResponse().setBody(objectMapper.writeValueAsString(chatCompletion));
     }
 
     public MockResponse createFinalToolResponse(JsonNode messagesNode, String fallbackContent) throws Exception {
+        return createFinalToolResponse(messagesNode, fallbackContent, null);
+    }
+
+    public MockResponse createFinalToolResponse(JsonNode messagesNode, String fallbackContent, TokenUsage usage) throws Exception {
         Map<String, Object> responseMessage = createBaseMessage();
 
-        String content = extractLastToolContent(messagesNode)
-                .orElse(fallbackContent != null ? fallbackContent : "All tools processed");
-        responseMessage.put("content", content);
+        responseMessage.put("content", resolveFinalToolContent(messagesNode, fallbackContent));
 
         Map<String, Object> choice = createBaseChoice("stop", responseMessage);
-        Map<String, Object> chatCompletion = createBaseChatCompletion(choice);
+        Map<String, Object> chatCompletion = createBaseChatCompletion(choice, usage);
         chatCompletion.put("history", messagesNode);
 
         return new MockResponse().setBody(objectMapper.writeValueAsString(chatCompletion));
     }
 
+    public MockResponse createCompiledResponse(CompiledResponse compiledResponse) {
+        return new MockResponse().setBody(compiledResponse.render());
+    }
+
+    public MockResponse createCompiledResponse(CompiledResponse compiledResponse, ContentEncoding encoding) {
+        return createCompiledResponse(compiledResponse, encoding, null);
+    }
+
+    /**
+     * Renders a compiled response, straight from its precompressed segments when gzip is accepted.
+     */
+    public MockResponse createCompiledResponse(CompiledResponse compiledResponse, ContentEncoding encoding, TokenUsage usage) {
+        if (encoding instanceof GzipEncoding) {
+            return new MockResponse()
+                    .setHeader(ResponseCompression.CONTENT_ENCODING_HEADER, encoding.getName())
+                    .addHeader("Vary", "Accept-Encoding")
+                    .setBody(compiledResponse.render((GzipEncoding) encoding, usage));
+        }
+        return new MockResponse().setBody(compiledResponse.render(usage));
+    }
+
+    public MockResponse createStreamingTextResponse(String content, int chunkSize) throws Exception {
+        return createStreamingTextResponse(content, chunkSize, null);
+    }
+
+    /**
+     * @param usage the usage sent in a last chunk before {@code [DONE]}, or {@code null} if the
+     *              request did not ask for it
+     */
+    public MockResponse createStreamingTextResponse(String content, int chunkSize, TokenUsage usage) throws Exception {
+        return bufferEventStream(createStreamingTextBody(content, chunkSize, usage));
+    }
+
+    /**
+     * Creates the events of a streamed text response, for transports that write them as they are produced.
+     */
+    public EventStreamBody createStreamingTextBody(String content, int chunkSize, TokenUsage usage) {
+        return new EventStreamBody(objectMapper.getFactory(), writer -> {
+            writer.writeRoleChunk(false);
+            if (content != null) {
+                SseChunkWriter.forEachFragment(content, chunkSize, writer::writeContentChunk);
+            }
+            writer.writeFinishChunk("stop");
+            if (usage != null) {
+                writer.writeUsageChunk(usage);
+            }
+            writer.writeDone();
+        });
+    }
+
+    public MockResponse createStreamingToolCallResponse(String content, List<ToolCallDefinition> toolCalls, int chunkSize) throws Exception {
+        return createStreamingToolCallResponse(content, toolCalls, chunkSize, null);
+    }
+
+    public MockResponse createStreamingToolCallResponse(String content, List<ToolCallDefinition> toolCalls, int chunkSize,
+                                                        TokenUsage usage) throws Exception {
+        return bufferEventStream(createStreamingToolCallBody(content, toolCalls, chunkSize, usage));
+    }
+
+    /**
+     * Creates the events of a streamed tool call response. The arguments are serialized up
+     * front, so that failures surface before any event is sent.
+     */
+    public EventStreamBody createStreamingToolCallBody(String content, List<ToolCallDefinition> toolCalls, int chunkSize,
+                                                       TokenUsage usage) throws JsonProcessingException {
+        List<String> argumentsJson = new ArrayList<>(toolCalls.size());
+        for (ToolCallDefinition toolCall : toolCalls) {
+            argumentsJson.add(objectMapper.writeValueAsString(toolCall.getArguments()));
+        }
+        return new EventStreamBody(objectMapper.getFactory(), writer -> {
+            writer.writeRoleChunk(content == null);
+            if (content != null) {
+                SseChunkWriter.forEachFragment(content, chunkSize, writer::writeContentChunk);
+            }
+            for (int index = 0; index < toolCalls.size(); index++) {
+                int toolIndex = index;
+                writer.writeToolCallStartChunk(toolIndex, UUID.randomUUID().toString(), toolCalls.get(index).getName());
+                SseChunkWriter.forEachFragment(argumentsJson.get(index), chunkSize,
+                        fragment -> writer.writeToolCallArgumentsChunk(toolIndex, fragment));
+            }
+            writer.writeFinishChunk("tool_calls");
+            if (usage != null) {
+                writer.writeUsageChunk(usage);
+            }
+            writer.writeDone();
+        });
+    }
+
+    public MockResponse createStreamingFinalToolResponse(JsonNode messagesNode, String fallbackContent, int chunkSize) throws Exception {
+        return createStreamingFinalToolResponse(messagesNode, fallbackContent, chunkSize, null);
+    }
+
+    public MockResponse createStreamingFinalToolResponse(JsonNode messagesNode, String fallbackContent, int chunkSize,
+                                                         TokenUsage usage) throws Exception {
+        return createStreamingTextResponse(resolveFinalToolContent(messagesNode, fallbackContent), chunkSize, usage);
+    }
+
+    public EventStreamBody createStreamingFinalToolBody(JsonNode messagesNode, String fallbackContent, int chunkSize,
+                                                        TokenUsage usage) {
+        return createStreamingTextBody(resolveFinalToolContent(messagesNode, fallbackContent), chunkSize, usage);
+    }
+
+    public MockResponse createResponsesTextResponse(String model, String content) throws Exception {
+        return createResponsesTextResponse(model, content, null);
+    }
+
+    /**
+     * Creates a Responses API response holding a single assistant message.
+     */
+    public MockResponse createResponsesTextResponse(String model, String content, TokenUsage usage) throws Exception {
+        Map<String, Object> text = new LinkedHashMap<>();
+        text.put("type", "output_text");
+        text.put("text", content);
+        text.put("annotations", Collections.emptyList());
+
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", "message");
+        message.put("id", "msg_" + UUID.randomUUID());
+        message.put("status", "completed");
+        message.put("role", "assistant");
+        message.put("content", Collections.singletonList(text));
+
+        return createResponsesResponse(model, Collections.singletonList(message), usage);
+    }
+
+    public MockResponse createResponsesFunctionCallResponse(String model, List<ToolCallDefinition> toolCalls) throws Exception {
+        return createResponsesFunctionCallResponse(model, toolCalls, null);
+    }
+
+    /**
+     * Creates a Responses API response holding one function call item per tool call.
+     */
+    public MockResponse createResponsesFunctionCallResponse(String model, List<ToolCallDefinition> toolCalls,
+                                                            TokenUsage usage) throws Exception {
+        List<Map<String, Object>> output = new ArrayList<>(toolCalls.size());
+        for (ToolCallDefinition toolCall : toolCalls) {
+            Map<String, Object> functionCall = new LinkedHashMap<>();
+            functionCall.put("type", "function_call");
+            functionCall.put("id", "fc_" + UUID.randomUUID());
+            functionCall.put("call_id", "call_" + UUID.randomUUID());
+            functionCall.put("name", toolCall.getName());
+            functionCall.put("arguments", objectMapper.writeValueAsString(toolCall.getArguments()));
+            functionCall.put("status", "completed");
+            output.add(functionCall);
+        }
+        return createResponsesResponse(model, output, usage);
+    }
+
+    public MockResponse createTextCompletionResponse(String model, String text) throws Exception {
+        return createTextCompletionResponse(model, text, null);
+    }
+
+    /**
+     * Creates a text completion for the legacy completions endpoint.
+     */
+    public MockResponse createTextCompletionResponse(String model, String text, TokenUsage usage) throws Exception {
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("text", text);
+        choice.put("index", 0);
+        choice.put("logprobs", null);
+        choice.put("finish_reason", "stop");
+
+        Map<String, Object> completion = new LinkedHashMap<>();
+        completion.put("id", "cmpl-" + UUID.randomUUID());
+        completion.put("object", "text_completion");
+        completion.put("created", System.currentTimeMillis() / 1000L);
+        completion.put("model", model != null ? model : MODEL);
+        completion.put("choices", Collections.singletonList(choice));
+        if (usage != null) {
+            completion.put("usage", usage.toCompletionUsage());
+        }
+        return new MockResponse().setBody(objectMapper.writeValueAsString(completion));
+    }
+
+    public MockResponse createUnknownRouteResponse(String method, String path) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("message", "Unknown request URL: " + method + " " + path);
+        error.put("type", "invalid_request_error");
+        error.put("code", "unknown_url");
+        try {
+            return new MockResponse().setResponseCode(404)
+                    .setBody(objectMapper.writeValueAsString(Collections.singletonMap("error", error)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates the headers of a response whose body is streamed by a {@link GeneratedBodyWriter}.
+     */
+    public MockResponse createGeneratedResponse(boolean stream) {
+        if (stream) {
+            return createEventStreamResponse();
+        }
+        return new MockResponse().setHeader("Content-Type", "application/json");
+    }
+
+    public GeneratedBodyWriter createGeneratedBody(GeneratedContent content, boolean stream, int chunkSize) {
+        return createGeneratedBody(content, stream, chunkSize, null);
+    }
+
+    public GeneratedBodyWriter createGeneratedBody(GeneratedContent content, boolean stream, int chunkSize, TokenUsage usage) {
+        return new GeneratedBodyWriter(objectMapper.getFactory(), content, stream, chunkSize, usage);
+    }
+
+    /**
+     * Creates an error in OpenAI's shape. The message may echo request data, such as a model
+     * id or an exception message, so it is always serialized rather than formatted in.
+     */
     public MockResponse createErrorResponse(int statusCode, String errorMessage) {
-        String errorBody = String.format("{\"error\": \"%s\"}", errorMessage);
-        return new MockResponse().setResponseCode(statusCode).setBody(errorBody);
+        return createErrorResponse(statusCode, errorMessage, statusCode >= 500 ? "server_error" : "invalid_request_error", null);
+    }
+
+    public MockResponse createErrorResponse(int statusCode, String errorMessage, String type, String code) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("message", errorMessage);
+        error.put("type", type);
+        error.put("param", null);
+        error.put("code", code);
+        try {
+            return new MockResponse().setResponseCode(statusCode)
+                    .setHeader("Content-Type", "application/json")
+                    .setBody(objectMapper.writeValueAsString(Collections.singletonMap("error", error)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates the 404 returned when no expectation matches, listing the nearest candidates.
+     */
+    public MockResponse createNoMatchResponse(String input, List<FuzzyIndex.Candidate> candidates) {
+        List<Map<String, Object>> nearest = new ArrayList<>(candidates.size());
+        for (FuzzyIndex.Candidate candidate : candidates) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("input", candidate.getExpectation().getExpectedInput());
+            entry.put("score", Math.round(candidate.getScore() * 1000) / 1000.0);
+            nearest.add(entry);
+        }
+
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("message", "No matching mock expectation found for input: " + input);
+        error.put("type", "invalid_request_error");
+        error.put("code", "no_matching_expectation");
+        error.put("candidates", nearest);
+        try {
+            return new MockResponse().setResponseCode(404)
+                    .setBody(objectMapper.writeValueAsString(Collections.singletonMap("error", error)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the error OpenAI sends for a request larger than the whole tokens-per-minute limit.
+     */
+    public MockResponse createRequestTooLargeResponse(long limit, long requested) {
+        return createErrorResponse(429, String.format("Request too large for %s on tokens per min (TPM): Limit %d, "
+                + "Requested %d. The input or output tokens must be reduced in order to run successfully.", MODEL, limit, requested),
+                "tokens", "rate_limit_exceeded");
+    }
+
+    public MockResponse createRateLimitResponse(String limitType) {
+        String unit = "tokens".equals(limitType) ? "tokens per min (TPM)" : "requests per min (RPM)";
+        String errorBody = String.format("{\"error\": {\"message\": \"Rate limit reached for %s on %s\", "
+                + "\"type\": \"%s\", \"param\": null, \"code\": \"rate_limit_exceeded\"}}", MODEL, unit, limitType);
+        return new MockResponse().setResponseCode(429).setBody(errorBody);
     }
 
     private Map<String, Object> createBaseMessage() {
-        Map<String, Object> message = new HashMap<>();
+        Map<String, Object> message = new LinkedHashMap<>();
         message.put("role", "assistant");
         message.put("refusal", null);
         return message;
     }
 
     private Map<String, Object> createBaseChoice(String finishReason, Map<String, Object> message) {
-        Map<String, Object> choice = new HashMap<>();
-        choice.put("finish_reason", finishReason);
+        Map<String, Object> choice = new LinkedHashMap<>();
         choice.put("index", 0);
         choice.put("message", message);
+        choice.put("finish_reason", finishReason);
         return choice;
     }
 
-    private Map<String, Object> createBaseChatCompletion(Map<String, Object> choice) {
-        Map<String, Object> chatCompletion = new HashMap<>();
+    private Map<String, Object> createBaseChatCompletion(Map<String, Object> choice, TokenUsage usage) {
+        Map<String, Object> chatCompletion = new LinkedHashMap<>();
         chatCompletion.put("id", UUID.randomUUID().toString());
-        chatCompletion.put("choices", Collections.singletonList(choice));
-        chatCompletion.put("created", System.currentTimeMillis() / 1000L);
-        chatCompletion.put("model", "gpt-3.5-turbo");
         chatCompletion.put("object", "chat.completion");
+        chatCompletion.put("created", System.currentTimeMillis() / 1000L);
+        chatCompletion.put("model", MODEL);
+        chatCompletion.put("choices", Collections.singletonList(choice));
+        if (usage != null) {
+            chatCompletion.put("usage", usage.toCompletionUsage());
+        }
         return chatCompletion;
     }
 
+    private MockResponse createResponsesResponse(String model, List<Map<String, Object>> output, TokenUsage usage) throws Exception {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("id", "resp_" + UUID.randomUUID());
+        response.put("object", "response");
+        response.put("created_at", System.currentTimeMillis() / 1000L);
+        response.put("status", "completed");
+        response.put("model", model != null ? model : MODEL);
+        response.put("output", output);
+        if (usage != null) {
+            response.put("usage", usage.toResponsesUsage());
+        }
+        return new MockResponse().setBody(objectMapper.writeValueAsString(response));
+    }
+
     private List<Map<String, Object>> buildToolCallsList(List<ToolCallDefinition> toolCalls) throws Exception {
         List<Map<String, Object>> toolCallsList = new ArrayList<>();
 
         for (ToolCallDefinition toolCall : toolCalls) {
             String argumentsJson = objectMapper.writeValueAsString(toolCall.getArguments());
 
-            Map<String, Object> functionObject = new HashMap<>();
+            Map<String, Object> functionObject = new LinkedHashMap<>();
             functionObject.put("name", toolCall.getName());
             functionObject.put("arguments", argumentsJson);
 
-            Map<String, Object> toolCallItem = new HashMap<>();
+            Map<String, Object> toolCallItem = new LinkedHashMap<>();
             toolCallItem.put("id", UUID.randomUUID().toString());
             toolCallItem.put("type", "function");
             toolCallItem.put("function", functionObject);
@@ -109,6 +407,26 @@ public class ResponseBuilder {
         return toolCallsList;
     }
 
+    /**
+     * Creates the headers of an event stream whose body is streamed separately.
+     */
+    public MockResponse createEventStreamResponse() {
+        return new MockResponse()
+                .setHeader("Content-Type", EVENT_STREAM_CONTENT_TYPE)
+                .setHeader("Cache-Control", "no-cache");
+    }
+
+    private MockResponse bufferEventStream(EventStreamBody events) throws IOException {
+        Buffer body = new Buffer();
+        events.writeTo(body.outputStream());
+        return createEventStreamResponse().setBody(body);
+    }
+
+    String resolveFinalToolContent(JsonNode messagesNode, String fallbackContent) {
+        return extractLastToolContent(messagesNode)
+                .orElse(fallbackContent != null ? fallbackContent : "All tools processed");
+    }
+
     private Optional<String> extractLastToolContent(JsonNode messagesNode) {
         return StreamSupport.stream(messagesNode.spliterator(), false)
                 .filter(entry -> entry.has("role") && "tool".equals(entry.get("role").asText()))
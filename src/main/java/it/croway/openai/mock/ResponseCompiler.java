@@ -0,0 +1,141 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles the static responses of mock expectations into {@link CompiledResponse} templates.
+ * The rendered JSON has the same shape as the responses produced by {@link ResponseBuilder}.
+ */
+public class ResponseCompiler {
+    private final ObjectMapper objectMapper;
+
+    public ResponseCompiler(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Pre-renders the text response and every tool execution step of the expectation.
+     * Expectations answered by a custom function or generated content are left untouched.
+     */
+    public void compile(MockExpectation expectation) {
+        if (expectation.getCustomResponseFunction() != null || expectation.getGeneratedContent() != null) {
+            return;
+        }
+
+        ToolExecutionSequence toolSequence = expectation.getToolSequence();
+        for (int i = 0; i < toolSequence.getTotalSteps(); i++) {
+            ToolExecutionStep step = toolSequence.getStep(i);
+            step.setCompiledResponse(compileToolCallResponse(expectation.getExpectedResponse(), step.getToolCalls()));
+        }
+        expectation.setCompiledResponse(compileSimpleTextResponse(expectation.getExpectedResponse()));
+    }
+
+    public CompiledResponse compileSimpleTextResponse(String content) {
+        try (TemplateWriter writer = new TemplateWriter()) {
+            JsonGenerator generator = writer.startChatCompletion();
+            generator.writeStringField("content", content);
+            writer.endChatCompletion("stop");
+            return writer.toCompiledResponse();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compile text response", e);
+        }
+    }
+
+    public CompiledResponse compileToolCallResponse(String content, List<ToolCallDefinition> toolCalls) {
+        try (TemplateWriter writer = new TemplateWriter()) {
+            JsonGenerator generator = writer.startChatCompletion();
+            generator.writeStringField("content", content);
+            generator.writeArrayFieldStart("tool_calls");
+            for (ToolCallDefinition toolCall : toolCalls) {
+                generator.writeStartObject();
+                writer.writeSlotField("id", CompiledResponse.Slot.TOOL_CALL_ID);
+                generator.writeStringField("type", "function");
+                generator.writeObjectFieldStart("function");
+                generator.writeStringField("name", toolCall.getName());
+                generator.writeStringField("arguments", objectMapper.writeValueAsString(toolCall.getArguments()));
+                generator.writeEndObject();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            writer.endChatCompletion("tool_calls");
+            return writer.toCompiledResponse();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to compile tool call response", e);
+        }
+    }
+
+    /**
+     * Accumulates JSON output and cuts it into segments wherever a slot is written.
+     */
+    private class TemplateWriter implements AutoCloseable {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final List<byte[]> segments = new ArrayList<>();
+        private final List<CompiledResponse.Slot> slots = new ArrayList<>();
+        private final JsonGenerator generator;
+
+        TemplateWriter() throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        }
+
+        JsonGenerator startChatCompletion() throws IOException {
+            generator.writeStartObject();
+            writeSlotField("id", CompiledResponse.Slot.COMPLETION_ID);
+            generator.writeStringField("object", "chat.completion");
+            writeSlotField("created", CompiledResponse.Slot.CREATED);
+            generator.writeStringField("model", ResponseBuilder.MODEL);
+            generator.writeArrayFieldStart("choices");
+            generator.writeStartObject();
+            generator.writeNumberField("index", 0);
+            generator.writeObjectFieldStart("message");
+            generator.writeStringField("role", "assistant");
+            generator.writeNullField("refusal");
+            return generator;
+        }
+
+        void endChatCompletion(String finishReason) throws IOException {
+            generator.writeEndObject(); // message
+            generator.writeStringField("finish_reason", finishReason);
+            generator.writeEndObject(); // choice
+            generator.writeEndArray();
+            markSlot(CompiledResponse.Slot.USAGE);
+            generator.writeEndObject();
+        }
+
+        void writeSlotField(String fieldName, CompiledResponse.Slot slot) throws IOException {
+            generator.writeFieldName(fieldName);
+            // An empty raw value emits the separator and marks the value as written
+            generator.writeRawValue("");
+            markSlot(slot);
+        }
+
+        /**
+         * Cuts the output at the current position for a slot that writes its own separator.
+         */
+        void markSlot(CompiledResponse.Slot slot) throws IOException {
+            generator.flush();
+            segments.add(out.toByteArray());
+            out.reset();
+            slots.add(slot);
+        }
+
+        CompiledResponse toCompiledResponse() throws IOException {
+            generator.flush();
+            segments.add(out.toByteArray());
+            return new CompiledResponse(segments, slots);
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Negotiates a content encoding from {@code Accept-Encoding} and compresses response bodies.
+ */
+public class ResponseCompression {
+    public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+
+    private final List<ContentEncoding> encodings;
+    private final int minBodySize;
+
+    public ResponseCompression(int minBodySize, List<ContentEncoding> encodings) {
+        if (minBodySize < 0) {
+            throw new IllegalArgumentException("Minimum compressed body size must not be negative");
+        }
+        if (encodings.isEmpty()) {
+            throw new IllegalArgumentException("At least one content encoding is required");
+        }
+        this.minBodySize = minBodySize;
+        this.encodings = Collections.unmodifiableList(new ArrayList<>(encodings));
+    }
+
+    public List<ContentEncoding> getEncodings() {
+        return encodings;
+    }
+
+    public int getMinBodySize() {
+        return minBodySize;
+    }
+
+    /**
+     * Returns the preferred encoding accepted by the client, or {@code null} for identity.
+     */
+    public ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        ContentEncoding best = null;
+        double bestQuality = 0;
+        for (ContentEncoding encoding : encodings) {
+            double quality = quality(acceptEncoding, encoding.getName());
+            if (quality > bestQuality) {
+                best = encoding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Encodes the body of the response unless it is already encoded, streamed or too small.
+     */
+    public MockResponse compress(MockResponse response, ContentEncoding encoding) throws IOException {
+        if (encoding == null || response.getHeaders().get(CONTENT_ENCODING_HEADER) != null) {
+            return response;
+        }
+        String contentType = response.getHeaders().get("Content-Type");
+        Buffer body = response.getBody();
+        if (body == null || body.size() < minBodySize
+                || (contentType != null && contentType.startsWith("text/event-stream"))) {
+            return response;
+        }
+        return response.setBody(encoding.encode(body))
+                .setHeader(CONTENT_ENCODING_HEADER, encoding.getName())
+                .addHeader("Vary", "Accept-Encoding");
+    }
+
+    /**
+     * Returns the quality value given to the coding, falling back to the {@code *} entry.
+     */
+    static double quality(String acceptEncoding, String coding) {
+        double wildcard = 0;
+        int start = 0;
+        while (start < acceptEncoding.length()) {
+            int end = acceptEncoding.indexOf(',', start);
+            if (end < 0) {
+                end = acceptEncoding.length();
+            }
+            String entry = acceptEncoding.substring(start, end).trim();
+            start = end + 1;
+
+            int parameters = entry.indexOf(';');
+            String name = (parameters >= 0 ? entry.substring(0, parameters) : entry).trim();
+            double quality = parameters >= 0 ? parseQuality(entry.substring(parameters + 1)) : 1;
+            if (name.equalsIgnoreCase(coding)) {
+                return quality;
+            }
+            if (name.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        return wildcard;
+    }
+
+    private static double parseQuality(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(trimmed.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
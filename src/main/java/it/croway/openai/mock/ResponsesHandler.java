@@ -0,0 +1,149 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handles Responses API requests with the same expectations as chat completions.
+ */
+public class ResponsesHandler implements EndpointHandler {
+    private final ExpectationResolver resolver;
+    private final OpenAIMockConfiguration configuration;
+    private final ResponseBuilder responseBuilder;
+    private final ObjectMapper objectMapper;
+
+    public ResponsesHandler(ExpectationResolver resolver, ObjectMapper objectMapper) {
+        this(resolver, new OpenAIMockConfiguration(), objectMapper);
+    }
+
+    public ResponsesHandler(ExpectationResolver resolver, OpenAIMockConfiguration configuration, ObjectMapper objectMapper) {
+        this.resolver = resolver;
+        this.configuration = configuration;
+        this.responseBuilder = new ResponseBuilder(objectMapper);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public MockResponse handle(RecordedRequest request, RequestOutcome outcome) throws Exception {
+        JsonNode root = objectMapper.readTree(request.getBody().peek().inputStream());
+        if (root.path("stream").asBoolean(false)) {
+            throw new IllegalArgumentException("Streaming is not supported by the Responses API mock");
+        }
+        JsonNode input = root.path("input");
+        String userInput = input.isTextual() ? input.asText() : findFirstUserMessage(input);
+        if (userInput == null) {
+            throw new IllegalArgumentException("User message content not found in request");
+        }
+        int toolRounds = countToolRounds(input);
+        String model = root.path("model").isTextual() ? root.path("model").asText() : null;
+        String instructions = root.path("instructions").isTextual() ? root.path("instructions").asText() : null;
+        Double temperature = root.path("temperature").isNumber() ? root.path("temperature").asDouble() : null;
+
+        TokenCounter tokenCounter = configuration.getTokenCounter();
+        int inputTokens = tokenCounter != null ? countInputTokens(tokenCounter, input, instructions) : 0;
+        outcome.chargePromptTokens(inputTokens);
+
+        RequestContext context = new RequestContext(userInput, toolRounds > 0, toolRounds, null, instructions, false,
+                model, temperature, findToolNames(root.path("tools")), request.getBody(), objectMapper);
+        MockExpectation expectation = resolver.resolve(context, outcome);
+        if (toolRounds == 0) {
+            resolver.assertRequest(expectation, context);
+        }
+
+        MockResponse response;
+        if (expectation.getCustomResponseFunction() != null) {
+            outcome.setResponseType(MockResponseType.CUSTOM_FUNCTION);
+            response = expectation.getCustomResponseFunction().apply(request, userInput);
+        } else if (expectation.hasToolStep(toolRounds)) {
+            outcome.setResponseType(MockResponseType.TOOL_CALLS);
+            List<ToolCallDefinition> toolCalls = expectation.getToolStep(toolRounds).getToolCalls();
+            TokenUsage usage = tokenCounter != null
+                    ? new TokenUsage(inputTokens, tokenCounter.countToolCalls(toolCalls, objectMapper))
+                    : null;
+            response = responseBuilder.createResponsesFunctionCallResponse(model, toolCalls, usage);
+        } else {
+            outcome.setResponseType(toolRounds > 0 ? MockResponseType.FINAL_TOOL_RESPONSE : MockResponseType.SIMPLE_TEXT);
+            TokenUsage usage = tokenCounter != null
+                    ? new TokenUsage(inputTokens, tokenCounter.count(expectation.getExpectedResponse()))
+                    : null;
+            response = responseBuilder.createResponsesTextResponse(model, expectation.getExpectedResponse(), usage);
+        }
+        return resolver.applyLatency(expectation, response);
+    }
+
+    private static String findFirstUserMessage(JsonNode items) {
+        for (JsonNode item : items) {
+            if (!"user".equals(item.path("role").asText())) {
+                continue;
+            }
+            JsonNode content = item.path("content");
+            if (content.isTextual()) {
+                return content.asText();
+            }
+            for (JsonNode part : content) {
+                if (part.path("text").isTextual()) {
+                    return part.path("text").asText();
+                }
+            }
+            return "";
+        }
+        return null;
+    }
+
+    /**
+     * Counts the input tokens like chat messages, with the instructions as a system message.
+     */
+    private static int countInputTokens(TokenCounter tokenCounter, JsonNode input, String instructions) {
+        int tokens = TokenCounter.REPLY_PRIMING_TOKENS;
+        if (instructions != null) {
+            tokens += tokenCounter.countMessage("system", null, tokenCounter.count(instructions));
+        }
+        if (input.isTextual()) {
+            return tokens + tokenCounter.countMessage("user", null, tokenCounter.count(input.asText()));
+        }
+        for (JsonNode item : input) {
+            int contentTokens = 0;
+            JsonNode content = item.path("content");
+            if (content.isTextual()) {
+                contentTokens += tokenCounter.count(content.asText());
+            }
+            for (JsonNode part : content) {
+                contentTokens += tokenCounter.count(part.path("text").textValue());
+            }
+            contentTokens += tokenCounter.count(item.path("name").textValue())
+                    + tokenCounter.count(item.path("arguments").textValue())
+                    + tokenCounter.count(item.path("output").textValue());
+            tokens += tokenCounter.countMessage(item.path("role").asText(item.path("type").asText()), null, contentTokens);
+        }
+        return tokens;
+    }
+
+    private static int countToolRounds(JsonNode items) {
+        int rounds = 0;
+        boolean inRound = false;
+        for (JsonNode item : items) {
+            boolean output = "function_call_output".equals(item.path("type").asText());
+            if (output && !inRound) {
+                rounds++;
+            }
+            inRound = output;
+        }
+        return rounds;
+    }
+
+    private static List<String> findToolNames(JsonNode tools) {
+        List<String> names = new ArrayList<>();
+        for (JsonNode tool : tools) {
+            JsonNode name = tool.has("name") ? tool.path("name") : tool.path("function").path("name");
+            if (name.isTextual()) {
+                names.add(name.asText());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,96 @@
+package it.croway.openai.mock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps request methods and paths to endpoint handlers, compiled once per dispatcher.
+ */
+public class RouteTable {
+    private final Map<String, Route> routes;
+
+    public RouteTable() {
+        this.routes = new HashMap<>();
+    }
+
+    /**
+     * Adds an instrumented route, replacing any route with the same method and path.
+     */
+    public RouteTable register(String method, String path, EndpointHandler handler) {
+        return register(method, path, handler, true);
+    }
+
+    /**
+     * @param instrumented whether requests are rate limited, measured and journaled;
+     *                     administrative routes are not
+     */
+    public RouteTable register(String method, String path, EndpointHandler handler, boolean instrumented) {
+        routes.put(key(method, path), new Route(handler, instrumented));
+        return this;
+    }
+
+    /**
+     * Adds every route of the other table, replacing routes with the same method and path.
+     */
+    public RouteTable registerAll(RouteTable other) {
+        routes.putAll(other.routes);
+        return this;
+    }
+
+    /**
+     * Returns the route for the request, or {@code null} if none matches.
+     */
+    public Route resolve(String method, String path) {
+        if (method == null || path == null) {
+            return null;
+        }
+        int queryStart = path.indexOf('?');
+        String suffix = queryStart >= 0 ? path.substring(0, queryStart) : path;
+
+        while (!suffix.isEmpty()) {
+            Route route = routes.get(key(method, suffix));
+            if (route != null) {
+                return route;
+            }
+            int lastSlash = suffix.lastIndexOf('/');
+            if (lastSlash > 0) {
+                route = routes.get(key(method, suffix.substring(0, lastSlash) + "/*"));
+                if (route != null) {
+                    return route;
+                }
+            }
+            int nextSegment = suffix.indexOf('/', 1);
+            suffix = nextSegment > 0 ? suffix.substring(nextSegment) : "";
+        }
+        return null;
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    private static String key(String method, String path) {
+        return method + ' ' + path;
+    }
+
+    /**
+     * A registered endpoint handler.
+     */
+    public static final class Route {
+        private final EndpointHandler handler;
+        private final boolean instrumented;
+
+        Route(EndpointHandler handler, boolean instrumented) {
+            this.handler = handler;
+            this.instrumented = instrumented;
+        }
+
+        public EndpointHandler getHandler() {
+            return handler;
+        }
+
+        public boolean isInstrumented() {
+            return instrumented;
+        }
+    }
+}
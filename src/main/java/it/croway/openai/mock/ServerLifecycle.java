@@ -0,0 +1,19 @@
+package it.croway.openai.mock;
+
+/**
+ * Enum representing how long the underlying mock web server lives.
+ */
+public enum ServerLifecycle {
+    /**
+     * A new server is started before and shut down after every test.
+     */
+    PER_TEST,
+    /**
+     * One server is shared by all tests of a test class.
+     */
+    PER_CLASS,
+    /**
+     * One server is shared by all tests in the JVM.
+     */
+    PER_JVM
+}
@@ -0,0 +1,250 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.Dispatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Several transports serving the same dispatcher, each on its own port,
+ * with an optional front port relaying connections to them in turn.
+ */
+public class ServerPool implements MockServerTransport {
+    private static final Logger log = LoggerFactory.getLogger(ServerPool.class);
+
+    private final int size;
+    private final Supplier<MockServerTransport> transportFactory;
+    private final boolean frontPort;
+    private final InetAddress frontAddress;
+    private final List<MockServerTransport> transports;
+    private RoundRobinFrontend frontend;
+
+    /**
+     * @param frontPort whether to also listen on a loopback port that balances connections over the transports
+     */
+    public ServerPool(int size, Supplier<MockServerTransport> transportFactory, boolean frontPort) {
+        this(size, transportFactory, frontPort, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * @param frontAddress local address the front port listens on; the transports listen on
+     *                     the address they were created with
+     */
+    public ServerPool(int size, Supplier<MockServerTransport> transportFactory, boolean frontPort, InetAddress frontAddress) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Server pool size must be positive");
+        }
+        this.size = size;
+        this.transportFactory = transportFactory;
+        this.frontPort = frontPort;
+        this.frontAddress = frontAddress;
+        this.transports = new ArrayList<>(size);
+    }
+
+    /**
+     * Starts the front port, if enabled, on the given port and the transports on random free ports.
+     */
+    @Override
+    public void start(int port, Dispatcher dispatcher) throws IOException {
+        try {
+            for (int i = 0; i < size; i++) {
+                MockServerTransport transport = transportFactory.get();
+                transports.add(transport);
+                transport.start(frontPort || i > 0 ? 0 : port, dispatcher);
+            }
+            if (frontPort) {
+                List<InetSocketAddress> backends = new ArrayList<>(size);
+                for (MockServerTransport transport : transports) {
+                    URI uri = URI.create(transport.getBaseUrl());
+                    InetAddress host = InetAddress.getByName(uri.getHost());
+                    // Transports listening on every interface are reached through the loopback one
+                    backends.add(new InetSocketAddress(host.isAnyLocalAddress() ? InetAddress.getLoopbackAddress() : host, uri.getPort()));
+                }
+                frontend = new RoundRobinFrontend(backends);
+                frontend.start(frontAddress, port);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        log.info("Server pool of {} started on {}", size, getBaseUrls());
+    }
+
+    /**
+     * Returns the front port's URL when enabled, otherwise the URL of the first transport.
+     */
+    @Override
+    public String getBaseUrl() {
+        if (frontend != null) {
+            return frontend.getBaseUrl();
+        }
+        if (transports.isEmpty()) {
+            throw new IllegalStateException("Server pool not started");
+        }
+        return transports.get(0).getBaseUrl();
+    }
+
+    /**
+     * Returns the URLs of every transport of the pool, not including the front port.
+     */
+    public List<String> getBaseUrls() {
+        List<String> baseUrls = new ArrayList<>(transports.size());
+        for (MockServerTransport transport : transports) {
+            baseUrls.add(transport.getBaseUrl());
+        }
+        return Collections.unmodifiableList(baseUrls);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (frontend != null) {
+            frontend.close();
+            frontend = null;
+        }
+        IOException failure = null;
+        for (MockServerTransport transport : transports) {
+            try {
+                transport.close();
+            } catch (IOException e) {
+                failure = failure != null ? failure : e;
+            }
+        }
+        transports.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Accepts connections and relays each one to the next backend in turn.
+     */
+    private static class RoundRobinFrontend implements Closeable {
+        private static final int BUFFER_SIZE = 16 * 1024;
+
+        private final List<InetSocketAddress> backends;
+        private final AtomicInteger nextBackend;
+        private final Set<Socket> sockets;
+        private final ExecutorService executor;
+        private ServerSocket serverSocket;
+        private volatile boolean closed;
+
+        RoundRobinFrontend(List<InetSocketAddress> backends) {
+            this.backends = backends;
+            this.nextBackend = new AtomicInteger();
+            this.sockets = ConcurrentHashMap.newKeySet();
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "openai-mock-front-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        void start(InetAddress address, int port) throws IOException {
+            serverSocket = new ServerSocket(port, 4096, address);
+            executor.execute(this::acceptLoop);
+        }
+
+        String getBaseUrl() {
+            return HttpServerTransport.baseUrl(serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort());
+        }
+
+        private void acceptLoop() {
+            while (!closed) {
+                try {
+                    Socket client = serverSocket.accept();
+                    InetSocketAddress backend = backends.get(Math.floorMod(nextBackend.getAndIncrement(), backends.size()));
+                    executor.execute(() -> relay(client, backend));
+                } catch (IOException e) {
+                    if (!closed) {
+                        log.warn("Error accepting connection on front port", e);
+                    }
+                }
+            }
+        }
+
+        private void relay(Socket client, InetSocketAddress backend) {
+            Socket upstream = new Socket();
+            sockets.add(client);
+            sockets.add(upstream);
+            try {
+                client.setTcpNoDelay(true);
+                upstream.setTcpNoDelay(true);
+                upstream.connect(backend);
+                AtomicInteger openDirections = new AtomicInteger(2);
+                executor.execute(() -> pump(upstream, client, openDirections));
+                pump(client, upstream, openDirections);
+            } catch (IOException e) {
+                log.debug("Unable to relay connection to {}", backend, e);
+                closeQuietly(client);
+                closeQuietly(upstream);
+            }
+        }
+
+        /**
+         * Copies bytes until the source is done, then half-closes the target.
+         */
+        private void pump(Socket source, Socket target, AtomicInteger openDirections) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try {
+                InputStream in = source.getInputStream();
+                OutputStream out = target.getOutputStream();
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                }
+                target.shutdownOutput();
+                if (openDirections.decrementAndGet() > 0) {
+                    return;
+                }
+            } catch (IOException e) {
+                log.trace("Relayed connection closed", e);
+            }
+            closeQuietly(source);
+            closeQuietly(target);
+        }
+
+        private void closeQuietly(Socket socket) {
+            sockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.trace("Error closing relayed socket", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+            for (Socket socket : sockets) {
+                closeQuietly(socket);
+            }
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived mock web server shared by several tests, each under its own path namespace.
+ */
+public class SharedMockServer implements ExtensionContext.Store.CloseableResource {
+    private static final Logger log = LoggerFactory.getLogger(SharedMockServer.class);
+
+    public static final String NAMESPACE_HEADER = "X-OpenAI-Mock-Namespace";
+
+    private final MockWebServer server;
+    private final ConcurrentMap<String, Dispatcher> dispatchers;
+    private final AtomicLong namespaceSequence;
+    private final ResponseBuilder responseBuilder;
+
+    public SharedMockServer() throws IOException {
+        this.dispatchers = new ConcurrentHashMap<>();
+        this.namespaceSequence = new AtomicLong();
+        this.responseBuilder = new ResponseBuilder(new ObjectMapper());
+        this.server = new MockWebServer();
+        this.server.setDispatcher(new DrainingDispatcher(server, new NamespaceDispatcher()));
+        this.server.start();
+        log.info("Shared mock web server started on {}", server.url("/"));
+    }
+
+    public String register(Dispatcher dispatcher) {
+        String namespace = "t" + namespaceSequence.incrementAndGet();
+        dispatchers.put(namespace, dispatcher);
+        return namespace;
+    }
+
+    public void unregister(String namespace) {
+        dispatchers.remove(namespace);
+    }
+
+    public String getBaseUrl(String namespace) {
+        return server.url("/" + namespace + "/").toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+        log.info("Shared mock web server shut down");
+    }
+
+    /**
+     * Routes requests to the dispatcher registered for their namespace header or first path segment.
+     */
+    private class NamespaceDispatcher extends Dispatcher {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            String namespace = request.getHeader(NAMESPACE_HEADER);
+            if (namespace == null) {
+                namespace = firstPathSegment(request.getPath());
+            }
+
+            Dispatcher dispatcher = namespace != null ? dispatchers.get(namespace) : null;
+            if (dispatcher == null) {
+                log.warn("No mock registered for namespace: {}", namespace);
+                return responseBuilder.createErrorResponse(404, "No mock registered for namespace " + namespace);
+            }
+            return dispatcher.dispatch(request);
+        }
+
+        private String firstPathSegment(String path) {
+            if (path == null || path.length() < 2 || path.charAt(0) != '/') {
+                return null;
+            }
+            int end = path.indexOf('/', 1);
+            return end < 0 ? path.substring(1) : path.substring(1, end);
+        }
+    }
+}
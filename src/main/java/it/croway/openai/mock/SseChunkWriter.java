@@ -0,0 +1,184 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@code chat.completion.chunk} server-sent events into an okio {@link Buffer} or a stream.
+ */
+public class SseChunkWriter {
+    private static final byte[] DATA_PREFIX = "data: ".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT_SEPARATOR = "\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DONE_EVENT = "data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final JsonFactory jsonFactory;
+    private final Buffer buffer;
+    private final OutputStream out;
+    private final OutputStream sink;
+    private final String id;
+    private final long created;
+    private final String model;
+
+    public SseChunkWriter(JsonFactory jsonFactory, Buffer buffer, String id, long created, String model) {
+        this(jsonFactory, buffer, null, id, created, model);
+    }
+
+    public SseChunkWriter(JsonFactory jsonFactory, OutputStream sink, String id, long created, String model) {
+        this(jsonFactory, new Buffer(), sink, id, created, model);
+    }
+
+    private SseChunkWriter(JsonFactory jsonFactory, Buffer buffer, OutputStream sink, String id, long created, String model) {
+        this.jsonFactory = jsonFactory;
+        this.buffer = buffer;
+        this.out = buffer.outputStream();
+        this.sink = sink;
+        this.id = id;
+        this.created = created;
+        this.model = model;
+    }
+
+    public void writeRoleChunk(boolean nullContent) throws IOException {
+        JsonGenerator generator = startChunk();
+        generator.writeStringField("role", "assistant");
+        if (nullContent) {
+            generator.writeNullField("content");
+        } else {
+            generator.writeStringField("content", "");
+        }
+        endChunk(generator, null);
+    }
+
+    public void writeContentChunk(String content) throws IOException {
+        JsonGenerator generator = startChunk();
+        generator.writeStringField("content", content);
+        endChunk(generator, null);
+    }
+
+    public void writeToolCallStartChunk(int index, String toolCallId, String name) throws IOException {
+        JsonGenerator generator = startChunk();
+        generator.writeArrayFieldStart("tool_calls");
+        generator.writeStartObject();
+        generator.writeNumberField("index", index);
+        generator.writeStringField("id", toolCallId);
+        generator.writeStringField("type", "function");
+        generator.writeObjectFieldStart("function");
+        generator.writeStringField("name", name);
+        generator.writeStringField("arguments", "");
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeEndArray();
+        endChunk(generator, null);
+    }
+
+    public void writeToolCallArgumentsChunk(int index, String argumentsFragment) throws IOException {
+        JsonGenerator generator = startChunk();
+        generator.writeArrayFieldStart("tool_calls");
+        generator.writeStartObject();
+        generator.writeNumberField("index", index);
+        generator.writeObjectFieldStart("function");
+        generator.writeStringField("arguments", argumentsFragment);
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.writeEndArray();
+        endChunk(generator, null);
+    }
+
+    public void writeFinishChunk(String finishReason) throws IOException {
+        JsonGenerator generator = startChunk();
+        endChunk(generator, finishReason);
+    }
+
+    /**
+     * Writes the last chunk of a stream with {@code include_usage}: no choices, only the usage.
+     */
+    public void writeUsageChunk(TokenUsage usage) throws IOException {
+        buffer.write(DATA_PREFIX);
+        JsonGenerator generator = jsonFactory.createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        writeChunkHeader(generator);
+        generator.writeArrayFieldStart("choices");
+        generator.writeEndArray();
+        generator.writeObjectFieldStart("usage");
+        generator.writeNumberField("prompt_tokens", usage.getPromptTokens());
+        generator.writeNumberField("completion_tokens", usage.getCompletionTokens());
+        generator.writeNumberField("total_tokens", usage.getTotalTokens());
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.close();
+        endEvent(EVENT_SEPARATOR);
+    }
+
+    public void writeDone() throws IOException {
+        endEvent(DONE_EVENT);
+    }
+
+    /**
+     * Splits the text into fragments of at most {@code chunkSize} characters without
+     * separating surrogate pairs, and passes each fragment to the given writer.
+     */
+    public static void forEachFragment(String text, int chunkSize, FragmentWriter writer) throws IOException {
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(start + chunkSize, length);
+            if (end < length && Character.isHighSurrogate(text.charAt(end - 1)) && end - start > 1) {
+                end--;
+            }
+            writer.write(text.substring(start, end));
+            start = end;
+        }
+    }
+
+    private JsonGenerator startChunk() throws IOException {
+        buffer.write(DATA_PREFIX);
+        JsonGenerator generator = jsonFactory.createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartObject();
+        writeChunkHeader(generator);
+        generator.writeArrayFieldStart("choices");
+        generator.writeStartObject();
+        generator.writeNumberField("index", 0);
+        generator.writeObjectFieldStart("delta");
+        return generator;
+    }
+
+    private void writeChunkHeader(JsonGenerator generator) throws IOException {
+        generator.writeStringField("id", id);
+        generator.writeStringField("object", "chat.completion.chunk");
+        generator.writeNumberField("created", created);
+        generator.writeStringField("model", model);
+    }
+
+    private void endChunk(JsonGenerator generator, String finishReason) throws IOException {
+        generator.writeEndObject(); // delta
+        if (finishReason != null) {
+            generator.writeStringField("finish_reason", finishReason);
+        } else {
+            generator.writeNullField("finish_reason");
+        }
+        generator.writeEndObject(); // choice
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+        endEvent(EVENT_SEPARATOR);
+    }
+
+    private void endEvent(byte[] end) throws IOException {
+        buffer.write(end);
+        if (sink != null) {
+            buffer.writeTo(sink);
+            sink.flush();
+        }
+    }
+
+    @FunctionalInterface
+    public interface FragmentWriter {
+        void write(String fragment) throws IOException;
+    }
+}
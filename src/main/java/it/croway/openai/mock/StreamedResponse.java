@@ -0,0 +1,41 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.MockResponse;
+
+/**
+ * A dispatched response together with the body to stream after its headers, if any.
+ */
+public class StreamedResponse {
+    private final MockResponse response;
+    private final StreamingBody body;
+    private final LatencyDistribution interChunk;
+
+    public StreamedResponse(MockResponse response, StreamingBody body) {
+        this(response, body, null);
+    }
+
+    public StreamedResponse(MockResponse response, StreamingBody body, LatencyDistribution interChunk) {
+        this.response = response;
+        this.body = body;
+        this.interChunk = interChunk;
+    }
+
+    public MockResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * Returns the body to stream, or {@code null} if the response carries its own body.
+     */
+    public StreamingBody getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the distribution to sample the delay before each throttled chunk from, or
+     * {@code null} to use the response's fixed throttle period.
+     */
+    public LatencyDistribution getInterChunk() {
+        return interChunk;
+    }
+}
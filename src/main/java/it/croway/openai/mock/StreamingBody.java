@@ -0,0 +1,12 @@
+package it.croway.openai.mock;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A response body produced while it is written, for bodies too large to buffer.
+ */
+@FunctionalInterface
+public interface StreamingBody {
+    void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,95 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+
+/**
+ * Counts the tokens of requests and responses for their {@code usage} block.
+ */
+public class TokenCounter {
+    public static final int DEFAULT_CACHE_SIZE = 4096;
+
+    public static final int TOKENS_PER_MESSAGE = 3;
+    public static final int TOKENS_PER_NAME = 1;
+    public static final int REPLY_PRIMING_TOKENS = 3;
+
+    /**
+     * Texts shorter than this are tokenized on every use.
+     */
+    private static final int MIN_CACHED_LENGTH = 32;
+
+    private final Tokenizer tokenizer;
+    private final Entry[] cache;
+    private final int mask;
+
+    public TokenCounter(Tokenizer tokenizer, int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("Token cache size must be positive");
+        }
+        this.tokenizer = tokenizer;
+        int capacity = Integer.highestOneBit(Math.max(1, cacheSize - 1)) << 1;
+        this.cache = new Entry[cacheSize == 1 ? 1 : capacity];
+        this.mask = cache.length - 1;
+    }
+
+    public Tokenizer getTokenizer() {
+        return tokenizer;
+    }
+
+    /**
+     * Returns the number of tokens of the text, or 0 for {@code null}.
+     */
+    public int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        if (text.length() < MIN_CACHED_LENGTH) {
+            return tokenizer.count(text);
+        }
+        int hash = text.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        Entry entry = cache[slot];
+        if (entry != null && entry.hash == hash && entry.text.equals(text)) {
+            return entry.tokens;
+        }
+        int tokens = tokenizer.count(text);
+        cache[slot] = new Entry(text, hash, tokens);
+        return tokens;
+    }
+
+    /**
+     * Returns the tokens a chat message adds to the prompt, given the tokens of its content.
+     */
+    public int countMessage(String role, String name, int contentTokens) {
+        int tokens = TOKENS_PER_MESSAGE + count(role) + contentTokens;
+        if (name != null) {
+            tokens += TOKENS_PER_NAME + count(name);
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the tokens of the tool calls of an assistant message: their names and arguments.
+     */
+    public int countToolCalls(List<ToolCallDefinition> toolCalls, ObjectMapper objectMapper) throws JsonProcessingException {
+        int tokens = 0;
+        for (ToolCallDefinition toolCall : toolCalls) {
+            tokens += count(toolCall.getName()) + count(objectMapper.writeValueAsString(toolCall.getArguments()));
+        }
+        return tokens;
+    }
+
+    private static final class Entry {
+        private final String text;
+        private final int hash;
+        private final int tokens;
+
+        Entry(String text, int hash, int tokens) {
+            this.text = text;
+            this.hash = hash;
+            this.tokens = tokens;
+        }
+    }
+}
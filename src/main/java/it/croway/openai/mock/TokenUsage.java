@@ -0,0 +1,59 @@
+package it.croway.openai.mock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Token counts of one request and its response, rendered as the {@code usage} block.
+ */
+public final class TokenUsage {
+    private final int promptTokens;
+    private final int completionTokens;
+
+    public TokenUsage(int promptTokens, int completionTokens) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+    }
+
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    public int getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public int getTotalTokens() {
+        return promptTokens + completionTokens;
+    }
+
+    /**
+     * Returns the usage block of chat and text completions.
+     */
+    public Map<String, Object> toCompletionUsage() {
+        Map<String, Object> usage = new LinkedHashMap<>();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", getTotalTokens());
+        return usage;
+    }
+
+    /**
+     * Returns the usage block of the Responses API.
+     */
+    public Map<String, Object> toResponsesUsage() {
+        Map<String, Object> usage = new LinkedHashMap<>();
+        usage.put("input_tokens", promptTokens);
+        usage.put("output_tokens", completionTokens);
+        usage.put("total_tokens", getTotalTokens());
+        return usage;
+    }
+
+    /**
+     * Returns the completion usage block as JSON, for bodies written without an object mapper.
+     */
+    public String toJson() {
+        return "{\"prompt_tokens\":" + promptTokens + ",\"completion_tokens\":" + completionTokens
+                + ",\"total_tokens\":" + getTotalTokens() + "}";
+    }
+}
@@ -0,0 +1,215 @@
+package it.croway.openai.mock;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the tokens of a text the way OpenAI's byte pair encodings do, without network access.
+ */
+public class Tokenizer {
+    private static final Tokenizer APPROXIMATE = new Tokenizer(null);
+
+    /**
+     * Length units of a token in approximate mode, where non-ASCII characters cost more units.
+     */
+    private static final int UNITS_PER_TOKEN = 8;
+
+    private final Map<String, Integer> ranks;
+
+    private Tokenizer(Map<String, Integer> ranks) {
+        this.ranks = ranks;
+    }
+
+    public static Tokenizer approximate() {
+        return APPROXIMATE;
+    }
+
+    /**
+     * Loads a merge table in tiktoken format: one base64 encoded token and its rank per line.
+     */
+    public static Tokenizer fromTiktoken(Path file) throws IOException {
+        Map<String, Integer> ranks = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                if (separator <= 0) {
+                    continue;
+                }
+                byte[] token = Base64.getDecoder().decode(line.substring(0, separator));
+                ranks.put(new String(token, StandardCharsets.ISO_8859_1), Integer.parseInt(line.substring(separator + 1).trim()));
+            }
+        }
+        if (ranks.isEmpty()) {
+            throw new IllegalArgumentException("No tokens found in " + file);
+        }
+        return new Tokenizer(ranks);
+    }
+
+    public boolean isExact() {
+        return ranks != null;
+    }
+
+    public int count(String text) {
+        int tokens = 0;
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int end = nextPieceEnd(text, start);
+            tokens += ranks != null ? countMerged(text, start, end) : estimate(text, start, end);
+            start = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the end of the piece starting at {@code start}, following the alternatives of
+     * the {@code cl100k_base} pattern in order.
+     */
+    static int nextPieceEnd(String text, int start) {
+        int length = text.length();
+        int c = text.codePointAt(start);
+        int next = start + Character.charCount(c);
+
+        // '(?i:[sdmt]|ll|ve|re)
+        if (c == '\'' && next < length) {
+            char first = Character.toLowerCase(text.charAt(next));
+            char second = next + 1 < length ? Character.toLowerCase(text.charAt(next + 1)) : 0;
+            if (first == 'l' && second == 'l' || first == 'v' && second == 'e' || first == 'r' && second == 'e') {
+                return next + 2;
+            }
+            if (first == 's' || first == 'd' || first == 'm' || first == 't') {
+                return next + 1;
+            }
+        }
+
+        // [^\r\n\p{L}\p{N}]?\p{L}+
+        if (Character.isLetter(c)) {
+            return skipLetters(text, next);
+        }
+        if (c != '\r' && c != '\n' && !isNumber(c) && next < length
+                && Character.isLetter(text.codePointAt(next))) {
+            return skipLetters(text, next);
+        }
+
+        // \p{N}{1,3}
+        if (isNumber(c)) {
+            int end = next;
+            for (int digits = 1; digits < 3 && end < length && isNumber(text.codePointAt(end)); digits++) {
+                end += Character.charCount(text.codePointAt(end));
+            }
+            return end;
+        }
+
+        // ' ?[^\s\p{L}\p{N}]+[\r\n]*'
+        int symbolStart = c == ' ' && next < length && isSymbol(text.codePointAt(next)) ? next : isSymbol(c) ? start : -1;
+        if (symbolStart >= 0) {
+            int end = symbolStart;
+            while (end < length && isSymbol(text.codePointAt(end))) {
+                end += Character.charCount(text.codePointAt(end));
+            }
+            while (end < length && (text.charAt(end) == '\r' || text.charAt(end) == '\n')) {
+                end++;
+            }
+            return end;
+        }
+
+        // Whitespace: \s*[\r\n]+, then \s+(?!\S), then \s+
+        int end = start;
+        int lastNewline = -1;
+        while (end < length && Character.isWhitespace(text.charAt(end))) {
+            if (text.charAt(end) == '\r' || text.charAt(end) == '\n') {
+                lastNewline = end;
+            }
+            end++;
+        }
+        if (lastNewline >= 0) {
+            return lastNewline + 1;
+        }
+        if (end < length && end - start > 1) {
+            // Leave the last space to prefix the following word
+            return end - 1;
+        }
+        return end > start ? end : next;
+    }
+
+    private static int skipLetters(String text, int from) {
+        int end = from;
+        while (end < text.length()) {
+            int c = text.codePointAt(end);
+            if (!Character.isLetter(c)) {
+                break;
+            }
+            end += Character.charCount(c);
+        }
+        return end;
+    }
+
+    private static boolean isNumber(int c) {
+        int type = Character.getType(c);
+        return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER || type == Character.OTHER_NUMBER;
+    }
+
+    private static boolean isSymbol(int c) {
+        return !Character.isWhitespace(c) && !Character.isLetter(c) && !isNumber(c);
+    }
+
+    private static int estimate(String text, int start, int end) {
+        int c = text.codePointAt(start);
+        if (isNumber(c) || Character.isWhitespace(c) && end - start == 1) {
+            return 1;
+        }
+        int units = 0;
+        for (int i = start; i < end; ) {
+            int cp = text.codePointAt(i);
+            if (cp < 0x80) {
+                // Symbols merge less than letters
+                units += Character.isLetter(cp) || cp == ' ' ? 1 : 2;
+            } else {
+                units += cp < 0x800 ? 3 : 7;
+            }
+            i += Character.charCount(cp);
+        }
+        return Math.max(1, (units + UNITS_PER_TOKEN - 1) / UNITS_PER_TOKEN);
+    }
+
+    /**
+     * Merges the bytes of a piece by rank, lowest first, and returns the number of tokens left.
+     */
+    private int countMerged(String text, int start, int end) {
+        String piece = new String(text.substring(start, end).getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+        if (ranks.containsKey(piece)) {
+            return 1;
+        }
+
+        // Boundaries of the current parts; a merge removes the boundary between two parts
+        int[] bounds = new int[piece.length() + 1];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = i;
+        }
+        int parts = piece.length();
+        while (parts > 1) {
+            int bestRank = Integer.MAX_VALUE;
+            int bestIndex = -1;
+            for (int i = 0; i + 2 <= parts; i++) {
+                Integer rank = ranks.get(piece.substring(bounds[i], bounds[i + 2]));
+                if (rank != null && rank < bestRank) {
+                    bestRank = rank;
+                    bestIndex = i;
+                }
+            }
+            if (bestIndex < 0) {
+                break;
+            }
+            System.arraycopy(bounds, bestIndex + 2, bounds, bestIndex + 1, parts - bestIndex - 1);
+            parts--;
+        }
+        return parts;
+    }
+}
@@ -9,42 +9,31 @@ import java.util.List;
  */
 public class ToolExecutionSequence {
     private final List<ToolExecutionStep> steps;
-    private int currentStepIndex;
 
     public ToolExecutionSequence() {
         this.steps = new ArrayList<>();
-        this.currentStepIndex = 0;
     }
 
     public void addStep(ToolExecutionStep step) {
         steps.add(step);
     }
 
-    public ToolExecutionStep getCurrentStep() {
-        if (hasCurrentStep()) {
-            return steps.get(currentStepIndex);
+    public ToolExecutionStep getStep(int index) {
+        if (hasStep(index)) {
+            return steps.get(index);
         }
-        return new ToolExecutionStep(); // Return empty step if no current step
+        return new ToolExecutionStep(); // Return empty step if index is out of range
     }
 
-    public void advanceToNextStep() {
-        currentStepIndex++;
-    }
-
-    public boolean hasCurrentStep() {
-        return currentStepIndex < steps.size();
-    }
-
-    public boolean hasMoreSteps() {
-        return currentStepIndex < steps.size();
-    }
-
-    public boolean isInProgress() {
-        return currentStepIndex > 0 && currentStepIndex < steps.size();
+    public ToolExecutionStep getLastStep() {
+        if (steps.isEmpty()) {
+            return new ToolExecutionStep();
+        }
+        return steps.get(steps.size() - 1);
     }
 
-    public void reset() {
-        currentStepIndex = 0;
+    public boolean hasStep(int index) {
+        return index >= 0 && index < steps.size();
     }
 
     public boolean isEmpty() {
@@ -54,8 +43,4 @@ public class ToolExecutionSequence {
     public int getTotalSteps() {
         return steps.size();
     }
-
-    public int getCurrentStepIndex() {
-        return currentStepIndex;
-    }
-}
\ No newline at end of file
+}
@@ -10,6 +10,7 @@ import java.util.Objects;
  */
 public class ToolExecutionStep {
     private final List<ToolCallDefinition> toolCalls;
+    private CompiledResponse compiledResponse;
 
     public ToolExecutionStep() {
         this.toolCalls = new ArrayList<>();
@@ -23,6 +24,14 @@ public class ToolExecutionStep {
         return new ArrayList<>(toolCalls); // Return defensive copy
     }
 
+    public CompiledResponse getCompiledResponse() {
+        return compiledResponse;
+    }
+
+    public void setCompiledResponse(CompiledResponse compiledResponse) {
+        this.compiledResponse = compiledResponse;
+    }
+
     public boolean isEmpty() {
         return toolCalls.isEmpty();
     }
@@ -0,0 +1,48 @@
+package it.croway.openai.mock;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+
+import static it.croway.openai.mock.TestRequests.chat;
+import static it.croway.openai.mock.TestRequests.status;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockAsyncAssertionTest {
+
+    @Test
+    public void testFailuresAreRethrownAfterEachWithoutDelayingResponses() throws Exception {
+        OpenAIMock mock = new OpenAIMock();
+        mock.builder()
+                .asyncAssertions(1, 16)
+                .when("slow check")
+                    .replyWith("ok")
+                    .assertRequest(body -> {
+                        try {
+                            Thread.sleep(500);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    })
+                .end()
+                .when("failing check")
+                    .replyWith("still ok")
+                    .assertRequest(body -> assertTrue(body.contains("gpt-4o"), "model not sent"))
+                .build();
+
+        mock.beforeEach(null);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            long start = System.nanoTime();
+            assertEquals(200, status(client, chat(mock.getBaseUrl(), "slow check")));
+            assertTrue(System.nanoTime() - start < 400_000_000L, "response waited for the assertion");
+            assertEquals(200, status(client, chat(mock.getBaseUrl(), "failing check")));
+        }
+
+        AssertionError error = assertThrows(AssertionError.class, () -> mock.afterEach(null));
+        assertEquals("Request assertion failed for input: failing check", error.getMessage());
+        assertEquals("model not sent ==> expected: <true> but was: <false>", error.getCause().getMessage());
+        assertEquals(0, mock.getMetrics().getErrorCount());
+    }
+}
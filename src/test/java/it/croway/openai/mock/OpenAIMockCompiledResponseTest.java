@@ -0,0 +1,79 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OpenAIMockCompiledResponseTest {
+
+    private static final List<String> CONTENTS = Arrays.asList(
+            "plain text",
+            "",
+            "quotes \" and backslashes \\ and a slash /",
+            "line\nbreak\ttab\rreturn\u0001control\u001f",
+            "unicode é ü 日本語 and an emoji 😀",
+            "html </script> <b>&amp;</b> and a placeholder ${user}",
+            "{\"looks\": \"like json\"}");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ResponseBuilder responseBuilder = new ResponseBuilder(objectMapper);
+    private final ResponseCompiler compiler = new ResponseCompiler(objectMapper);
+
+    @Test
+    public void testCompiledTextResponsesMatchBuiltOnes() throws Exception {
+        for (String content : CONTENTS) {
+            CompiledResponse compiled = compiler.compileSimpleTextResponse(content);
+            for (TokenUsage usage : Arrays.asList(null, new TokenUsage(12, 3))) {
+                String expected = normalize(responseBuilder.createSimpleTextResponse(content, usage).getBody());
+                assertEquals(expected, normalize(compiled.render(usage)), content);
+                assertEquals(expected, normalize(gunzip(compiled.render(new GzipEncoding(), usage))), content);
+                assertEquals(compiled.render(usage).size(), compiled.size(usage), content);
+            }
+        }
+    }
+
+    @Test
+    public void testCompiledToolCallResponsesMatchBuiltOnes() throws Exception {
+        ToolCallDefinition weather = new ToolCallDefinition("get_weather");
+        weather.addArgument("city", "Rome \"Eternal\" City\n\\ é");
+        weather.addArgument("days", 3);
+        weather.addArgument("options", Map.of("units", "metric", "alerts", Collections.singletonList("<storm>")));
+        ToolCallDefinition noArguments = new ToolCallDefinition("list_\"tools\"");
+        List<ToolCallDefinition> toolCalls = Arrays.asList(weather, noArguments);
+
+        for (String content : Arrays.asList(null, CONTENTS.get(3), CONTENTS.get(4))) {
+            CompiledResponse compiled = compiler.compileToolCallResponse(content, toolCalls);
+            for (TokenUsage usage : Arrays.asList(null, new TokenUsage(40, 25))) {
+                String expected = normalize(responseBuilder.createToolCallResponse(content, toolCalls, usage).getBody());
+                assertEquals(expected, normalize(compiled.render(usage)), content);
+                assertEquals(expected, normalize(gunzip(compiled.render(new GzipEncoding(), usage))), content);
+            }
+        }
+    }
+
+    /**
+     * Replaces the values that differ on every response, the ids and the creation time.
+     */
+    private String normalize(Buffer body) {
+        return body.readUtf8()
+                .replaceAll("\"[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}\"", "\"<id>\"")
+                .replaceAll("\"created\":\\d+", "\"created\":0");
+    }
+
+    private Buffer gunzip(Buffer body) throws Exception {
+        Buffer decompressed = new Buffer();
+        try (GzipSource source = new GzipSource(body)) {
+            Okio.buffer(source).readAll(decompressed);
+        }
+        return decompressed;
+    }
+}
@@ -0,0 +1,110 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okio.Buffer;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static it.croway.openai.mock.TestRequests.chat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class OpenAIMockCompressionTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .compression(0, new GzipEncoding(), new ContentEncoding() {
+                @Override
+                public String getName() {
+                    return "reversed";
+                }
+
+                @Override
+                public Buffer encode(Buffer body) {
+                    return new Buffer().writeUtf8(new StringBuilder(body.readUtf8()).reverse().toString());
+                }
+            })
+            .when("Hello, how are you?")
+                .replyWith("I'm fine, thank you!")
+            .end()
+            .when("What's the weather?")
+                .invokeTool("getWeather")
+                    .withParam("city", "Rome")
+            .build();
+
+    @RegisterExtension
+    public OpenAIMock thresholdMock = new OpenAIMock().builder()
+            .compression(10_000, new GzipEncoding())
+            .when("Hello, how are you?")
+                .replyWith("I'm fine, thank you!")
+            .end()
+            .build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testGzipFromPrecompressedSegments() throws Exception {
+        try (CloseableHttpClient client = HttpClients.custom().disableContentCompression().build()) {
+            for (int i = 0; i < 2; i++) {
+                HttpResponse response = post(client, openAIMock, "gzip, br;q=0.5", "Hello, how are you?");
+                assertEquals("gzip", response.getFirstHeader("Content-Encoding").getValue());
+                JsonNode body = objectMapper.readTree(gunzip(EntityUtils.toByteArray(response.getEntity())));
+                assertEquals("I'm fine, thank you!", body.at("/choices/0/message/content").asText());
+            }
+
+            HttpResponse toolCall = post(client, openAIMock, "gzip", "What's the weather?");
+            JsonNode body = objectMapper.readTree(gunzip(EntityUtils.toByteArray(toolCall.getEntity())));
+            assertEquals("getWeather", body.at("/choices/0/message/tool_calls/0/function/name").asText());
+        }
+    }
+
+    @Test
+    public void testCompiledResponsesBelowTheMinimumSizeAreNotCompressed() throws Exception {
+        try (CloseableHttpClient client = HttpClients.custom().disableContentCompression().build()) {
+            HttpResponse response = post(client, thresholdMock, "gzip", "Hello, how are you?");
+            assertNull(response.getFirstHeader("Content-Encoding"));
+            JsonNode body = objectMapper.readTree(EntityUtils.toString(response.getEntity()));
+            assertEquals("I'm fine, thank you!", body.at("/choices/0/message/content").asText());
+        }
+    }
+
+    @Test
+    public void testNegotiatesPluggableAndIdentityEncodings() throws Exception {
+        try (CloseableHttpClient client = HttpClients.custom().disableContentCompression().build()) {
+            HttpResponse custom = post(client, openAIMock, "gzip;q=0.2, reversed", "Hello, how are you?");
+            assertEquals("reversed", custom.getFirstHeader("Content-Encoding").getValue());
+            String reversed = new StringBuilder(EntityUtils.toString(custom.getEntity())).reverse().toString();
+            assertEquals("I'm fine, thank you!", objectMapper.readTree(reversed).at("/choices/0/message/content").asText());
+
+            HttpResponse identity = post(client, openAIMock, "br, gzip;q=0", "Hello, how are you?");
+            assertNull(identity.getFirstHeader("Content-Encoding"));
+            EntityUtils.consume(identity.getEntity());
+        }
+        assertEquals(0.0, ResponseCompression.quality("*;q=0, identity", "gzip"));
+        assertEquals(0.3, ResponseCompression.quality("br, *;q=0.3", "gzip"));
+    }
+
+    private HttpResponse post(CloseableHttpClient client, OpenAIMock mock, String acceptEncoding, String content) throws Exception {
+        HttpPost request = chat(mock.getBaseUrl(), content);
+        request.setHeader("Accept-Encoding", acceptEncoding);
+        HttpResponse response = client.execute(request);
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        return response;
+    }
+
+    private String gunzip(byte[] compressed) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package it.croway.openai.mock;
+
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.concurrent.TimeUnit;
+
+import static it.croway.openai.mock.TestRequests.CHAT_COMPLETIONS;
+import static it.croway.openai.mock.TestRequests.execute;
+import static it.croway.openai.mock.TestRequests.post;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockConversationLimitsTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .conversationLimits(8, 0, TimeUnit.SECONDS)
+            .when("three step task")
+                .replyWith("done")
+                .invokeTool("first")
+                .andThenInvokeTool("second")
+                .andThenInvokeTool("third")
+            .build();
+
+    @Test
+    public void testStoreStaysBoundedInSizeAndIdleTime() {
+        MockMetrics metrics = new MockMetrics();
+        ConversationStateStore store = new ConversationStateStore(100, 10, TimeUnit.SECONDS, metrics);
+        long start = System.nanoTime();
+
+        for (int i = 0; i < 1000; i++) {
+            store.step("conversation-" + i, 1, "call_1", start + i);
+        }
+        assertTrue(store.size() <= 100, "size " + store.size());
+        assertEquals(1000 - store.size(), metrics.getConversationEvictions(ConversationStateStore.EvictionReason.CAPACITY));
+        // The most recent conversations survive and advance past the rounds in their history
+        assertEquals(2, store.step("conversation-999", 1, "call_2", start + 1000));
+
+        int retained = store.size();
+        long later = start + TimeUnit.SECONDS.toNanos(11);
+        assertEquals(1, store.step("conversation-999", 1, "call_3", later));
+        store.step("fresh", 1, "call_1", later + TimeUnit.SECONDS.toNanos(3));
+        assertEquals(2, store.size());
+        assertEquals(retained, metrics.getConversationEvictions(ConversationStateStore.EvictionReason.EXPIRED));
+    }
+
+    @Test
+    public void testTrimmedHistoriesAdvanceUntilTheConversationIsEvicted() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            // Every request only carries the latest tool result, as a client trimming its context would send
+            assertEquals("second", toolResult(client, "kept", "call_a"));
+            assertEquals("third", toolResult(client, "kept", "call_b"));
+            // A retry of the same tool result gets the same step
+            assertEquals("third", toolResult(client, "kept", "call_b"));
+
+            for (int i = 0; i < 20; i++) {
+                assertEquals("second", toolResult(client, "abandoned-" + i, "call_a"));
+            }
+            // Evicted, the conversation starts again from the single round in its history
+            assertEquals("second", toolResult(client, "kept", "call_c"));
+        }
+        assertTrue(openAIMock.getMetrics().getConversationEvictions(ConversationStateStore.EvictionReason.CAPACITY) >= 13);
+        assertTrue(openAIMock.getMetrics().toPrometheusText()
+                .contains("openai_mock_conversation_evictions_total{reason=\"CAPACITY\"}"));
+    }
+
+    private String toolResult(CloseableHttpClient client, String conversationId, String toolCallId) throws Exception {
+        HttpPost request = post(openAIMock.getBaseUrl(), CHAT_COMPLETIONS, "{\"messages\": [{\"role\": \"user\", \"content\": \"three step task\"}, "
+                + "{\"role\": \"assistant\", \"tool_calls\": [{\"id\": \"call_1\", \"type\": \"function\", "
+                + "\"function\": {\"name\": \"first\", \"arguments\": \"{}\"}}]}, "
+                + "{\"role\": \"tool\", \"tool_call_id\": \"" + toolCallId + "\", \"content\": \"ok\"}]}");
+        request.setHeader(RequestHandler.CONVERSATION_ID_HEADER, conversationId);
+        return execute(client, request, 200).at("/choices/0/message/tool_calls/0/function/name").asText();
+    }
+}
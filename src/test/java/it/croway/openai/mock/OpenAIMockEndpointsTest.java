@@ -0,0 +1,132 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.MockResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+
+import static it.croway.openai.mock.TestRequests.CHAT_COMPLETIONS;
+import static it.croway.openai.mock.TestRequests.execute;
+import static it.croway.openai.mock.TestRequests.post;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class OpenAIMockEndpointsTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .deterministicEmbeddings(16)
+            .route("POST", "/moderations", (request, outcome) -> new MockResponse().setBody("{\"flagged\": false}"))
+            .when("first document")
+                .replyWithEmbedding(0.25f, -0.5f, 1f)
+            .end()
+            .when("second document")
+                .withModel("text-embedding-3-small")
+                .replyWithEmbedding(1f, 0f)
+            .end()
+            .when("default model document")
+                .withModel(ResponseBuilder.MODEL)
+                .replyWithEmbedding(1f, 1f)
+            .end()
+            .when("What's the weather?")
+                .withModel("gpt-4o")
+                .replyWith("It is sunny")
+                .invokeTool("getWeather")
+                    .withParam("city", "Rome")
+            .end()
+            .when("Say this is a test")
+                .replyWith("This is a test")
+            .build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testEmbeddingsCompletionsAndModels() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            JsonNode embeddings = execute(client, post(openAIMock.getBaseUrl(), "v1/embeddings",
+                    "{\"model\": \"text-embedding-3-small\", \"input\": [\"first document\", \"second document\"]}"), 200);
+            assertEquals("list", embeddings.path("object").asText());
+            assertEquals(-0.5, embeddings.at("/data/0/embedding/1").asDouble());
+            assertEquals(1, embeddings.at("/data/1/index").asInt());
+            assertEquals(2, embeddings.at("/data/1/embedding").size());
+
+            JsonNode completion = execute(client, post(openAIMock.getBaseUrl(), "v1/completions", "{\"prompt\": \"Say this is a test\"}"), 200);
+            assertEquals("text_completion", completion.path("object").asText());
+            assertEquals("This is a test", completion.at("/choices/0/text").asText());
+
+            JsonNode models = execute(client, new HttpGet(openAIMock.getBaseUrl() + "v1/models"), 200);
+            assertEquals(3, models.path("data").size());
+            assertEquals("gpt-4o", execute(client, new HttpGet(openAIMock.getBaseUrl() + "v1/models/gpt-4o"), 200).path("id").asText());
+            JsonNode missingModel = execute(client, new HttpGet(openAIMock.getBaseUrl() + "v1/models/unknown"), 404);
+            assertEquals("The model 'unknown' does not exist", missingModel.at("/error/message").asText());
+            // Parser messages quote the request, and still come back as valid JSON
+            JsonNode invalid = execute(client, post(openAIMock.getBaseUrl(), CHAT_COMPLETIONS,
+                    "{\"messages\": [{\"content\": \"a \\\"quoted\\\" text"), 400);
+            assertEquals("invalid_request_error", invalid.at("/error/type").asText());
+            assertFalse(invalid.at("/error/message").asText().isEmpty());
+
+            assertEquals(false, execute(client, post(openAIMock.getBaseUrl(), "v1/moderations", "{\"input\": \"hi\"}"), 200).path("flagged").asBoolean(true));
+            JsonNode unknown = execute(client, post(openAIMock.getBaseUrl(), "v1/audio/speech", "{}"), 404);
+            assertEquals("unknown_url", unknown.at("/error/code").asText());
+        }
+    }
+
+    @Test
+    public void testDeterministicEmbeddings() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            JsonNode floats = execute(client, post(openAIMock.getBaseUrl(), "v1/embeddings",
+                    "{\"input\": [\"any text\", \"first document\", \"any text\"], \"dimensions\": 64}"), 200);
+            JsonNode generated = floats.at("/data/0/embedding");
+            assertEquals(64, generated.size());
+            assertEquals(generated, floats.at("/data/2/embedding"));
+            assertEquals(3, floats.at("/data/1/embedding").size());
+            double norm = 0;
+            for (JsonNode value : generated) {
+                norm += value.asDouble() * value.asDouble();
+            }
+            assertEquals(1.0, norm, 1e-5);
+
+            // Without a model, only expectations without one match, and the default model is reported
+            JsonNode withoutModel = execute(client, post(openAIMock.getBaseUrl(), "v1/embeddings",
+                    "{\"input\": \"default model document\", \"dimensions\": 64}"), 200);
+            assertEquals(64, withoutModel.at("/data/0/embedding").size());
+            assertEquals(ResponseBuilder.MODEL, withoutModel.path("model").asText());
+
+            JsonNode encoded = execute(client, post(openAIMock.getBaseUrl(), "v1/embeddings",
+                    "{\"input\": \"any text\", \"dimensions\": 64, \"encoding_format\": \"base64\"}"), 200);
+            ByteBuffer bytes = ByteBuffer.wrap(Base64.getDecoder().decode(encoded.at("/data/0/embedding").asText()))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(64 * 4, bytes.remaining());
+            for (JsonNode value : generated) {
+                assertEquals(value.asDouble(), bytes.getFloat(), 1e-8);
+            }
+        }
+    }
+
+    @Test
+    public void testResponsesApiToolRounds() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            JsonNode first = execute(client, post(openAIMock.getBaseUrl(), "v1/responses", "{\"model\": \"gpt-4o\", \"input\": \"What's the weather?\", "
+                    + "\"tools\": [{\"type\": \"function\", \"name\": \"getWeather\"}]}"), 200);
+            JsonNode call = first.at("/output/0");
+            assertEquals("function_call", call.path("type").asText());
+            assertEquals("getWeather", call.path("name").asText());
+            assertEquals("Rome", objectMapper.readTree(call.path("arguments").asText()).path("city").asText());
+
+            JsonNode second = execute(client, post(openAIMock.getBaseUrl(), "v1/responses", "{\"model\": \"gpt-4o\", \"input\": ["
+                    + "{\"role\": \"user\", \"content\": [{\"type\": \"input_text\", \"text\": \"What's the weather?\"}]}, "
+                    + "{\"type\": \"function_call\", \"call_id\": \"" + call.path("call_id").asText() + "\", \"name\": \"getWeather\", \"arguments\": \"{}\"}, "
+                    + "{\"type\": \"function_call_output\", \"call_id\": \"" + call.path("call_id").asText() + "\", \"output\": \"sunny\"}]}"), 200);
+            assertEquals("message", second.at("/output/0/type").asText());
+            assertEquals("It is sunny", second.at("/output/0/content/0/text").asText());
+        }
+    }
+}
@@ -24,7 +24,8 @@ public class OpenAIMockFailuresTest {
             request.setHeader("Content-type", "application/json");
 
             HttpResponse response = client.execute(request);
-            assertEquals(500, response.getStatusLine().getStatusCode());
+            // A request without a user message is invalid, so it gets a 400 rather than a 500
+            assertEquals(400, response.getStatusLine().getStatusCode());
         }
     }
 
@@ -52,4 +53,16 @@ public class OpenAIMockFailuresTest {
         builder.when("sentence");
         assertThrows(IllegalStateException.class, () -> builder.withParam("key", "value"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDuplicateExpectations() {
+        OpenAIMockBuilder builder = new OpenAIMock().builder()
+                .when("duplicate sentence")
+                    .replyWith("first")
+                .end()
+                .when("duplicate sentence")
+                    .replyWith("second")
+                .end();
+        assertThrows(IllegalStateException.class, builder::build);
+    }
+}
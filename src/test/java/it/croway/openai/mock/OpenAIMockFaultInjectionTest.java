@@ -0,0 +1,165 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.HttpResponse;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+
+import static it.croway.openai.mock.TestRequests.chat;
+import static it.croway.openai.mock.TestRequests.content;
+import static it.croway.openai.mock.TestRequests.streamingChat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockFaultInjectionTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .when("reset before headers")
+                .replyWith("never sent")
+                .withFault(Fault.resetBeforeHeaders())
+            .end()
+            .when("reset after headers")
+                .replyWith("never sent")
+                .withFault(Fault.resetAfterHeaders())
+            .end()
+            .when("truncated")
+                .replyWith("cut in the middle")
+                .withFault(Fault.truncatedBody(0.5))
+            .end()
+            .when("throttled")
+                .replyWith("a slow drip of tokens")
+                .withFault(Fault.throttledBody(2000))
+            .end()
+            .when("malformed")
+                .replyWith("some streamed content split into several chunks")
+                .withFault(Fault.malformedBody())
+            .end()
+            .when("burst")
+                .replyWith("recovered")
+                .withFaults(FaultPolicy.of(1, Fault.serverErrors(503, 3)))
+            .end()
+            .when("healthy")
+                .replyWith("fine")
+            .build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testConnectionFaults() throws Exception {
+        try (CloseableHttpClient client = HttpClients.custom().disableAutomaticRetries().build()) {
+            assertThrows(NoHttpResponseException.class, () -> client.execute(chat(openAIMock.getBaseUrl(), "reset before headers")));
+
+            HttpResponse resetAfterHeaders = client.execute(chat(openAIMock.getBaseUrl(), "reset after headers"));
+            assertEquals(200, resetAfterHeaders.getStatusLine().getStatusCode());
+            assertThrows(ConnectionClosedException.class, () -> EntityUtils.toString(resetAfterHeaders.getEntity()));
+
+            HttpResponse truncated = client.execute(chat(openAIMock.getBaseUrl(), "truncated"));
+            assertThrows(ConnectionClosedException.class, () -> EntityUtils.toString(truncated.getEntity()));
+
+            assertEquals("fine", content(client, openAIMock.getBaseUrl(), "healthy"));
+        }
+        assertEquals(1, openAIMock.getMetrics().getFaultCount(Fault.Type.RESET_BEFORE_HEADERS));
+        assertEquals(1, openAIMock.getMetrics().getFaultCount(Fault.Type.TRUNCATED_BODY));
+    }
+
+    @Test
+    public void testBodyFaultsAndServerErrorBursts() throws Exception {
+        try (CloseableHttpClient client = HttpClients.custom().disableAutomaticRetries().build()) {
+            long start = System.nanoTime();
+            assertEquals("a slow drip of tokens", content(client, openAIMock.getBaseUrl(), "throttled"));
+            assertTrue(System.nanoTime() - start >= 100_000_000L, "body was not throttled");
+
+            HttpResponse malformed = client.execute(streamingChat(openAIMock.getBaseUrl(), "malformed"));
+            String events = EntityUtils.toString(malformed.getEntity());
+            assertTrue(events.endsWith("data: [DONE]\n\n"), events);
+            int invalidEvents = 0;
+            for (String event : events.split("\n\n")) {
+                String data = event.substring("data: ".length());
+                if (!data.equals("[DONE]") && !isJson(data)) {
+                    invalidEvents++;
+                }
+            }
+            assertEquals(1, invalidEvents, events);
+
+            for (int i = 0; i < 3; i++) {
+                HttpResponse response = client.execute(chat(openAIMock.getBaseUrl(), "burst"));
+                EntityUtils.consume(response.getEntity());
+                assertEquals(503, response.getStatusLine().getStatusCode());
+            }
+        }
+        // Responses replaced by a fault are decided before the handler runs and never count as served
+        assertEquals(0, openAIMock.getMetrics().getRequestCount("burst"));
+        assertEquals(1, openAIMock.getMetrics().getRequestCount("malformed"));
+    }
+
+    @Test
+    public void testReplacedResponsesAreNotChargedToTheRateLimiter() throws Exception {
+        OpenAIMock mock = new OpenAIMock().builder()
+                .rateLimit(2, 0)
+                .when("failing sentence")
+                    .replyWith("never sent")
+                    .withFault(Fault.serverErrors(500, 1))
+                .end()
+                .when("healthy sentence")
+                    .replyWith("fine")
+                .build();
+
+        OpenAIMockServer server = new OpenAIMockServer(mock, new MockWebServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.custom().disableAutomaticRetries().build()) {
+            for (int i = 0; i < 5; i++) {
+                HttpResponse response = client.execute(chat(server.getBaseUrl(), "failing sentence"));
+                EntityUtils.consume(response.getEntity());
+                assertEquals(500, response.getStatusLine().getStatusCode());
+            }
+            assertEquals("fine", content(client, server.getBaseUrl(), "healthy sentence"));
+            assertEquals("fine", content(client, server.getBaseUrl(), "healthy sentence"));
+        } finally {
+            server.stop();
+        }
+        assertEquals(5, mock.getMetrics().getFaultCount(Fault.Type.SERVER_ERROR));
+    }
+
+    @Test
+    public void testGlobalFaultMixOnHttpServerTransport() throws Exception {
+        OpenAIMock mock = new OpenAIMock().builder()
+                .faults(FaultPolicy.of(1, Fault.truncatedBody(0.25)))
+                .when("any sentence")
+                    .replyWith("truncated by the global policy")
+                .end()
+                .when("reset sentence")
+                    .replyWith("never sent")
+                    .withFault(Fault.resetBeforeHeaders())
+                .build();
+
+        OpenAIMockServer server = new OpenAIMockServer(mock, new HttpServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.custom().disableAutomaticRetries().build()) {
+            HttpResponse truncated = client.execute(chat(server.getBaseUrl(), "any sentence"));
+            assertEquals(200, truncated.getStatusLine().getStatusCode());
+            assertThrows(ConnectionClosedException.class, () -> EntityUtils.toString(truncated.getEntity()));
+
+            assertThrows(NoHttpResponseException.class, () -> client.execute(chat(server.getBaseUrl(), "reset sentence")));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private boolean isJson(String data) {
+        try {
+            objectMapper.readTree(data);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static it.croway.openai.mock.TestRequests.chat;
+import static it.croway.openai.mock.TestRequests.readJson;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockFuzzyMatchTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .fuzzyMatching(0.6, 2)
+            .when("Summarize the sales report for 2024-01-15")
+                .replyWith("sales summary")
+            .end()
+            .when("Translate the following text to French")
+                .replyWith("translation")
+            .build();
+
+    @Test
+    public void testNearestExpectationAboveThreshold() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpResponse response = client.execute(chat(openAIMock.getBaseUrl(), "summarize the  sales report for 2024-02-03"));
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            JsonNode message = readJson(response).path("choices").get(0).path("message");
+            assertEquals("sales summary", message.path("content").asText());
+        }
+    }
+
+    @Test
+    public void testMissListsNearestCandidates() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpResponse response = client.execute(chat(openAIMock.getBaseUrl(), "Translate this to German please"));
+            assertEquals(404, response.getStatusLine().getStatusCode());
+            JsonNode error = readJson(response).path("error");
+            assertEquals("no_matching_expectation", error.path("code").asText());
+            assertEquals("Translate the following text to French", error.path("candidates").get(0).path("input").asText());
+            assertTrue(error.path("candidates").get(0).path("score").asDouble() < 0.6);
+        }
+    }
+
+    @Test
+    public void testNearestSkipsRejectedCandidatesAndKeepsOrderOnTies() throws Exception {
+        List<MockExpectation> expectations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            MockExpectation otherModel = new MockExpectation("check the weather in rome " + i);
+            otherModel.setModel("other-model");
+            expectations.add(otherModel);
+        }
+        expectations.add(new MockExpectation("check the weather in paris"));
+        expectations.add(new MockExpectation("check the weather in milan"));
+        ExpectationRegistry registry = new ExpectationRegistry(expectations, true);
+
+        RequestContext context = new RequestContext(new ObjectMapper().readTree(
+                "{\"model\": \"gpt-4\", \"messages\": [{\"role\": \"user\", \"content\": \"check the weather in rome\"}]}"));
+        // The ten closer expectations are for another model and must not crowd out the rest
+        List<FuzzyIndex.Candidate> nearest = registry.findNearest(context, 2, 0.1);
+        assertEquals(2, nearest.size());
+        assertEquals(nearest.get(0).getScore(), nearest.get(1).getScore());
+        assertEquals("check the weather in paris", nearest.get(0).getExpectation().getExpectedInput());
+        assertEquals("check the weather in milan", nearest.get(1).getExpectation().getExpectedInput());
+    }
+}
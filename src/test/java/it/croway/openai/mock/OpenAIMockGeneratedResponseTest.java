@@ -0,0 +1,74 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import static it.croway.openai.mock.TestRequests.chat;
+import static it.croway.openai.mock.TestRequests.streamingChat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockGeneratedResponseTest {
+    private static final String STORY = "Write a long story";
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .when(STORY)
+                .replyWithGenerated(100_000, 42)
+            .build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void testGeneratedContentIsDeterministicInBothForms() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            String content = objectMapper.readTree(post(client, openAIMock.getBaseUrl(), false))
+                    .at("/choices/0/message/content").asText();
+            assertEquals(100_000, content.split(" ").length);
+            assertEquals(content, objectMapper.readTree(post(client, openAIMock.getBaseUrl(), false))
+                    .at("/choices/0/message/content").asText());
+
+            StringBuilder streamed = new StringBuilder();
+            for (String line : post(client, openAIMock.getBaseUrl(), true).split("\n")) {
+                if (line.startsWith("data: {")) {
+                    JsonNode delta = objectMapper.readTree(line.substring(6)).at("/choices/0/delta/content");
+                    streamed.append(delta.isTextual() ? delta.asText() : "");
+                }
+            }
+            assertEquals(content, streamed.toString());
+        }
+    }
+
+    @Test
+    public void testHttpServerTransportStreamsGeneratedContentChunked() throws Exception {
+        OpenAIMock mock = new OpenAIMock();
+        mock.builder().when(STORY).replyWithGenerated(50_000, 7).build();
+        OpenAIMockServer server = new OpenAIMockServer(mock, new HttpServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpPost request = chat(server.getBaseUrl(), STORY);
+            HttpResponse response = client.execute(request);
+            assertNull(response.getFirstHeader("Content-Length"));
+            assertTrue(response.getEntity().isChunked());
+            String content = objectMapper.readTree(EntityUtils.toString(response.getEntity()))
+                    .at("/choices/0/message/content").asText();
+            assertEquals(50_000, content.split(" ").length);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private String post(CloseableHttpClient client, String baseUrl, boolean stream) throws Exception {
+        HttpResponse response = client.execute(stream ? streamingChat(baseUrl, STORY) : chat(baseUrl, STORY));
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        return EntityUtils.toString(response.getEntity());
+    }
+}
@@ -0,0 +1,153 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static it.croway.openai.mock.TestRequests.chat;
+import static it.croway.openai.mock.TestRequests.content;
+import static it.croway.openai.mock.TestRequests.execute;
+import static it.croway.openai.mock.TestRequests.status;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockHotSwapTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .when("hello")
+                .replyWith("Hello!")
+            .build();
+
+    @Test
+    public void testExpectationSetsChangeWhileServing() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            assertEquals(500, status(client, chat(openAIMock.getBaseUrl(), "weather")));
+
+            openAIMock.expectationSet("scenario")
+                    .when("weather")
+                        .replyWith("sunny")
+                    .build();
+            assertEquals("sunny", content(client, openAIMock.getBaseUrl(), "weather"));
+
+            openAIMock.expectationSet("scenario")
+                    .when("weather")
+                        .replyWith("rainy")
+                    .build();
+            assertEquals("rainy", content(client, openAIMock.getBaseUrl(), "weather"));
+            assertEquals("Hello!", content(client, openAIMock.getBaseUrl(), "hello"));
+
+            assertTrue(openAIMock.removeExpectationSet("scenario"));
+            assertEquals(500, status(client, chat(openAIMock.getBaseUrl(), "weather")));
+            assertEquals("Hello!", content(client, openAIMock.getBaseUrl(), "hello"));
+        }
+
+        assertThrows(IllegalStateException.class, () -> openAIMock.expectationSet("duplicate")
+                .when("hello")
+                    .replyWith("Hi!")
+                .build());
+        assertEquals(1, openAIMock.getExpectationStore().getSetSizes().size());
+    }
+
+    @Test
+    public void testAdminEndpoint() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpPut put = new HttpPut(openAIMock.getBaseUrl() + "__admin/expectations/weather");
+            put.setEntity(new StringEntity("{\"input\": \"weather\", \"response\": \"cloudy\"}\n"
+                    + "{\"input\": \"forecast\", \"model\": \"gpt-4o\", \"response\": \"snow\"}\n"));
+            JsonNode sets = execute(client, put, 200);
+            assertEquals(2, sets.at("/sets/weather").asInt());
+            assertEquals(1, sets.at("/sets/default").asInt());
+            assertEquals("cloudy", content(client, openAIMock.getBaseUrl(), "weather"));
+
+            JsonNode models = execute(client, new HttpGet(openAIMock.getBaseUrl() + "v1/models"), 200);
+            assertEquals("gpt-4o", models.at("/data/1/id").asText());
+
+            HttpPut duplicate = new HttpPut(openAIMock.getBaseUrl() + "__admin/expectations/other");
+            duplicate.setEntity(new StringEntity("[{\"input\": \"hello\", \"response\": \"Hi!\"}]"));
+            execute(client, duplicate, 409);
+            HttpPut invalid = new HttpPut(openAIMock.getBaseUrl() + "__admin/expectations/other");
+            invalid.setEntity(new StringEntity("{\"input\": "));
+            execute(client, invalid, 400);
+
+            execute(client, new HttpDelete(openAIMock.getBaseUrl() + "__admin/expectations/weather"), 200);
+            execute(client, new HttpDelete(openAIMock.getBaseUrl() + "__admin/expectations/weather"), 404);
+            sets = execute(client, new HttpGet(openAIMock.getBaseUrl() + "__admin/expectations"), 200);
+            assertEquals(1, sets.path("sets").size());
+            assertEquals(500, status(client, chat(openAIMock.getBaseUrl(), "weather")));
+        }
+    }
+
+    @Test
+    public void testAdminEndpointRejectsOtherMethods() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpPost post = new HttpPost(openAIMock.getBaseUrl() + "__admin/expectations/weather");
+            post.setEntity(new StringEntity("{\"input\": \"weather\", \"response\": \"cloudy\"}"));
+            HttpResponse response = client.execute(post);
+            EntityUtils.consume(response.getEntity());
+            assertEquals(405, response.getStatusLine().getStatusCode());
+            assertEquals("PUT, DELETE", response.getFirstHeader("Allow").getValue());
+
+            HttpPut putCollection = new HttpPut(openAIMock.getBaseUrl() + "__admin/expectations");
+            putCollection.setEntity(new StringEntity("{\"input\": \"weather\", \"response\": \"cloudy\"}"));
+            JsonNode error = execute(client, putCollection, 405);
+            assertEquals("invalid_request_error", error.at("/error/type").asText());
+
+            assertEquals(405, status(client, new HttpGet(openAIMock.getBaseUrl() + "__admin/expectations/default")));
+            assertEquals(1, openAIMock.getExpectationStore().getSetSizes().size());
+        }
+    }
+
+    @Test
+    public void testRequestsNeverSeePartialSnapshots() throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> swaps = executor.submit(() -> {
+                int count = 0;
+                while (running.get()) {
+                    String reply = count % 2 == 0 ? "first" : "second";
+                    openAIMock.expectationSet("scenario")
+                            .when("question one")
+                                .replyWith(reply)
+                            .end()
+                            .when("question two")
+                                .replyWith(reply)
+                            .build();
+                    count++;
+                }
+                return count;
+            });
+
+            try (CloseableHttpClient client = HttpClients.createDefault()) {
+                while (openAIMock.getExpectationStore().getVersion() < 2) {
+                    Thread.yield();
+                }
+                for (int i = 0; i < 100; i++) {
+                    String reply = content(client, openAIMock.getBaseUrl(), i % 2 == 0 ? "question one" : "question two");
+                    assertTrue(reply.equals("first") || reply.equals("second"), reply);
+                }
+            }
+            running.set(false);
+            assertTrue(swaps.get() > 0);
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+}
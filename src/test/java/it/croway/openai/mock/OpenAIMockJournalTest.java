@@ -0,0 +1,79 @@
+package it.croway.openai.mock;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.List;
+
+import static it.croway.openai.mock.TestRequests.CHAT_COMPLETIONS;
+import static it.croway.openai.mock.TestRequests.status;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockJournalTest {
+
+    // Shared by both tests: the journal is cleared before each of them
+    @RegisterExtension
+    public static OpenAIMock openAIMock = new OpenAIMock().builder()
+            .journal(3, 16)
+            .when("journaled sentence")
+                .replyWith("journaled")
+            .build();
+
+    @Test
+    public void testJournalKeepsMostRecentSummaries() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            for (int i = 0; i < 4; i++) {
+                assertEquals(200, post(client, "journaled sentence"));
+            }
+            assertEquals(500, post(client, "unknown sentence"));
+        }
+
+        RequestJournal journal = openAIMock.getJournal();
+        assertEquals(5, journal.getTotalRecorded());
+
+        List<RequestJournal.Entry> entries = journal.getEntries();
+        assertEquals(3, entries.size());
+        assertEquals(2, entries.get(0).getSequence());
+        assertEquals(2, journal.count("journaled sentence"));
+
+        RequestJournal.Entry matched = entries.get(0);
+        assertTrue(matched.isMatched());
+        assertEquals(MockResponseType.SIMPLE_TEXT, matched.getResponseType());
+        assertEquals("POST", matched.getMethod());
+        assertEquals("/v1/chat/completions", matched.getPath());
+        assertEquals(16, matched.getBodyPreview().length());
+        assertTrue(matched.getBodySize() > 16);
+
+        RequestJournal.Entry unmatched = journal.getUnmatched().get(0);
+        assertFalse(unmatched.isMatched());
+        assertEquals("unknown sentence", unmatched.getInput());
+        assertNull(unmatched.getResponseType());
+        assertEquals(500, unmatched.getStatusCode());
+    }
+
+    @Test
+    public void testBodyPreviewKeepsWholeCharacters() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            // "{"model": "" is 11 bytes, so the third two-byte character would straddle the 16 byte limit
+            assertEquals(200, post(client, "{\"model\": \"\u00e9\u00e9\u00e9\", ", "journaled sentence"));
+        }
+
+        RequestJournal journal = openAIMock.getJournal();
+        assertEquals(1, journal.getTotalRecorded());
+        assertEquals("{\"model\": \"\u00e9\u00e9", journal.getEntries().get(0).getBodyPreview());
+    }
+
+    private int post(CloseableHttpClient client, String input) throws Exception {
+        return post(client, "{", input);
+    }
+
+    private int post(CloseableHttpClient client, String prefix, String input) throws Exception {
+        return status(client, TestRequests.post(openAIMock.getBaseUrl(), CHAT_COMPLETIONS,
+                prefix + "\"messages\": [{\"role\": \"user\", \"content\": \"" + input + "\"}]}"));
+    }
+}
@@ -0,0 +1,129 @@
+package it.croway.openai.mock;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static it.croway.openai.mock.TestRequests.chat;
+import static it.croway.openai.mock.TestRequests.status;
+import static it.croway.openai.mock.TestRequests.streamingChat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockLatencyTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .defaultLatency(LatencyProfile.firstByte(LatencyDistribution.fixed(Duration.ofMillis(100))))
+            .when("default latency")
+                .replyWith("slow")
+            .end()
+            .when("streamed latency")
+                .replyWith("a streamed response with several chunks")
+                .withLatency(LatencyProfile.firstByte(LatencyDistribution.none())
+                        .withInterChunk(LatencyDistribution.fixed(Duration.ofMillis(20))))
+            .build();
+
+    @Test
+    public void testDefaultFirstByteLatency() throws Exception {
+        long elapsedMillis = timeRequest(chat(openAIMock.getBaseUrl(), "default latency"));
+        assertTrue(elapsedMillis >= 100, "Response should be delayed by the default latency, took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    public void testInterChunkLatency() throws Exception {
+        long elapsedMillis = timeRequest(streamingChat(openAIMock.getBaseUrl(), "streamed latency"));
+        // At least 5 events with 4 gaps of 20ms between them
+        assertTrue(elapsedMillis >= 80, "Chunks should be delayed by the inter-chunk latency, took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    public void testInterChunkLatencyIsSampledForEveryChunk() throws Exception {
+        AtomicInteger samples = new AtomicInteger();
+        OpenAIMock mock = new OpenAIMock().builder()
+                .when("streamed latency")
+                    .replyWith("a streamed response with several chunks")
+                    .withLatency(LatencyProfile.firstByte(LatencyDistribution.none())
+                            .withInterChunk(() -> {
+                                samples.incrementAndGet();
+                                return Duration.ofMillis(1).toNanos();
+                            }))
+                .build();
+        OpenAIMockServer server = new OpenAIMockServer(mock, new HttpServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpPost request = streamingChat(server.getBaseUrl(), "streamed latency");
+            String events = EntityUtils.toString(client.execute(request).getEntity());
+            // One sample when the response is built, then one before each chunk after the first
+            assertTrue(samples.get() >= events.split("\n\n").length, "sampled " + samples.get() + " times");
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testHttpServerTransportWritesEachEventAsItIsProduced() throws Exception {
+        OpenAIMock mock = new OpenAIMock().builder()
+                .streamChunkSize(5)
+                .when("streamed latency")
+                    .replyWith("a streamed response with several chunks")
+                    .withLatency(LatencyProfile.firstByte(LatencyDistribution.none())
+                            .withInterChunk(LatencyDistribution.fixed(Duration.ofMillis(50))))
+                .build();
+        OpenAIMockServer server = new OpenAIMockServer(mock, new HttpServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpPost request = streamingChat(server.getBaseUrl(), "streamed latency");
+
+            long start = System.nanoTime();
+            HttpResponse response = client.execute(request);
+            assertTrue(response.getEntity().isChunked());
+            BufferedReader reader = new BufferedReader(new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8));
+            assertTrue(reader.readLine().startsWith("data: {"));
+            long firstEventMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            int events = 1;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("data: ")) {
+                    events++;
+                }
+            }
+            long totalMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+            assertTrue(events > 5, events + " events");
+            assertTrue(totalMillis - firstEventMillis >= 50L * (events - 1),
+                    "Events should be paced, the first one after " + firstEventMillis + "ms and the last after " + totalMillis + "ms");
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testPercentileDistributionStaysWithinRecordedRange() {
+        LatencyDistribution distribution = LatencyDistribution.percentiles(Map.of(
+                0.0, Duration.ofMillis(10),
+                0.5, Duration.ofMillis(20),
+                1.0, Duration.ofMillis(50)));
+        for (int i = 0; i < 1000; i++) {
+            long sample = distribution.sampleNanos();
+            assertTrue(sample >= Duration.ofMillis(10).toNanos() && sample <= Duration.ofMillis(50).toNanos());
+        }
+    }
+
+    private long timeRequest(HttpPost request) throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            long start = System.nanoTime();
+            assertEquals(200, status(client, request));
+            return Duration.ofNanos(System.nanoTime() - start).toMillis();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package it.croway.openai.mock;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.List;
+
+import static it.croway.openai.mock.TestRequests.CHAT_COMPLETIONS;
+import static it.croway.openai.mock.TestRequests.execute;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class OpenAIMockMatcherTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .when("exact sentence")
+                .withModel("gpt-4o")
+                .replyWith("exact for gpt-4o")
+            .end()
+            .when("exact sentence")
+                .replyWith("exact for any model")
+            .end()
+            .whenMatching("order #\\d+ status")
+                .replyWith("regex")
+            .end()
+            .whenContaining("weather")
+                .withTool("getWeather")
+                .replyWith("weather with tool")
+            .end()
+            .whenContaining("weather")
+                .withSystemPrompt("You are terse.")
+                .replyWith("weather with system prompt")
+            .end()
+            .whenContaining("weather")
+                .withJsonPath("$.metadata.tenant", node -> "acme".equals(node.asText()))
+                .replyWith("weather for acme")
+            .end()
+            .whenContaining("sampled")
+                .withTemperature(0.2)
+                .replyWith("low temperature")
+            .build();
+
+    @Test
+    public void testInputMatchersAndConditions() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            assertEquals("exact for gpt-4o", post(client, "{\"model\": \"gpt-4o\", " + userMessage("exact sentence") + "}"));
+            assertEquals("exact for any model", post(client, "{\"model\": \"gpt-4o-mini\", " + userMessage("exact sentence") + "}"));
+            assertEquals("regex", post(client, "{" + userMessage("order #42 status") + "}"));
+            assertEquals("weather with tool", post(client, "{\"tools\": [{\"type\": \"function\", \"function\": {\"name\": \"getWeather\"}}], "
+                    + userMessage("what is the weather in Rome?") + "}"));
+            assertEquals("weather with system prompt", post(client, "{\"messages\": [{\"role\": \"system\", \"content\": \"You are terse.\"}, "
+                    + "{\"role\": \"user\", \"content\": \"weather today\"}]}"));
+            assertEquals("weather for acme", post(client, "{\"metadata\": {\"tenant\": \"acme\"}, " + userMessage("weather today") + "}"));
+            assertEquals("low temperature", post(client, "{\"temperature\": 0.2, " + userMessage("sampled answer") + "}"));
+        }
+    }
+
+    @Test
+    public void testLiteralAutomatonFindsOverlappingLiterals() {
+        LiteralAutomaton automaton = new LiteralAutomaton(List.of("he", "she", "hers", "his"));
+        assertEquals("{0, 1, 2}", automaton.findAll("ushers").toString());
+        assertEquals("{3}", automaton.findAll("this").toString());
+    }
+
+    private String userMessage(String content) {
+        return "\"messages\": [{\"role\": \"user\", \"content\": \"" + content + "\"}]";
+    }
+
+    private String post(CloseableHttpClient client, String body) throws Exception {
+        return execute(client, TestRequests.post(openAIMock.getBaseUrl(), CHAT_COMPLETIONS, body), 200)
+                .path("choices").get(0).path("message").path("content").asText();
+    }
+}
@@ -0,0 +1,57 @@
+package it.croway.openai.mock;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import static it.croway.openai.mock.TestRequests.chat;
+import static it.croway.openai.mock.TestRequests.status;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockMetricsTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .when("counted sentence")
+                .replyWith("counted")
+            .build();
+
+    @Test
+    public void testMetricsApiAndPrometheusEndpoint() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            assertEquals(200, status(client, chat(openAIMock.getBaseUrl(), "counted sentence")));
+            assertEquals(200, status(client, chat(openAIMock.getBaseUrl(), "counted sentence")));
+            assertEquals(500, status(client, chat(openAIMock.getBaseUrl(), "unknown sentence")));
+
+            MockMetrics metrics = openAIMock.getMetrics();
+            assertEquals(2, metrics.getRequestCount("counted sentence"));
+            assertEquals(2, metrics.getResponseCount(MockResponseType.SIMPLE_TEXT));
+            assertEquals(1, metrics.getUnmatchedCount());
+            assertEquals(1L, metrics.getUnmatchedInputs().get("unknown sentence"));
+            assertEquals(1L, metrics.getErrorCounts().get(500));
+            assertEquals(3, metrics.getTotalLatency().getCount());
+
+            HttpResponse response = client.execute(new HttpGet(openAIMock.getBaseUrl() + "__admin/metrics?format=text"));
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            String text = EntityUtils.toString(response.getEntity());
+            // Prompts are labelled by a hash, never by their text
+            assertEquals(16, MockMetrics.labelOf("counted sentence").length());
+            assertTrue(text.contains("openai_mock_requests_total{expectation=\"" + MockMetrics.labelOf("counted sentence") + "\"} 2\n"));
+            assertTrue(text.contains("openai_mock_unmatched_requests_total{input=\"" + MockMetrics.labelOf("unknown sentence") + "\"} 1\n"));
+            assertFalse(text.contains("sentence"));
+            assertTrue(text.contains("openai_mock_responses_total{type=\"SIMPLE_TEXT\"} 2\n"));
+            assertTrue(text.contains("openai_mock_unmatched_requests_total 1\n"));
+            assertTrue(text.contains("openai_mock_errors_total{status=\"500\"} 1\n"));
+            assertTrue(text.contains("openai_mock_request_duration_seconds_count{phase=\"total\"} 3\n"));
+
+            // The endpoint is matched on whole path segments, not on a suffix of the path
+            assertEquals(404, status(client, new HttpGet(openAIMock.getBaseUrl() + "v1/models__admin/metrics")));
+        }
+    }
+}
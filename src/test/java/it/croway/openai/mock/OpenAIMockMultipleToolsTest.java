@@ -12,6 +12,10 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
+import static it.croway.openai.mock.TestRequests.CHAT_COMPLETIONS;
+import static it.croway.openai.mock.TestRequests.post;
+import static it.croway.openai.mock.TestRequests.readJson;
+
 public class OpenAIMockMultipleToolsTest {
 
     @RegisterExtension
@@ -92,4 +96,36 @@ public class OpenAIMockMultipleToolsTest {
             Assertions.assertEquals("stop", choice3.path("finish_reason").asText());
         }
     }
+
+    @Test
+    void testInterleavedConversationsKeepTheirOwnProgress() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            String firstRequestBody = "{\"messages\": [{\"role\": \"user\", \"content\": \"What is the weather in london?\"}]}";
+
+            // Both conversations start before either of them returns its tool output
+            String toolCallIdA = message(client, "a", firstRequestBody).path("tool_calls").get(0).path("id").asText();
+            String toolCallIdB = message(client, "b", firstRequestBody).path("tool_calls").get(0).path("id").asText();
+            Assertions.assertNotEquals(toolCallIdA, toolCallIdB);
+
+            // Each request only carries the latest tool output, so the step cannot be read from the history
+            String toolOutputTemplate = "{\"messages\": [{\"role\": \"user\", \"content\": \"What is the weather in london?\"}, {\"role\":\"tool\", \"tool_call_id\":\"%s\", \"content\":\"%s\"}]}";
+
+            JsonNode secondToolCallA = message(client, "a", String.format(toolOutputTemplate, toolCallIdA, "coordinates")).path("tool_calls").get(0);
+            Assertions.assertEquals("ForecastsTheWeatherForTheGivenLatitudeAndLongitude", secondToolCallA.path("function").path("name").asText());
+
+            JsonNode finalMessageA = message(client, "a", String.format(toolOutputTemplate, secondToolCallA.path("id").asText(), "sunny"));
+            Assertions.assertEquals("sunny", finalMessageA.path("content").asText());
+            Assertions.assertTrue(finalMessageA.path("tool_calls").isMissingNode());
+
+            // Conversation A finishing its sequence does not move conversation B forward
+            JsonNode secondToolCallB = message(client, "b", String.format(toolOutputTemplate, toolCallIdB, "coordinates")).path("tool_calls").get(0);
+            Assertions.assertEquals("ForecastsTheWeatherForTheGivenLatitudeAndLongitude", secondToolCallB.path("function").path("name").asText());
+        }
+    }
+
+    private JsonNode message(CloseableHttpClient client, String conversationId, String requestBody) throws Exception {
+        HttpPost request = post(openAIMock.getBaseUrl(), CHAT_COMPLETIONS, requestBody);
+        request.setHeader(RequestHandler.CONVERSATION_ID_HEADER, conversationId);
+        return readJson(client.execute(request)).path("choices").get(0).path("message");
+    }
 }
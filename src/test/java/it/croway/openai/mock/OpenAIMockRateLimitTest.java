@@ -0,0 +1,115 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.concurrent.TimeUnit;
+
+import static it.croway.openai.mock.TestRequests.chat;
+import static it.croway.openai.mock.TestRequests.readJson;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockRateLimitTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .rateLimit(2, 0)
+            .when("limited sentence")
+                .replyWith("allowed")
+            .build();
+
+    @Test
+    public void testRequestsPerMinuteLimitPerApiKey() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpResponse first = post(client, "Bearer key-1");
+            assertEquals(200, first.getStatusLine().getStatusCode());
+            assertEquals("2", first.getFirstHeader("x-ratelimit-limit-requests").getValue());
+            assertEquals("1", first.getFirstHeader("x-ratelimit-remaining-requests").getValue());
+            EntityUtils.consume(first.getEntity());
+
+            HttpResponse second = post(client, "Bearer key-1");
+            assertEquals(200, second.getStatusLine().getStatusCode());
+            EntityUtils.consume(second.getEntity());
+
+            HttpResponse third = post(client, "Bearer key-1");
+            assertEquals(429, third.getStatusLine().getStatusCode());
+            assertNotNull(third.getFirstHeader("Retry-After"));
+            assertTrue(Long.parseLong(third.getFirstHeader("Retry-After").getValue()) > 0);
+            JsonNode error = new ObjectMapper().readTree(EntityUtils.toString(third.getEntity())).path("error");
+            assertEquals("rate_limit_exceeded", error.path("code").asText());
+            assertEquals("requests", error.path("type").asText());
+
+            // Another API key has its own bucket
+            HttpResponse otherKey = post(client, "Bearer key-2");
+            assertEquals(200, otherKey.getStatusLine().getStatusCode());
+            EntityUtils.consume(otherKey.getEntity());
+        }
+    }
+
+    @Test
+    public void testRefundsOnlyGiveBackWhatWasCharged() {
+        RateLimiter rateLimiter = new RateLimiter(0, 100, RateLimiter.KeyType.API_KEY);
+        long now = -TimeUnit.MINUTES.toNanos(5);
+
+        RateLimiter.Decision tooLarge = rateLimiter.tryAcquire("key", 150, now);
+        assertFalse(tooLarge.isAllowed());
+        assertTrue(tooLarge.isTooLarge());
+        tooLarge.refund();
+
+        RateLimiter.Decision unserved = rateLimiter.tryAcquire("key", 60, now);
+        assertTrue(unserved.isAllowed());
+        unserved.refund();
+        assertTrue(rateLimiter.tryAcquire("key", 100, now).isAllowed());
+        assertFalse(rateLimiter.tryAcquire("key", 1, now).isAllowed());
+    }
+
+    @Test
+    public void testBucketsSurviveNanoTimeOverflow() {
+        RateLimiter rateLimiter = new RateLimiter(2, 0, RateLimiter.KeyType.API_KEY);
+        long now = Long.MAX_VALUE - TimeUnit.SECONDS.toNanos(1);
+
+        assertTrue(rateLimiter.tryAcquire("key", 1, now).isAllowed());
+        assertTrue(rateLimiter.tryAcquire("key", 1, now + TimeUnit.SECONDS.toNanos(2)).isAllowed());
+        // The bucket is full again only a minute after the first request, past the overflow
+        assertFalse(rateLimiter.tryAcquire("key", 1, now + TimeUnit.SECONDS.toNanos(3)).isAllowed());
+        assertTrue(rateLimiter.tryAcquire("key", 1, now + TimeUnit.SECONDS.toNanos(31)).isAllowed());
+    }
+
+    @Test
+    public void testRequestLargerThanTheTokenLimitIsRejected() throws Exception {
+        OpenAIMock mock = new OpenAIMock().builder()
+                .rateLimit(0, 5)
+                .when("limited sentence")
+                    .replyWith("allowed")
+                .build();
+        OpenAIMockServer server = new OpenAIMockServer(mock, new MockWebServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpResponse response = client.execute(chat(server.getBaseUrl(), "limited sentence"));
+            assertEquals(429, response.getStatusLine().getStatusCode());
+            assertNull(response.getFirstHeader("Retry-After"));
+            JsonNode error = readJson(response).path("error");
+            assertTrue(error.path("message").asText().startsWith("Request too large"), error.toString());
+            assertEquals("rate_limit_exceeded", error.path("code").asText());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private HttpResponse post(CloseableHttpClient client, String authorization) throws Exception {
+        HttpPost request = chat(openAIMock.getBaseUrl(), "limited sentence");
+        request.setHeader("Authorization", authorization);
+        return client.execute(request);
+    }
+}
@@ -0,0 +1,158 @@
+package it.croway.openai.mock;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static it.croway.openai.mock.TestRequests.content;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockServerPoolTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .serverPool(3, true)
+            .when("hello")
+                .replyWith("hello from the pool")
+            .build();
+
+    @Test
+    public void testServersShareExpectationsAndMetrics() throws Exception {
+        List<String> baseUrls = openAIMock.getBaseUrls();
+        assertEquals(3, baseUrls.size());
+        assertEquals(3, new HashSet<>(baseUrls).size());
+        assertFalse(baseUrls.contains(openAIMock.getBaseUrl()));
+
+        openAIMock.expectationSet("late").when("added later").replyWith("seen by every server").build();
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            for (String baseUrl : baseUrls) {
+                assertEquals("hello from the pool", content(client, baseUrl, "hello"));
+                assertEquals("seen by every server", content(client, baseUrl, "added later"));
+            }
+        }
+        assertEquals(3, openAIMock.getMetrics().getRequestCount("hello"));
+    }
+
+    @Test
+    public void testFrontPortBalancesConnections() throws Exception {
+        try (CloseableHttpClient client = HttpClients.custom()
+                .setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE).build()) {
+            for (int i = 0; i < 6; i++) {
+                assertEquals("hello from the pool", content(client, openAIMock.getBaseUrl(), "hello"));
+            }
+        }
+        assertEquals(6, openAIMock.getMetrics().getRequestCount("hello"));
+    }
+
+    @Test
+    public void testStandalonePoolOfHttpServerTransports() throws Exception {
+        OpenAIMock mock = new OpenAIMock().builder()
+                .when("hello")
+                    .replyWith("hello from the pool")
+                .build();
+        List<CountingTransport> transports = new ArrayList<>();
+        OpenAIMockServer server = new OpenAIMockServer(mock, new ServerPool(3, () -> {
+            CountingTransport transport = new CountingTransport(false);
+            transports.add(transport);
+            return transport;
+        }, true));
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.custom()
+                .setConnectionReuseStrategy(NoConnectionReuseStrategy.INSTANCE).build()) {
+            for (int i = 0; i < 6; i++) {
+                assertEquals("hello from the pool", content(client, server.getBaseUrl(), "hello"));
+            }
+        } finally {
+            server.stop();
+        }
+        assertEquals(6, mock.getMetrics().getRequestCount("hello"));
+        // Each new connection goes to the next server in turn
+        for (CountingTransport transport : transports) {
+            assertEquals(2, transport.requests.get());
+        }
+    }
+
+    @Test
+    public void testPoolListeningOnEveryInterface() throws Exception {
+        OpenAIMock mock = new OpenAIMock().builder()
+                .when("hello")
+                    .replyWith("hello from the pool")
+                .build();
+        InetAddress wildcard = new InetSocketAddress(0).getAddress();
+        OpenAIMockServer server = new OpenAIMockServer(mock,
+                new ServerPool(2, () -> new HttpServerTransport(wildcard), true, wildcard));
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            int port = URI.create(server.getBaseUrl()).getPort();
+            assertEquals("hello from the pool", content(client, "http://127.0.0.1:" + port + "/", "hello"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testStartedTransportsAreClosedWhenAnotherFailsToStart() {
+        List<CountingTransport> transports = new ArrayList<>();
+        ServerPool pool = new ServerPool(3, () -> {
+            CountingTransport transport = new CountingTransport(transports.size() == 2);
+            transports.add(transport);
+            return transport;
+        }, false);
+
+        assertThrows(IOException.class, () -> pool.start(0, new OpenAIMock().builder().build().createDispatcher()));
+        assertEquals(3, transports.size());
+        for (CountingTransport transport : transports) {
+            assertTrue(transport.closed, "transport left open");
+        }
+    }
+
+    /**
+     * Counts the requests each server of a pool receives, optionally failing to start.
+     */
+    private static class CountingTransport extends HttpServerTransport {
+        private final AtomicInteger requests = new AtomicInteger();
+        private final boolean failToStart;
+        private volatile boolean closed;
+
+        CountingTransport(boolean failToStart) {
+            this.failToStart = failToStart;
+        }
+
+        @Override
+        public void start(int port, Dispatcher dispatcher) throws IOException {
+            if (failToStart) {
+                throw new IOException("Port already in use");
+            }
+            super.start(port, new Dispatcher() {
+                @Override
+                public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                    requests.incrementAndGet();
+                    return dispatcher.dispatch(request);
+                }
+            });
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static it.croway.openai.mock.TestRequests.chat;
+import static it.croway.openai.mock.TestRequests.execute;
+import static it.croway.openai.mock.TestRequests.streamingChat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testHttpServerTransportWithExpectationsFile() throws Exception {
+        Path expectationsFile = tempDir.resolve("expectations.jsonl");
+        Files.writeString(expectationsFile,
+                "{\"input\": \"file sentence\", \"response\": \"hello from a file\"}\n"
+                        + "{\"input\": \"file tools\", \"toolSteps\": [[{\"name\": \"tool1\", \"arguments\": {\"p1\": \"v1\"}}]]}\n");
+
+        OpenAIMock mock = new OpenAIMock();
+        new ExpectationFileLoader(new ObjectMapper()).load(expectationsFile, mock.builder());
+        mock.builder().build();
+
+        OpenAIMockServer server = new OpenAIMockServer(mock, new HttpServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            JsonNode textMessage = post(client, server.getBaseUrl(), "file sentence");
+            assertEquals("hello from a file", textMessage.path("content").asText());
+
+            JsonNode toolMessage = post(client, server.getBaseUrl(), "file tools");
+            JsonNode toolCall = toolMessage.path("tool_calls").get(0);
+            assertEquals("tool1", toolCall.path("function").path("name").asText());
+            assertEquals("{\"p1\":\"v1\"}", toolCall.path("function").path("arguments").asText());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testMappedLoaderDecodesResponsesOnFirstMatch() throws Exception {
+        Path expectationsFile = tempDir.resolve("recorded.jsonl");
+        Files.writeString(expectationsFile,
+                "{\"input\": \"mapped sentence\", \"response\": \"hello from a mapping\"}\n"
+                        + "\n"
+                        + "{\"request\": {\"model\": \"gpt-4o\", \"messages\": [{\"role\": \"system\", \"content\": \"Be brief.\"}, "
+                        + "{\"role\": \"user\", \"content\": \"recorded sentence\"}]}, "
+                        + "\"response\": {\"id\": \"chatcmpl-recorded\", \"object\": \"chat.completion\", "
+                        + "\"choices\": [{\"index\": 0, \"message\": {\"role\": \"assistant\", \"content\": \"recorded answer\"}}]}}\n");
+
+        OpenAIMock mock = new OpenAIMock();
+        assertEquals(2, new MappedExpectationLoader(new ObjectMapper()).load(expectationsFile, mock.builder()));
+        mock.builder().build();
+
+        MockExpectation recorded = mock.getRegistry().find("recorded sentence");
+        assertFalse(recorded.isLoaded());
+
+        OpenAIMockServer server = new OpenAIMockServer(mock, new HttpServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            assertEquals("hello from a mapping", post(client, server.getBaseUrl(), "mapped sentence").path("content").asText());
+            assertEquals("recorded answer", post(client, server.getBaseUrl(), "recorded sentence").path("content").asText());
+            assertTrue(recorded.isLoaded());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testHttpServerTransportSchedulesDelayedResponses() throws Exception {
+        OpenAIMock mock = new OpenAIMock().builder()
+                .defaultLatency(LatencyProfile.firstByte(LatencyDistribution.fixed(Duration.ofMillis(50)))
+                        .withInterChunk(LatencyDistribution.fixed(Duration.ofMillis(10))))
+                .when("delayed sentence")
+                    .replyWith("a delayed and throttled response")
+                .build();
+
+        OpenAIMockServer server = new OpenAIMockServer(mock, new HttpServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpPost request = streamingChat(server.getBaseUrl(), "delayed sentence");
+
+            long start = System.nanoTime();
+            HttpResponse response = client.execute(request);
+            String body = EntityUtils.toString(response.getEntity());
+            long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            assertTrue(body.endsWith("data: [DONE]\n\n"));
+            assertTrue(elapsedMillis >= 80, "Response should be delayed and throttled, took " + elapsedMillis + "ms");
+        } finally {
+            server.stop();
+        }
+    }
+
+    private JsonNode post(CloseableHttpClient client, String baseUrl, String input) throws Exception {
+        return execute(client, chat(baseUrl, input), 200).path("choices").get(0).path("message");
+    }
+}
@@ -0,0 +1,85 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static it.croway.openai.mock.TestRequests.CHAT_COMPLETIONS;
+import static it.croway.openai.mock.TestRequests.content;
+import static it.croway.openai.mock.TestRequests.execute;
+import static it.croway.openai.mock.TestRequests.post;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockSharedServerTest {
+
+    /**
+     * Base URLs seen by the tests of this class, checked once they have all run.
+     */
+    private static final List<String> BASE_URLS = new CopyOnWriteArrayList<>();
+
+    @RegisterExtension
+    static OpenAIMock openAIMock = new OpenAIMock(ServerLifecycle.PER_CLASS).builder()
+            .when("shared sentence")
+                .replyWith("hello from a shared server")
+            .build();
+
+    @BeforeAll
+    static void clearBaseUrls() {
+        BASE_URLS.clear();
+    }
+
+    @AfterAll
+    static void testsShareOnePortUnderTheirOwnNamespaces() {
+        // Every test runs on the same port but under its own namespace, whatever the order they ran in
+        Set<Integer> ports = new HashSet<>();
+        for (String baseUrl : BASE_URLS) {
+            ports.add(URI.create(baseUrl).getPort());
+        }
+        assertEquals(1, ports.size(), BASE_URLS.toString());
+        assertEquals(BASE_URLS.size(), new HashSet<>(BASE_URLS).size(), BASE_URLS.toString());
+    }
+
+    @Test
+    public void testFirstRequestOnSharedServer() throws Exception {
+        assertSharedServerResponds();
+    }
+
+    @Test
+    public void testSecondRequestOnSharedServer() throws Exception {
+        assertSharedServerResponds();
+    }
+
+    @Test
+    public void testUnknownNamespaceGetsAnOpenAIError() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpPost request = post(openAIMock.getBaseUrl(), CHAT_COMPLETIONS, "{}");
+            request.setHeader(SharedMockServer.NAMESPACE_HEADER, "unknown \"quoted\\\" namespace");
+
+            JsonNode error = execute(client, request, 404).path("error");
+            assertEquals("No mock registered for namespace unknown \"quoted\\\" namespace", error.path("message").asText());
+            assertEquals("invalid_request_error", error.path("type").asText());
+        }
+    }
+
+    private void assertSharedServerResponds() throws Exception {
+        String baseUrl = openAIMock.getBaseUrl();
+        BASE_URLS.add(baseUrl);
+        assertTrue(URI.create(baseUrl).getPath().length() > 1);
+
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            assertEquals("hello from a shared server", content(client, baseUrl, "shared sentence"));
+        }
+    }
+}
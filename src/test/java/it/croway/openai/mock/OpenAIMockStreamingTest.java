@@ -0,0 +1,81 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static it.croway.openai.mock.TestRequests.events;
+import static it.croway.openai.mock.TestRequests.streamingChat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockStreamingTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .streamChunkSize(4)
+            .when("stream text")
+                .replyWith("hello streaming World")
+            .end()
+            .when("stream tools")
+                .invokeTool("tool1")
+                .withParam("p1", "v1")
+                .andInvokeTool("tool2")
+                .withParam("p2", "v2")
+            .build();
+
+    @Test
+    public void testStreamingTextResponse() throws Exception {
+        List<JsonNode> chunks = streamChunks("stream text");
+
+        StringBuilder content = new StringBuilder();
+        for (JsonNode chunk : chunks) {
+            assertEquals("chat.completion.chunk", chunk.path("object").asText());
+            content.append(chunk.path("choices").get(0).path("delta").path("content").asText(""));
+        }
+
+        assertEquals("hello streaming World", content.toString());
+        assertTrue(chunks.size() > 3, "Content should be split in several chunks");
+        assertEquals("stop", chunks.get(chunks.size() - 1).path("choices").get(0).path("finish_reason").asText());
+    }
+
+    @Test
+    public void testStreamingToolCallsResponse() throws Exception {
+        List<JsonNode> chunks = streamChunks("stream tools");
+
+        List<String> names = new ArrayList<>();
+        List<StringBuilder> arguments = new ArrayList<>();
+        for (JsonNode chunk : chunks) {
+            for (JsonNode toolCall : chunk.path("choices").get(0).path("delta").path("tool_calls")) {
+                int index = toolCall.path("index").asInt();
+                if (toolCall.has("id")) {
+                    names.add(toolCall.path("function").path("name").asText());
+                    arguments.add(new StringBuilder());
+                }
+                arguments.get(index).append(toolCall.path("function").path("arguments").asText());
+            }
+        }
+
+        assertEquals(List.of("tool1", "tool2"), names);
+        assertEquals("{\"p1\":\"v1\"}", arguments.get(0).toString());
+        assertEquals("{\"p2\":\"v2\"}", arguments.get(1).toString());
+        assertEquals("tool_calls", chunks.get(chunks.size() - 1).path("choices").get(0).path("finish_reason").asText());
+    }
+
+    private List<JsonNode> streamChunks(String input) throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            HttpResponse response = client.execute(streamingChat(openAIMock.getBaseUrl(), input));
+            assertEquals("text/event-stream", response.getFirstHeader("Content-Type").getValue());
+            String responseBody = EntityUtils.toString(response.getEntity());
+            assertTrue(responseBody.endsWith("data: [DONE]\n\n"), "Stream should be terminated by [DONE]");
+            return events(responseBody);
+        }
+    }
+}
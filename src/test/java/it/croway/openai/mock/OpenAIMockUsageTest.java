@@ -0,0 +1,172 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static it.croway.openai.mock.TestRequests.CHAT_COMPLETIONS;
+import static it.croway.openai.mock.TestRequests.events;
+import static it.croway.openai.mock.TestRequests.readJson;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenAIMockUsageTest {
+
+    @RegisterExtension
+    public OpenAIMock openAIMock = new OpenAIMock().builder()
+            .usage()
+            .compression()
+            .when("how are you")
+                .replyWith("fine thanks")
+            .end()
+            .when("weather in rome")
+                .replyWith("checking")
+                .invokeTool("get_weather")
+                .withParam("city", "Rome")
+            .build();
+
+    @Test
+    public void testUsageOfCompiledResponses() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            JsonNode text = post(client, CHAT_COMPLETIONS,
+                    "{\"messages\": [{\"role\": \"system\", \"content\": \"be brief\"}, {\"role\": \"user\", \"content\": \"how are you\"}]}");
+            // system: 3 + role 1 + "be brief" 2; user: 3 + role 1 + "how are you" 3; priming 3
+            assertEquals(16, text.at("/usage/prompt_tokens").asInt());
+            assertEquals(2, text.at("/usage/completion_tokens").asInt());
+            assertEquals(18, text.at("/usage/total_tokens").asInt());
+
+            JsonNode toolCall = post(client, CHAT_COMPLETIONS,
+                    "{\"messages\": [{\"role\": \"user\", \"content\": \"weather in rome\"}]}");
+            assertEquals("get_weather", toolCall.at("/choices/0/message/tool_calls/0/function/name").asText());
+            assertTrue(toolCall.at("/usage/completion_tokens").asInt() > 1, toolCall.toString());
+
+            JsonNode completion = post(client, "v1/completions", "{\"prompt\": \"how are you\"}");
+            assertEquals(3, completion.at("/usage/prompt_tokens").asInt());
+            assertEquals(2, completion.at("/usage/completion_tokens").asInt());
+        }
+    }
+
+    @Test
+    public void testStreamingUsageChunkOnlyWhenRequested() throws Exception {
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            List<JsonNode> chunks = stream(client, "\"stream_options\": {\"include_usage\": true}, ");
+            JsonNode last = chunks.get(chunks.size() - 1);
+            assertEquals(0, last.path("choices").size());
+            assertEquals(10, last.at("/usage/prompt_tokens").asInt());
+            assertEquals(2, last.at("/usage/completion_tokens").asInt());
+
+            for (JsonNode chunk : stream(client, "")) {
+                assertFalse(chunk.has("usage"), chunk.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testExactCountsWithTiktokenFile(@TempDir Path directory) throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int b = 0; b < 256; b++) {
+            lines.add(Base64.getEncoder().encodeToString(new byte[]{(byte) b}) + " " + b);
+        }
+        String[] merges = {"he", "ll", "hell", "hello", " w", "or", " wor", "ld", " world"};
+        for (int i = 0; i < merges.length; i++) {
+            lines.add(Base64.getEncoder().encodeToString(merges[i].getBytes(StandardCharsets.UTF_8)) + " " + (256 + i));
+        }
+        Path file = directory.resolve("test.tiktoken");
+        Files.write(file, lines);
+
+        Tokenizer tokenizer = Tokenizer.fromTiktoken(file);
+        assertTrue(tokenizer.isExact());
+        assertEquals(2, tokenizer.count("hello world"));
+        // "hello" + " wor" + "l", since " worl" is not a token
+        assertEquals(3, tokenizer.count("hello worl"));
+        // Pre-tokenized as "hello", "'s", " ", "123", "4"
+        assertEquals(1 + 2 + 1 + 3 + 1, tokenizer.count("hello's 1234"));
+
+        TokenCounter counter = new TokenCounter(tokenizer, 2);
+        String history = "hello world hello world hello world hello world";
+        // " hello" merges to " " + "hello"
+        assertEquals(2 + 3 * 3, counter.count(history));
+        assertEquals(2 + 3 * 3, counter.count(history));
+    }
+
+    @Test
+    public void testRateLimiterIsChargedWithPromptTokens() throws Exception {
+        OpenAIMock mock = new OpenAIMock().builder()
+                .usage()
+                .rateLimit(0, 20)
+                .when("limited sentence")
+                    .replyWith("allowed")
+                .build();
+        OpenAIMockServer server = new OpenAIMockServer(mock, new MockWebServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            String body = "{\"messages\": [{\"role\": \"user\", \"content\": \"limited sentence\"}]}";
+            // 3 + role 1 + content 3, plus 3 priming: 10 tokens, where the body size alone would give 16
+            for (int i = 0; i < 2; i++) {
+                HttpResponse response = client.execute(TestRequests.post(server.getBaseUrl(), CHAT_COMPLETIONS, body));
+                assertEquals(200, response.getStatusLine().getStatusCode());
+                assertEquals(String.valueOf(10 - 10 * i), response.getFirstHeader("x-ratelimit-remaining-tokens").getValue());
+                assertEquals(10, readJson(response).at("/usage/prompt_tokens").asInt());
+            }
+            HttpResponse limited = client.execute(TestRequests.post(server.getBaseUrl(), CHAT_COMPLETIONS, body));
+            EntityUtils.consume(limited.getEntity());
+            assertEquals(429, limited.getStatusLine().getStatusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testRateLimiterIsChargedWithReportedUsageOnOtherEndpoints() throws Exception {
+        OpenAIMock mock = new OpenAIMock().builder()
+                .usage()
+                .rateLimit(0, 10)
+                .when("limited sentence")
+                    .replyWith("allowed")
+                .build();
+        OpenAIMockServer server = new OpenAIMockServer(mock, new MockWebServerTransport());
+        server.start(0);
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            // Only the prompt is charged, not the keys and model of the JSON body
+            for (int i = 0; i < 3; i++) {
+                HttpResponse response = client.execute(TestRequests.post(server.getBaseUrl(), "v1/completions",
+                        "{\"model\": \"gpt-3.5-turbo-instruct\", \"prompt\": \"limited sentence\"}"));
+                assertEquals(200, response.getStatusLine().getStatusCode());
+                int promptTokens = readJson(response).at("/usage/prompt_tokens").asInt();
+                assertEquals(3, promptTokens);
+                assertEquals(String.valueOf(10 - 3 * (i + 1)), response.getFirstHeader("x-ratelimit-remaining-tokens").getValue());
+            }
+            HttpResponse limited = client.execute(TestRequests.post(server.getBaseUrl(), "v1/completions",
+                    "{\"prompt\": \"limited sentence\"}"));
+            EntityUtils.consume(limited.getEntity());
+            assertEquals(429, limited.getStatusLine().getStatusCode());
+        } finally {
+            server.stop();
+        }
+        // The limited request stopped before it was matched
+        assertEquals(3, mock.getMetrics().getRequestCount("limited sentence"));
+    }
+
+    private List<JsonNode> stream(CloseableHttpClient client, String options) throws Exception {
+        String body = "{\"stream\": true, " + options + "\"messages\": [{\"role\": \"user\", \"content\": \"how are you\"}]}";
+        HttpResponse response = client.execute(TestRequests.post(openAIMock.getBaseUrl(), CHAT_COMPLETIONS, body));
+        return events(EntityUtils.toString(response.getEntity()));
+    }
+
+    private JsonNode post(CloseableHttpClient client, String path, String body) throws Exception {
+        return readJson(client.execute(TestRequests.post(openAIMock.getBaseUrl(), path, body)));
+    }
+}
@@ -0,0 +1,92 @@
+package it.croway.openai.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Builds and sends the JSON requests the tests make against a mock.
+ */
+final class TestRequests {
+    static final String CHAT_COMPLETIONS = "v1/chat/completions";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private TestRequests() {
+    }
+
+    static HttpPost post(String baseUrl, String path, String body) {
+        HttpPost request = new HttpPost(baseUrl + path);
+        request.setEntity(new StringEntity(body, ContentType.APPLICATION_JSON));
+        return request;
+    }
+
+    /**
+     * Creates a chat completion request with a single user message.
+     */
+    static HttpPost chat(String baseUrl, String input) {
+        return post(baseUrl, CHAT_COMPLETIONS, "{\"messages\": [{\"role\": \"user\", \"content\": \"" + input + "\"}]}");
+    }
+
+    static HttpPost streamingChat(String baseUrl, String input) {
+        return post(baseUrl, CHAT_COMPLETIONS,
+                "{\"stream\": true, \"messages\": [{\"role\": \"user\", \"content\": \"" + input + "\"}]}");
+    }
+
+    /**
+     * Sends the request, discarding the response body, and returns the status code.
+     */
+    static int status(CloseableHttpClient client, HttpUriRequest request) throws Exception {
+        HttpResponse response = client.execute(request);
+        EntityUtils.consume(response.getEntity());
+        return response.getStatusLine().getStatusCode();
+    }
+
+    /**
+     * Sends the request, checks the status code and returns the JSON response body.
+     */
+    static JsonNode execute(CloseableHttpClient client, HttpUriRequest request, int expectedStatus) throws Exception {
+        HttpResponse response = client.execute(request);
+        String body = EntityUtils.toString(response.getEntity());
+        assertEquals(expectedStatus, response.getStatusLine().getStatusCode(), body);
+        return OBJECT_MAPPER.readTree(body);
+    }
+
+    /**
+     * Sends a chat completion with a single user message and returns the content of the reply.
+     */
+    static String content(CloseableHttpClient client, String baseUrl, String input) throws Exception {
+        return execute(client, chat(baseUrl, input), 200).at("/choices/0/message/content").asText();
+    }
+
+    static JsonNode readJson(HttpResponse response) throws Exception {
+        return OBJECT_MAPPER.readTree(EntityUtils.toString(response.getEntity()));
+    }
+
+    /**
+     * Parses the data of every server-sent event of the body, up to {@code [DONE]}.
+     */
+    static List<JsonNode> events(String body) throws Exception {
+        List<JsonNode> events = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (line.equals("data: [DONE]")) {
+                break;
+            }
+            if (line.startsWith("data: ")) {
+                events.add(OBJECT_MAPPER.readTree(line.substring("data: ".length())));
+            }
+        }
+        return events;
+    }
+}